@@ -0,0 +1,98 @@
+package frc.lib.util;
+
+/**
+ * A fixed-capacity FIFO ring buffer of primitive doubles.
+ * Unlike a {@code Queue<Double>}, this never boxes values and never allocates after construction,
+ * which keeps high-frequency sample pipelines from generating garbage.
+ *
+ * <p>This class isn't thread-safe; callers must handle synchronization themselves.
+ */
+public class DoubleRingBuffer {
+  private final double[] buffer;
+  /** The index of the oldest value in the buffer. */
+  private int head = 0;
+  private int size = 0;
+
+  /**
+   * Creates a new ring buffer.
+   * @param capacity The maximum number of values the buffer can hold.
+   */
+  public DoubleRingBuffer(int capacity) {
+    if(capacity <= 0) throw new IllegalArgumentException("Ring buffer capacity must be positive");
+    buffer = new double[capacity];
+  }
+
+  /**
+   * Adds a value to the end of the buffer if there's space.
+   * Matches the behavior of {@link java.util.Queue#offer}: new values are dropped when the buffer is full.
+   * @param value
+   * @return If the value was added.
+   */
+  public boolean offer(double value) {
+    if(size == buffer.length) return false;
+    buffer[(head + size) % buffer.length] = value;
+    size++;
+    return true;
+  }
+
+  /**
+   * Gets the oldest value in the buffer without removing it.
+   * @param defaultValue The value to return if the buffer is empty.
+   * @return
+   */
+  public double peekFirst(double defaultValue) {
+    if(size == 0) return defaultValue;
+    return buffer[head];
+  }
+
+  /**
+   * Gets the newest value in the buffer without removing it.
+   * @param defaultValue The value to return if the buffer is empty.
+   * @return
+   */
+  public double peekLast(double defaultValue) {
+    if(size == 0) return defaultValue;
+    return buffer[(head + size - 1) % buffer.length];
+  }
+
+  /**
+   * Gets a value by its position in the buffer without removing it.
+   * @param index The position, where 0 is the oldest value.
+   * @return
+   */
+  public double get(int index) {
+    if(index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+    return buffer[(head + index) % buffer.length];
+  }
+
+  /**
+   * Removes the oldest value from the buffer, if there is one.
+   * @return If a value was removed.
+   */
+  public boolean removeFirst() {
+    if(size == 0) return false;
+    head = (head + 1) % buffer.length;
+    size--;
+    return true;
+  }
+
+  /** Removes all values from the buffer. */
+  public void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  /** Gets the number of values currently in the buffer. */
+  public int size() {
+    return size;
+  }
+
+  /** Gets the maximum number of values the buffer can hold. */
+  public int capacity() {
+    return buffer.length;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+}
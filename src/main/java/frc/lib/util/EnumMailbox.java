@@ -0,0 +1,55 @@
+package frc.lib.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A lock-free mailbox for handing events from any number of threads to one owner thread.
+ *
+ * <p>Events are values of an enum. Posting sets the event's bit in a single atomic word, so it never
+ * blocks or allocates and is safe from notifiers and interrupt handlers. The owner drains the mailbox
+ * from its own thread, usually the main loop, and handles each pending event there. Posting an event that's
+ * already pending does nothing, so events are coalesced: the owner learns that something happened since
+ * the last drain, not how many times. Events are drained in ordinal order, not posting order.
+ *
+ * @param <E> The event enum. It can have at most 64 values.
+ */
+public class EnumMailbox<E extends Enum<E>> {
+  private final E[] events;
+  private final AtomicLong pending = new AtomicLong();
+
+  /**
+   * Creates a new mailbox.
+   * @param eventClass The event enum's class.
+   */
+  public EnumMailbox(Class<E> eventClass) {
+    events = eventClass.getEnumConstants();
+    if(events.length > Long.SIZE) throw new IllegalArgumentException("Mailboxes can have at most 64 events");
+  }
+
+  /**
+   * Posts an event. Safe to call from any thread.
+   * @param event
+   */
+  public void post(E event) {
+    long bit = 1L << event.ordinal();
+    long current;
+    do {
+      current = pending.get();
+      if((current & bit) != 0) return;
+    } while(!pending.compareAndSet(current, current | bit));
+  }
+
+  /**
+   * Takes every pending event and passes each to the handler. Should only be called from the owner thread.
+   * @param handler
+   */
+  public void drain(Consumer<E> handler) {
+    long taken = pending.getAndSet(0);
+    while(taken != 0) {
+      int ordinal = Long.numberOfTrailingZeros(taken);
+      taken &= taken - 1;
+      handler.accept(events[ordinal]);
+    }
+  }
+}
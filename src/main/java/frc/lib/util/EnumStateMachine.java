@@ -0,0 +1,183 @@
+package frc.lib.util;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * A state machine over the values of an enum, with a fixed table of allowed transitions.
+ *
+ * <p>The transition table is a bitmask per state, indexed by ordinal, so checking a transition is a
+ * shift and a mask. States can have entry and exit actions, and listeners are told about every
+ * transition. Attempting a transition never allocates, so it's safe to call from fast loops.
+ *
+ * <p>Every transition is counted and timed (exit action, entry action, and listeners together); call
+ * {@link #logStatistics(String)} periodically to log them. All methods are synchronized, so a machine can
+ * be driven from a notifier and the main loop at once. Actions and listeners run while holding the lock,
+ * so they should be short and must not wait on another thread that uses this machine.
+ *
+ * @param <S> The state enum. It can have at most 64 values.
+ */
+public class EnumStateMachine<S extends Enum<S>> {
+  /** Called after the machine moves from one state to another. */
+  @FunctionalInterface
+  public interface TransitionListener<S> {
+    void onTransition(S from, S to);
+  }
+
+  private final S[] states;
+  /** For each state's ordinal, a mask of the ordinals it's allowed to transition to. */
+  private final long[] allowedTransitions;
+  private final EnumMap<S, Runnable> entryActions;
+  private final EnumMap<S, Runnable> exitActions;
+  private final ArrayList<TransitionListener<S>> listeners = new ArrayList<>();
+
+  private volatile S currentState;
+
+  private long transitionCount = 0;
+  private long rejectedCount = 0;
+  /** Time spent running transitions, in microseconds. */
+  private final LatencyHistogram transitionLatency = new LatencyHistogram(5, 200);
+
+  /**
+   * Creates a new state machine with no allowed transitions.
+   * @param stateClass The state enum's class.
+   * @param initialState
+   */
+  public EnumStateMachine(Class<S> stateClass, S initialState) {
+    states = stateClass.getEnumConstants();
+    if(states.length > Long.SIZE) throw new IllegalArgumentException("State machines can have at most 64 states");
+    allowedTransitions = new long[states.length];
+    entryActions = new EnumMap<>(stateClass);
+    exitActions = new EnumMap<>(stateClass);
+    currentState = initialState;
+  }
+
+  /**
+   * Allows transitions from one state to another.
+   * @param from
+   * @param to
+   * @return This machine, for chaining.
+   */
+  public synchronized EnumStateMachine<S> allowTransition(S from, S to) {
+    allowedTransitions[from.ordinal()] |= 1L << to.ordinal();
+    return this;
+  }
+
+  /**
+   * Allows transitions between every pair of states. Useful when the state is measured rather than requested.
+   * @return This machine, for chaining.
+   */
+  public synchronized EnumStateMachine<S> allowAllTransitions() {
+    for(S from : states) {
+      for(S to : states) {
+        if(from != to) allowTransition(from, to);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Sets an action to run when the machine enters a state.
+   * @param state
+   * @param action
+   * @return This machine, for chaining.
+   */
+  public synchronized EnumStateMachine<S> onEntry(S state, Runnable action) {
+    entryActions.put(state, action);
+    return this;
+  }
+
+  /**
+   * Sets an action to run when the machine leaves a state.
+   * @param state
+   * @param action
+   * @return This machine, for chaining.
+   */
+  public synchronized EnumStateMachine<S> onExit(S state, Runnable action) {
+    exitActions.put(state, action);
+    return this;
+  }
+
+  /**
+   * Adds a listener that's called after every transition.
+   * @param listener
+   * @return This machine, for chaining.
+   */
+  public synchronized EnumStateMachine<S> addListener(TransitionListener<S> listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  /**
+   * Checks if the table allows a transition.
+   * @param from
+   * @param to
+   */
+  public boolean isTransitionAllowed(S from, S to) {
+    return (allowedTransitions[from.ordinal()] & (1L << to.ordinal())) != 0;
+  }
+
+  /**
+   * Attempts to transition to a new state. Transitions the table doesn't allow are ignored, as are
+   * attempts to transition to the current state.
+   * @param newState
+   * @return If the machine transitioned.
+   */
+  public synchronized boolean attemptTransition(S newState) {
+    S oldState = currentState;
+    if(newState == oldState) return false;
+    if(!isTransitionAllowed(oldState, newState)) {
+      rejectedCount++;
+      return false;
+    }
+    transition(oldState, newState);
+    return true;
+  }
+
+  /**
+   * Moves to a state regardless of the transition table, running the exit and entry actions as usual.
+   * Used for resetting the machine.
+   * @param newState
+   */
+  public synchronized void forceState(S newState) {
+    S oldState = currentState;
+    if(newState == oldState) return;
+    transition(oldState, newState);
+  }
+
+  private void transition(S oldState, S newState) {
+    long startNanos = System.nanoTime();
+
+    Runnable exitAction = exitActions.get(oldState);
+    if(exitAction != null) exitAction.run();
+    currentState = newState;
+    Runnable entryAction = entryActions.get(newState);
+    if(entryAction != null) entryAction.run();
+    // Indexed so we don't allocate an iterator
+    for(int i = 0; i < listeners.size(); i++) {
+      listeners.get(i).onTransition(oldState, newState);
+    }
+
+    transitionCount++;
+    transitionLatency.record((System.nanoTime() - startNanos) / 1e3);
+  }
+
+  /** Gets the current state. */
+  public S getState() {
+    return currentState;
+  }
+
+  /**
+   * Logs the transition statistics.
+   * @param key The log key to put the statistics under.
+   */
+  public synchronized void logStatistics(String key) {
+    Logger.recordOutput(key + "/TransitionCount", transitionCount);
+    Logger.recordOutput(key + "/RejectedCount", rejectedCount);
+    Logger.recordOutput(key + "/TransitionLatencyP50Micros", transitionLatency.getPercentile(0.5));
+    Logger.recordOutput(key + "/TransitionLatencyP99Micros", transitionLatency.getPercentile(0.99));
+    Logger.recordOutput(key + "/TransitionLatencyMaxMicros", transitionLatency.getMax());
+  }
+}
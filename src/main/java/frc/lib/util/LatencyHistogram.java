@@ -0,0 +1,79 @@
+package frc.lib.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-bucket histogram of durations for cheaply tracking percentiles on a hot path.
+ * Recording a value is a single array increment and never allocates.
+ *
+ * <p>Percentiles are only as precise as the bucket width; values past the last bucket are counted in
+ * an overflow bucket, but the maximum is always tracked exactly.
+ *
+ * <p>This class isn't thread-safe; callers must handle synchronization themselves.
+ */
+public class LatencyHistogram {
+  private final double bucketWidth;
+  /** The count in each bucket. The last bucket holds every value past the end of the range. */
+  private final long[] counts;
+  private long totalCount = 0;
+  private double max = 0;
+
+  /**
+   * Creates a new histogram.
+   * @param bucketWidth The width of each bucket, in the same units as recorded values.
+   * @param bucketCount The number of buckets. Values above {@code bucketWidth * bucketCount} go in an overflow bucket.
+   */
+  public LatencyHistogram(double bucketWidth, int bucketCount) {
+    if(bucketWidth <= 0 || bucketCount <= 0) throw new IllegalArgumentException("Histogram bucket width and count must be positive");
+    this.bucketWidth = bucketWidth;
+    counts = new long[bucketCount + 1];
+  }
+
+  /**
+   * Records a value. Negative values are counted in the first bucket.
+   * @param value
+   */
+  public void record(double value) {
+    int bucket = (int)(value / bucketWidth);
+    if(bucket < 0) bucket = 0;
+    if(bucket >= counts.length) bucket = counts.length - 1;
+    counts[bucket]++;
+    totalCount++;
+    if(value > max) max = value;
+  }
+
+  /**
+   * Gets an upper bound for the given percentile: the top edge of the bucket it falls in.
+   * Percentiles in the overflow bucket return the maximum.
+   * @param percentile The percentile, from 0 to 1.
+   * @return The value, or 0 if nothing has been recorded.
+   */
+  public double getPercentile(double percentile) {
+    if(totalCount == 0) return 0;
+
+    long target = (long)Math.ceil(percentile * totalCount);
+    long count = 0;
+    for(int bucket = 0; bucket < counts.length - 1; bucket++) {
+      count += counts[bucket];
+      if(count >= target) return Math.min((bucket + 1) * bucketWidth, max);
+    }
+    return max;
+  }
+
+  /** Gets the largest value recorded. */
+  public double getMax() {
+    return max;
+  }
+
+  /** Gets the number of values recorded. */
+  public long getCount() {
+    return totalCount;
+  }
+
+  /** Removes every recorded value. */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    totalCount = 0;
+    max = 0;
+  }
+}
@@ -0,0 +1,92 @@
+package frc.lib.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free, fixed-capacity ring of rows of primitive doubles for handing samples from exactly one
+ * producer thread to exactly one consumer thread.
+ *
+ * <p>Each row is a fixed number of columns. The producer writes a whole row and then publishes it by
+ * advancing the write sequence with release semantics; the consumer reads the write sequence with
+ * acquire semantics, so a published row is always seen in full. The consumer frees rows the same way
+ * in the other direction. Neither side ever blocks: when the ring is full, the producer drops the new
+ * row instead of waiting for the consumer.
+ *
+ * <p>Data is stored column-major (all of column 0, then all of column 1, ...) in one contiguous array.
+ */
+public class SpscDoubleRing {
+  private final int capacity;
+  private final int columns;
+  private final double[] data;
+
+  /** The sequence number of the next row the producer will write. Only written by the producer. */
+  private final AtomicLong writeSequence = new AtomicLong();
+  /** The sequence number of the next row the consumer will read. Only written by the consumer. */
+  private final AtomicLong readSequence = new AtomicLong();
+
+  /**
+   * Creates a new ring.
+   * @param capacity The number of rows the ring can hold before the producer starts dropping rows.
+   * @param columns The number of values in each row.
+   */
+  public SpscDoubleRing(int capacity, int columns) {
+    if(capacity <= 0 || columns <= 0) throw new IllegalArgumentException("Ring capacity and column count must be positive");
+    this.capacity = capacity;
+    this.columns = columns;
+    data = new double[capacity * columns];
+  }
+
+  /**
+   * Writes and publishes a row. Must only be called from the producer thread.
+   * @param row The row values. Only the first {@link #getColumnCount()} values are used.
+   * @return If the row was published. This is false if the ring was full, in which case the row is dropped.
+   */
+  public boolean tryWrite(double[] row) {
+    long sequence = writeSequence.getPlain();
+    if(sequence - readSequence.getAcquire() >= capacity) return false;
+
+    int slot = (int)(sequence % capacity);
+    for(int column = 0; column < columns; column++) {
+      data[column * capacity + slot] = row[column];
+    }
+    writeSequence.setRelease(sequence + 1);
+    return true;
+  }
+
+  /**
+   * Gets the number of published rows the consumer hasn't released yet. Must only be called from the consumer thread.
+   * Rows published after this call aren't visible through {@link #get} until this is called again.
+   * @return
+   */
+  public int available() {
+    return (int)(writeSequence.getAcquire() - readSequence.getPlain());
+  }
+
+  /**
+   * Reads a value from an unreleased row. Must only be called from the consumer thread, and only for
+   * rows counted by the last call to {@link #available()}.
+   * @param row The row index, where 0 is the oldest unreleased row.
+   * @param column
+   * @return
+   */
+  public double get(int row, int column) {
+    int slot = (int)((readSequence.getPlain() + row) % capacity);
+    return data[column * capacity + slot];
+  }
+
+  /**
+   * Releases the oldest rows so the producer can reuse their space. Must only be called from the consumer thread.
+   * @param rows The number of rows to release.
+   */
+  public void release(int rows) {
+    readSequence.setRelease(readSequence.getPlain() + rows);
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public int getColumnCount() {
+    return columns;
+  }
+}
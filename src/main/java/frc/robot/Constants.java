@@ -17,6 +17,7 @@ import frc.lib.util.CANSparkMaxConfig;
 import frc.lib.util.CANSparkMaxUtil;
 import frc.lib.util.CANSparkMaxUtil.Usage;
 import frc.robot.subsystems.launcher.Launcher.LauncherState;
+import frc.robot.subsystems.launcher.LauncherIO.RollerControlMode;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.RobotBase;
@@ -191,11 +192,65 @@ public final class Constants {
 
     public static final double angleMotorGearboxReduction = 5.23 * 5.23 * 2.89;
 
+    /**
+     * If we should move the conch along a trapezoidal profile instead of stepping its position reference.
+     * Off until the profile constraints and feedforward gains below are tuned on the real pivot.
+     */
+    public static final boolean useProfiledPivot = false;
+    /**
+     * The pivot profile constraints, in conch rotations per second and per second squared.
+     * The angle motor's free speed is about 1.2 conch rotations per second.
+     */
+    public static final double pivotMaxVelocity = 0.9;
+    public static final double pivotMaxAcceleration = 6.0;
+    /**
+     * The pivot feedforward, in volts. kV is per conch rotation per second; kG is scaled by the cosine of the launcher angle.
+     * kV comes from the angle motor's free speed; kS and kG are estimates.
+     */
+    public static final double pivotKS = 0.1;
+    public static final double pivotKV = 10.0;
+    public static final double pivotKG = 0.3;
+    /**
+     * How close the measured launcher angle needs to be to the target to count as settled, in degrees.
+     */
+    public static final double pivotSettleToleranceDegrees = 0.5;
+
     /**
      * The idle launch roller velocity in revolutions per minute.
      */
     public static final double idleRollerVelocity = 3000.;
 
+    /**
+     * The fastest the launch rollers can actually spin, in revolutions per minute. Faster setpoints are treated as this.
+     */
+    public static final double maxRollerVelocity = 4650.;
+    /**
+     * How close the launch rollers need to be to their target to launch, in revolutions per minute.
+     */
+    public static final double rollerVelocityTolerance = 100.;
+    /**
+     * The starting estimates for the launch roller model used to predict when they'll be ready.
+     * These are refined online; see {@link frc.robot.subsystems.launcher.FlywheelReadyPredictor}.
+     */
+    public static final double rollerTimeConstantSeconds = 0.25;
+    public static final double rollerAccelerationRPMPerSecond = 8000.;
+
+    /**
+     * How the launch rollers are controlled in auto and teleop. Compare the modes with the Launcher/Recovery logs.
+     */
+    public static final RollerControlMode autoRollerControlMode = RollerControlMode.OnboardPID;
+    public static final RollerControlMode teleopRollerControlMode = RollerControlMode.OnboardPID;
+    /**
+     * The period of the roller control loop when it runs on the roboRIO, in seconds.
+     */
+    public static final double rollerControlPeriodSeconds = 0.005;
+
+    /**
+     * The time from starting the transport until the note reaches the launch rollers, in seconds.
+     * When launching at the predicted ready time, we start feeding this long before the rollers are ready.
+     */
+    public static final double noteFeedTimeSeconds = 0.08;
+
     public static final Rotation2d softStopMarginLow = Rotation2d.fromDegrees(15);
     public static final Rotation2d softStopMarginHigh = Rotation2d.fromDegrees(75);
 
@@ -223,6 +278,23 @@ public final class Constants {
      * The DIO port of the through beam sensor detecting if the note is transitioning to the resting position.
      */
     public static final int noteInTransitionSensorDIOPort = 4;
+    /**
+     * If we should update the note state from DIO interrupts as soon as a sensor changes, instead of only polling them.
+     */
+    public static final boolean useInterrupts = true;
+
+    /**
+     * The position of the note in transition sensor along the note's path, in meters. Note positions are measured from here.
+     */
+    public static final double noteInTransitionSensorPositionMeters = 0.0;
+    /**
+     * The position of the note in position sensor along the note's path, in meters. This is estimated from CAD.
+     */
+    public static final double noteInPositionSensorPositionMeters = Units.inchesToMeters(10);
+    /**
+     * The length of a note along its path through the transport, in meters.
+     */
+    public static final double noteLengthMeters = Units.inchesToMeters(14);
   }
 
   public static final class Transport {
@@ -255,6 +327,36 @@ public final class Constants {
      * 3.8 m/s is roughly our max speed.
      */
     public static final double intakeSpeed = 2.9;
+    /**
+     * The speed to move notes toward the resting position once they're past the note in transition sensor, in meters per second.
+     */
+    public static final double movingNoteSpeed = intakeSpeed * 0.8;
+
+    /**
+     * If we should track the note's position between sensors and move it faster until it's close to the resting position.
+     * Off until the tracker's sensor positions and slip are checked against real notes.
+     */
+    public static final boolean useNoteTracking = false;
+    /**
+     * The speed to move notes toward the resting position while they're far from it, in meters per second.
+     * 3.8 m/s is roughly our max speed.
+     */
+    public static final double fastMovingNoteSpeed = 3.4;
+    /**
+     * How far before the resting position we slow back down to the normal moving speed, in meters.
+     * The note is stopped from the same speed as without tracking, so it stops in the same place.
+     */
+    public static final double noteApproachDistanceMeters = 0.06;
+    /**
+     * How much the note can slip relative to the transport rollers, as a fraction of the distance moved.
+     * The position estimate is treated as uncertain by this much since the last sensor edge.
+     */
+    public static final double noteTrackingErrorFraction = 0.1;
+    /**
+     * How far ahead we look when deciding to slow down, in seconds. This covers the loop period and the
+     * delay of the transport encoder's position frame.
+     */
+    public static final double noteTrackingLookaheadSeconds = 0.04;
   }
 
   public static final class Climber {
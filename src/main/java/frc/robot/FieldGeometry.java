@@ -0,0 +1,110 @@
+package frc.robot;
+
+import java.util.Optional;
+
+import org.littletonrobotics.junction.Logger;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+
+/**
+ * Caches our alliance and the alliance-specific field targets we aim at.
+ *
+ * <p>{@link DriverStation#getAlliance()} takes a lock and allocates an {@code Optional} on every call,
+ * but the driver station data only changes when it's refreshed at the start of each loop. This checks it
+ * once per loop in {@link #update()} and only recomputes the flipped targets when the alliance changes,
+ * so every other lookup is just a field read.
+ *
+ * <p>All coordinates are in meters using "always blue origin" field coordinates.
+ */
+public class FieldGeometry {
+  private static FieldGeometry instance = null;
+  public static FieldGeometry getInstance() {
+    if(instance == null) {
+      instance = new FieldGeometry();
+    }
+    return instance;
+  }
+
+  /** The Y position of the center of the speaker opening. */
+  public static final double speakerY = 5.55;
+  /** The Y position we shift our speaker target to when we're at an obtuse angle to the speaker. */
+  public static final double speakerObtuseY = 5.93;
+  /** How far into the field, from the alliance wall, we aim at the speaker. Negative is behind the wall. */
+  private static final double speakerInwardX = -0.08;
+  /** How far into the field, from the alliance wall, we aim lob shots. */
+  private static final double lobTargetInwardX = 2.1;
+  /** The Y position we aim lob shots at. */
+  public static final double lobTargetY = 6.48;
+  /** How far into the field, from the alliance wall, the robot is when it's against the subwoofer. */
+  private static final double subwooferInwardX = 1.37;
+
+  private Optional<Alliance> alliance = Optional.empty();
+  private boolean isBlueAlliance = false;
+  private boolean isRedAlliance = false;
+
+  private double speakerX;
+  private double lobTargetX;
+  private double subwooferX;
+
+  private FieldGeometry() {
+    updateTargets();
+  }
+
+  /**
+   * Checks for alliance changes and recomputes the targets if needed. Should be called once per loop
+   * before anything else uses this class.
+   */
+  public void update() {
+    Optional<Alliance> newAlliance = DriverStation.getAlliance();
+    if(newAlliance.equals(alliance)) return;
+
+    alliance = newAlliance;
+    updateTargets();
+    Logger.recordOutput("FieldGeometry/Alliance", alliance.map(Alliance::toString).orElse("Unknown"));
+  }
+
+  private void updateTargets() {
+    isBlueAlliance = alliance.isPresent() && alliance.get() == Alliance.Blue;
+    isRedAlliance = alliance.isPresent() && alliance.get() == Alliance.Red;
+
+    // We've historically aimed at the red side when the alliance is unknown
+    speakerX = flipX(speakerInwardX);
+    lobTargetX = flipX(lobTargetInwardX);
+    subwooferX = flipX(subwooferInwardX);
+  }
+
+  private double flipX(double inwardX) {
+    return isBlueAlliance ? inwardX : Constants.fieldLengthMeters - inwardX;
+  }
+
+  /** Gets our alliance, or an empty optional if the driver station hasn't told us yet. */
+  public Optional<Alliance> getAlliance() {
+    return alliance;
+  }
+
+  /** Gets if we're on the blue alliance. This is false if the alliance is unknown. */
+  public boolean isBlueAlliance() {
+    return isBlueAlliance;
+  }
+
+  /** Gets if we're on the red alliance. This is false if the alliance is unknown. */
+  public boolean isRedAlliance() {
+    return isRedAlliance;
+  }
+
+  /** Gets the X position of our alliance's speaker aim point. */
+  public double getSpeakerX() {
+    return speakerX;
+  }
+
+  /** Gets the X position of our alliance's lob shot target. */
+  public double getLobTargetX() {
+    return lobTargetX;
+  }
+
+  /** Gets the X position of the robot's center when it's against our alliance's subwoofer. */
+  public double getSubwooferX() {
+    return subwooferX;
+  }
+}
@@ -17,6 +17,7 @@ import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import frc.robot.controls.AutomaticLauncherControl;
+import frc.robot.controls.ShotRecorder;
 import frc.robot.controls.SwerveAlignmentController;
 import frc.robot.controls.VibrationFeedback;
 import frc.robot.controls.SwerveAlignmentController.AlignmentMode;
@@ -123,7 +124,9 @@ public class Robot extends LoggedRobot {
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
     double startTime = Logger.getRealTimestamp();
+    FieldGeometry.getInstance().update();
     CommandScheduler.getInstance().run();
+    ShotRecorder.getInstance().update();
     Logger.recordOutput("LoggedRobot/CommandSchedulerTime", (Logger.getRealTimestamp() - startTime) / 1000);
 
     robotContainer.updateAutoPublisher();
@@ -117,7 +117,7 @@ public class RobotContainer {
     LauncherState closeState = new LauncherState(3560, 59.2, true);
     NamedCommands.registerCommand("Launch close prep", new ScheduleCommand(new SetLauncherState(closeState)));
     NamedCommands.registerCommand("Launch close", new SequentialCommandGroup(
-      new SetLauncherState(closeState),
+      new SetLauncherState(closeState, true),
       new LaunchNote()
     ));
     NamedCommands.registerCommand("Launch", new SequentialCommandGroup(
@@ -161,7 +161,7 @@ public class RobotContainer {
     NamedCommands.registerCommand("7 note 1", new SequentialCommandGroup(
       // Launch first
       // ------- FIRST NOTE PARAMETERS -------
-      new SetLauncherState(new LauncherState(3900, 53.2, true)),
+      new SetLauncherState(new LauncherState(3900, 53.2, true), true),
       new LaunchNote(),
 
       // Prep second
@@ -0,0 +1,146 @@
+package frc.robot;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.lib.drive.FieldRelativeAcceleration;
+import frc.lib.drive.FieldRelativeVelocity;
+
+/**
+ * A snapshot of the robot's state, computed once per cycle by the swerve subsystem right after it updates
+ * odometry. Code that needs the pose, speeds, alliance, or match time should read them from here instead
+ * of querying the estimator, running kinematics, or asking the driver station again.
+ *
+ * <p>Snapshots are immutable; a new one is published every cycle. Don't modify the velocity or acceleration
+ * objects returned from a snapshot.
+ */
+public final class RobotState {
+  private static RobotState current = new RobotState(
+    0, new Pose2d(), new ChassisSpeeds(), new ChassisSpeeds(),
+    new FieldRelativeVelocity(), new FieldRelativeAcceleration(), Optional.empty(), -1
+  );
+
+  /**
+   * Gets the latest snapshot. During a cycle, subsystems that run before the swerve subsystem see the
+   * previous cycle's snapshot.
+   * @return
+   */
+  public static RobotState getCurrent() {
+    return current;
+  }
+
+  /**
+   * Publishes a new snapshot. Should only be called by the swerve subsystem.
+   * @param state
+   */
+  public static void publish(RobotState state) {
+    current = state;
+  }
+
+  private final double timestamp;
+  private final Pose2d pose;
+  private final ChassisSpeeds robotRelativeSpeeds;
+  private final ChassisSpeeds fieldRelativeSpeeds;
+  private final double robotSpeed;
+  private final FieldRelativeVelocity velocity;
+  private final FieldRelativeAcceleration acceleration;
+  private final Optional<Alliance> alliance;
+  private final double matchTime;
+
+  /**
+   * Creates a new snapshot.
+   * @param timestamp The time the snapshot was taken, in seconds.
+   * @param pose
+   * @param robotRelativeSpeeds
+   * @param fieldRelativeSpeeds
+   * @param velocity
+   * @param acceleration
+   * @param alliance
+   * @param matchTime The approximate match time remaining from the driver station, in seconds.
+   */
+  public RobotState(
+    double timestamp,
+    Pose2d pose,
+    ChassisSpeeds robotRelativeSpeeds,
+    ChassisSpeeds fieldRelativeSpeeds,
+    FieldRelativeVelocity velocity,
+    FieldRelativeAcceleration acceleration,
+    Optional<Alliance> alliance,
+    double matchTime
+  ) {
+    this.timestamp = timestamp;
+    this.pose = pose;
+    this.robotRelativeSpeeds = robotRelativeSpeeds;
+    this.fieldRelativeSpeeds = fieldRelativeSpeeds;
+    this.robotSpeed = Math.hypot(fieldRelativeSpeeds.vxMetersPerSecond, fieldRelativeSpeeds.vyMetersPerSecond);
+    this.velocity = velocity;
+    this.acceleration = acceleration;
+    this.alliance = alliance;
+    this.matchTime = matchTime;
+  }
+
+  /**
+   * Creates a copy of this snapshot with a different pose. Used when odometry is reset in the middle of a cycle.
+   * @param pose
+   * @return
+   */
+  public RobotState withPose(Pose2d pose) {
+    return new RobotState(timestamp, pose, robotRelativeSpeeds, fieldRelativeSpeeds, velocity, acceleration, alliance, matchTime);
+  }
+
+  /** Gets the time the snapshot was taken, in seconds. */
+  public double getTimestamp() {
+    return timestamp;
+  }
+
+  /** Gets the estimated robot pose. */
+  public Pose2d getPose() {
+    return pose;
+  }
+
+  /** Gets the measured robot-relative chassis speeds. */
+  public ChassisSpeeds getRobotRelativeSpeeds() {
+    return robotRelativeSpeeds;
+  }
+
+  /** Gets the measured field-relative chassis speeds. */
+  public ChassisSpeeds getFieldRelativeSpeeds() {
+    return fieldRelativeSpeeds;
+  }
+
+  /** Gets the absolute translational speed of the robot, in meters per second. */
+  public double getRobotSpeed() {
+    return robotSpeed;
+  }
+
+  public FieldRelativeVelocity getFieldRelativeVelocity() {
+    return velocity;
+  }
+
+  public FieldRelativeAcceleration getFieldRelativeAcceleration() {
+    return acceleration;
+  }
+
+  /** Gets our alliance, or an empty optional if the driver station hasn't told us yet. */
+  public Optional<Alliance> getAlliance() {
+    return alliance;
+  }
+
+  /** Gets if we're on the blue alliance. This is false if the alliance is unknown. */
+  public boolean isBlueAlliance() {
+    return alliance.isPresent() && alliance.get() == DriverStation.Alliance.Blue;
+  }
+
+  /** Gets if we're on the red alliance. This is false if the alliance is unknown. */
+  public boolean isRedAlliance() {
+    return alliance.isPresent() && alliance.get() == DriverStation.Alliance.Red;
+  }
+
+  /** Gets the approximate match time remaining, in seconds, or -1 if it's unavailable. */
+  public double getMatchTime() {
+    return matchTime;
+  }
+}
@@ -11,11 +11,10 @@ import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
-import edu.wpi.first.wpilibj.DriverStation;
-import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
 import frc.robot.Constants;
+import frc.robot.RobotState;
 import frc.robot.controls.SwerveAlignmentController;
 import frc.robot.subsystems.drive.Swerve;
 
@@ -97,15 +96,17 @@ public class DriveCommands {
 
           // We use "Always blue origin" coordinates. For more information about why we flip for red, see the following documentation:
           // https://docs.wpilib.org/en/stable/docs/software/basic-programming/coordinate-system.html#always-blue-origin
-          boolean isFlipped = DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == Alliance.Red;
+          RobotState state = RobotState.getCurrent();
+          boolean isFlipped = state.isRedAlliance();
+          Rotation2d rotation = state.getPose().getRotation();
           swerve.driveVelocity(alignmentController.updateSpeedsToAlign(
             ChassisSpeeds.fromFieldRelativeSpeeds(
               linearVelocity.getX(),
               linearVelocity.getY(),
               omega * Constants.Swerve.maxAngularVelocity,
               isFlipped
-                ? swerve.getRotation().plus(new Rotation2d(Math.PI))
-                : swerve.getRotation())
+                ? rotation.plus(new Rotation2d(Math.PI))
+                : rotation)
           ));
         } else {
           // Drive relative to the robot
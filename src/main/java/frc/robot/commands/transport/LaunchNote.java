@@ -4,6 +4,7 @@ import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import frc.robot.subsystems.Superstructure;
 import frc.robot.subsystems.Superstructure.NoteState;
+import frc.robot.subsystems.launcher.Launcher;
 import frc.robot.subsystems.transport.Transport;
 import frc.robot.subsystems.transport.Transport.TransportState;
 import frc.robot.visualization.NoteVisualizer;
@@ -24,6 +25,7 @@ public class LaunchNote extends Command {
   @Override
   public void initialize() {
     Transport.getInstance().attemptTransitionToState(TransportState.LaunchingNote);
+    Launcher.getInstance().notifyNoteLaunched();
 
     m_startTime = Timer.getFPGATimestamp();
   }
@@ -3,6 +3,8 @@ package frc.robot.commands.transport;
 import edu.wpi.first.wpilibj2.command.ParallelCommandGroup;
 import edu.wpi.first.wpilibj2.command.ParallelRaceGroup;
 import edu.wpi.first.wpilibj2.command.WaitCommand;
+import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
+import frc.robot.Constants;
 import frc.robot.subsystems.launcher.Launcher;
 import frc.robot.subsystems.launcher.Launcher.LauncherState;
 
@@ -15,7 +17,18 @@ public class SetLauncherState extends ParallelRaceGroup {
    * @param state The launcher state
    */
   public SetLauncherState(LauncherState state) {
-    addRequirements(Launcher.getInstance());
+    this(state, false);
+  }
+
+  /**
+   * Creates a new SetLauncherState.
+   * @param state The launcher state
+   * @param endAtPredictedReady If we should finish as soon as a note fed now would reach the rollers as they get
+   *   to speed, instead of waiting for the launcher to settle. Use this when a launch follows right after.
+   */
+  public SetLauncherState(LauncherState state, boolean endAtPredictedReady) {
+    Launcher launcher = Launcher.getInstance();
+    addRequirements(launcher);
     addCommands(
       new WaitCommand(1.5),
       new ParallelCommandGroup(
@@ -23,5 +36,9 @@ public class SetLauncherState extends ParallelRaceGroup {
         new SetLauncherSpeed(state.speed, state.adjustForSpeaker)
       )
     );
+    if(endAtPredictedReady) {
+      // This is first checked the loop after the setpoints are set, once the launcher has updated its prediction for them
+      addCommands(new WaitUntilCommand(() -> launcher.willBeReadyWithin(Constants.Launcher.noteFeedTimeSeconds)));
+    }
   }
 }
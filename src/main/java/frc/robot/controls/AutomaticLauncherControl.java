@@ -1,14 +1,14 @@
 package frc.robot.controls;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 import org.littletonrobotics.junction.Logger;
 
-import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform2d;
@@ -17,8 +17,8 @@ import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Filesystem;
 import frc.robot.Constants;
-import frc.robot.controls.SwerveAlignmentController.AlignmentMode;
-import frc.robot.subsystems.drive.Swerve;
+import frc.robot.FieldGeometry;
+import frc.robot.RobotState;
 import frc.robot.subsystems.launcher.Launcher;
 import frc.robot.subsystems.launcher.Launcher.LauncherState;
 
@@ -35,72 +35,85 @@ public class AutomaticLauncherControl {
     // This is a singleton class.
   }
   
-  private ArrayList<LauncherState> launcherStateGrid = new ArrayList<>();
-  private int grid_x_size;
-  private int grid_y_size;
+  // The lookup table is stored as primitive grids, indexed by y * gridXSize + x
+  private float[] speedGrid = new float[0];
+  private float[] angleGrid = new float[0];
+  private int gridXSize;
+  private int gridYSize;
   private float minx;
   private float maxx;
   private float miny;
   private float maxy;
   {
-    try (BufferedReader br =
-    new BufferedReader(new FileReader(new File(Filesystem.getDeployDirectory(), "launcherData.txt")))
-    ) {
-      // The custom file format is pretty simple; see misc/launcherAimDataProcessing.ipynb for more details
-      
-      String[] sizes = br.readLine().split(":");
-      grid_x_size = Integer.parseInt(sizes[0]);
-      grid_y_size = Integer.parseInt(sizes[1]);
-      minx = Float.parseFloat(sizes[2]);
-      maxx = Float.parseFloat(sizes[3]);
-      miny = Float.parseFloat(sizes[4]);
-      maxy = Float.parseFloat(sizes[5]);
-      
-      String line;
-      while ((line = br.readLine()) != null) {
-        if(line.length() == 0) continue; // Skip empty lines -- the last line will be empty
-        String[] parts = line.split(",");
-        float speed = Float.parseFloat(parts[0]);
-        float angle = Float.parseFloat(parts[1]);
-        launcherStateGrid.add(new LauncherState(speed, angle));
+    // The binary table is generated from launcherData.txt at build time; see LauncherTableGenerator
+    try (FileChannel channel = FileChannel.open(new File(Filesystem.getDeployDirectory(), "launcherData.bin").toPath(), StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if(buffer.getInt() != LauncherTableGenerator.fileMagic) throw new IOException("Not a launcher table");
+      int version = buffer.getInt();
+      if(version != LauncherTableGenerator.fileVersion) throw new IOException("Unsupported launcher table version " + version);
+
+      int xSize = buffer.getInt();
+      int ySize = buffer.getInt();
+      minx = buffer.getFloat();
+      maxx = buffer.getFloat();
+      miny = buffer.getFloat();
+      maxy = buffer.getFloat();
+
+      int pointCount = xSize * ySize;
+      if(buffer.remaining() != pointCount * 2 * Float.BYTES) throw new IOException("Launcher table is the wrong size");
+
+      FloatBuffer points = buffer.asFloatBuffer();
+      float[] speeds = new float[pointCount];
+      float[] angles = new float[pointCount];
+      for(int i = 0; i < pointCount; i++) {
+        speeds[i] = points.get();
+        angles[i] = points.get();
       }
+
+      speedGrid = speeds;
+      angleGrid = angles;
+      gridXSize = xSize;
+      gridYSize = ySize;
     } catch(IOException ioException) {
       DriverStation.reportWarning("WARNING: IO exception while reading automatic launcher control file: " + ioException.getLocalizedMessage(), false);
     }
   }
   
-  private LauncherState getGridPoint(int x, int y) {
-    x = Math.min(Math.max(x, 0), grid_x_size - 1);
-    y = Math.min(Math.max(y, 0), grid_y_size - 1);
+  private int getGridIndex(int x, int y) {
+    x = Math.min(Math.max(x, 0), gridXSize - 1);
+    y = Math.min(Math.max(y, 0), gridYSize - 1);
     
-    return launcherStateGrid.get(y * grid_x_size + x);
+    return y * gridXSize + x;
   }
   
   private LauncherState getLauncherStateLookupTable() {
-    Swerve swerve = Swerve.getInstance();
+    // If the table didn't load, don't set the launcher
+    if(speedGrid.length == 0) return new LauncherState(0, 0);
+
+    RobotState state = RobotState.getCurrent();
     
     // Find the closest 4 points in the lookup table and interpolate between them
     // Adjust for the robot's speed since by the time we reach the target, the robot will have moved
-    double lookaheadDistance = swerve.getRobotSpeed() * 0.2; // 0.2 is abritrary; let's say it takes 200ms to adjust the launcher
-    Pose2d pose = swerve.getPose().transformBy(new Transform2d(lookaheadDistance, 0.0, new Rotation2d()));
+    double lookaheadDistance = state.getRobotSpeed() * 0.2; // 0.2 is abritrary; let's say it takes 200ms to adjust the launcher
+    Pose2d pose = state.getPose().transformBy(new Transform2d(lookaheadDistance, 0.0, new Rotation2d()));
     Translation2d currentTranslation = pose.getTranslation();
     
     // We find the 4 closest points in the grid and bilinearly interpolate between them
-    int x1 = (int) Math.floor((currentTranslation.getX() - minx) / (maxx - minx) * (grid_x_size - 1));
-    int y1 = (int) Math.floor((currentTranslation.getY() - miny) / (maxy - miny) * (grid_y_size - 1));
+    int x1 = (int) Math.floor((currentTranslation.getX() - minx) / (maxx - minx) * (gridXSize - 1));
+    int y1 = (int) Math.floor((currentTranslation.getY() - miny) / (maxy - miny) * (gridYSize - 1));
     int x2 = x1 + 1;
     int y2 = y1 + 1;
     
-    double xfrac = (currentTranslation.getX() - minx) / (maxx - minx) * (grid_x_size - 1) - x1;
-    double yfrac = (currentTranslation.getY() - miny) / (maxy - miny) * (grid_y_size - 1) - y1;
+    double xfrac = (currentTranslation.getX() - minx) / (maxx - minx) * (gridXSize - 1) - x1;
+    double yfrac = (currentTranslation.getY() - miny) / (maxy - miny) * (gridYSize - 1) - y1;
     
-    LauncherState p1 = getGridPoint(x1, y1);
-    LauncherState p2 = getGridPoint(x2, y1);
-    LauncherState p3 = getGridPoint(x1, y2);
-    LauncherState p4 = getGridPoint(x2, y2);
+    int p1 = getGridIndex(x1, y1);
+    int p2 = getGridIndex(x2, y1);
+    int p3 = getGridIndex(x1, y2);
+    int p4 = getGridIndex(x2, y2);
     
-    double speed = (1 - xfrac) * (1 - yfrac) * p1.speed + xfrac * (1 - yfrac) * p2.speed + (1 - xfrac) * yfrac * p3.speed + xfrac * yfrac * p4.speed;
-    double angle = (1 - xfrac) * (1 - yfrac) * p1.angleDegrees + xfrac * (1 - yfrac) * p2.angleDegrees + (1 - xfrac) * yfrac * p3.angleDegrees + xfrac * yfrac * p4.angleDegrees;
+    double speed = (1 - xfrac) * (1 - yfrac) * speedGrid[p1] + xfrac * (1 - yfrac) * speedGrid[p2] + (1 - xfrac) * yfrac * speedGrid[p3] + xfrac * yfrac * speedGrid[p4];
+    double angle = (1 - xfrac) * (1 - yfrac) * angleGrid[p1] + xfrac * (1 - yfrac) * angleGrid[p2] + (1 - xfrac) * yfrac * angleGrid[p3] + xfrac * yfrac * angleGrid[p4];
     
     return new LauncherState(speed, angle * 0.9);
   }
@@ -122,14 +135,12 @@ public class AutomaticLauncherControl {
     // https://en.wikipedia.org/wiki/Projectile_motion#Angle_%CE%B8_required_to_hit_coordinate_(x,_y)
     // We find the "ideal" angle and speed by using the lowest speed that allows us to get to the target
     
-    Swerve swerve = Swerve.getInstance();
-    double lookaheadDistance = swerve.getRobotSpeed() * 0.2; // 0.2 is abritrary; let's say it takes 200ms to adjust the launcher
-    Pose2d pose = swerve.getPose().transformBy(new Transform2d(lookaheadDistance, 0.0, new Rotation2d()));
+    RobotState state = RobotState.getCurrent();
+    double lookaheadDistance = state.getRobotSpeed() * 0.2; // 0.2 is abritrary; let's say it takes 200ms to adjust the launcher
+    Pose2d pose = state.getPose().transformBy(new Transform2d(lookaheadDistance, 0.0, new Rotation2d()));
     Translation2d currentTranslation = pose.getTranslation();
 
-    double speakerInward = -0.1;
-    boolean isBlueAlliance = DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == DriverStation.Alliance.Blue;
-    Translation2d allianceSpeakerTranslation = isBlueAlliance ? new Translation2d(speakerInward, 5.55) : new Translation2d(Constants.fieldLengthMeters - speakerInward, 5.55);
+    Translation2d allianceSpeakerTranslation = new Translation2d(FieldGeometry.getInstance().getSpeakerX(), FieldGeometry.speakerY);
 
     // Project the position of the robot and speaker into a 2D plane, with the robot at (0, 0)
     double robotDistance = currentTranslation.getDistance(allianceSpeakerTranslation); // x
@@ -168,81 +179,13 @@ public class AutomaticLauncherControl {
     return new LauncherState(usedSpeedRPM, Units.radiansToDegrees(angleRadians));
   }
 
-  // Higher shot time = more correction for velocity (and acceleration depending on pipeline latency)
-  public static double getShotTime(double distance) {
-    if(SwerveAlignmentController.getInstance().getAlignmentMode() == AlignmentMode.AllianceSpeaker) return 0.35 * distance + 0.05;
-    else return 0.538 + -0.501 * distance + 0.218 * Math.pow(distance, 2) + -0.0147 * Math.pow(distance, 3);
-  }
-
-  // https://docs.google.com/spreadsheets/d/1dXLGZ84TEYzmvrYkXQ3SZOwmgObqmYSdxnnUZoMg85Bo/edit?usp=sharing
-  // Very rudimentary model for now
-  private static double getSpeed(double distance, Rotation2d angle) {
-    double speakerAngle = angle.getDegrees();
-    double startAngle = SwerveAlignmentController.farInterpolationStartAngle.getDegrees();
-    double angleWidth = SwerveAlignmentController.farInterpolationWidth.getDegrees();
-    if(speakerAngle < startAngle) {
-      return getSpeedAcute(distance);
-    } else if(speakerAngle > startAngle + angleWidth) {
-      return getSpeedObtuse(distance);
-    } else {
-      double interpolation = (speakerAngle - startAngle) / angleWidth;
-      double acute = getSpeedAcute(distance);
-      double obtuse = getSpeedObtuse(distance);
-      return MathUtil.interpolate(acute, obtuse, interpolation);
-    }
-  }
-  private static double getAngle(double distance, Rotation2d angle) {
-    double speakerAngle = angle.getDegrees();
-    double startAngle = SwerveAlignmentController.farInterpolationStartAngle.getDegrees();
-    double angleWidth = SwerveAlignmentController.farInterpolationWidth.getDegrees();
-    if(speakerAngle < startAngle) {
-      return getAngleAcute(distance);
-    } else if(speakerAngle > startAngle + angleWidth) {
-      return getAngleObtuse(distance);
-    } else {
-      double interpolation = (speakerAngle - startAngle) / angleWidth;
-      double acute = getAngleAcute(distance);
-      double obtuse = getAngleObtuse(distance);
-      return MathUtil.interpolate(acute, obtuse, interpolation);
-    }
-  }
-
-  private static double getSpeedAcute(double distance) {
-    if(SwerveAlignmentController.getInstance().getAlignmentMode() == AlignmentMode.AllianceSpeaker) return 6125;
-    else return getLobSpeed(distance);
-  }
-  private static double getAngleAcute(double distance) {
-    if(SwerveAlignmentController.getInstance().getAlignmentMode() == AlignmentMode.AllianceSpeaker) return 97.2 * Math.exp(-0.473 * distance) * 1.06 + 0.8;
-    else return getLobAngle(distance);
-  }
-  private static double getSpeedObtuse(double distance) {
-    if(SwerveAlignmentController.getInstance().getAlignmentMode() == AlignmentMode.AllianceSpeaker) return 6125;
-    else return getLobSpeed(distance);
-  }
-  private static double getAngleObtuse(double distance) {
-    if(SwerveAlignmentController.getInstance().getAlignmentMode() == AlignmentMode.AllianceSpeaker) return getAngleAcute(distance) * 1.035 - 0.2;
-    else return getLobAngle(distance);
-  }
-
-  private static double getLobSpeed(double distance) {
-    distance = Math.min(distance, 10);
-    return 756 + 185 * distance + 49.8 * Math.pow(distance, 2) + -3.92 * Math.pow(distance, 3);
-  }
-  private static double getLobAngle(double distance) {
-    distance = Math.min(distance, 10);
-    return 19.2 + 1.63 * distance + 1.17 * Math.pow(distance, 2) + -0.0969 * Math.pow(distance, 3);
-  }
-
   private LauncherState getLauncherStateTimeBasedPrediction() {
-    double distance = SwerveAlignmentController.getInstance().currentShotDistance;
-    Rotation2d speakerAngle = SwerveAlignmentController.getInstance().targetAngle;
-    Logger.recordOutput("Launcher/AutomaticControl/Distance", distance);
-    Logger.recordOutput("Launcher/AutomaticControl/SpeakerAngle", speakerAngle);
-
-    double speed = MathUtil.clamp(getSpeed(distance, speakerAngle), 150, 6800);
-    double angle = MathUtil.clamp(getAngle(distance, speakerAngle), 20, 60);
+    // The alignment controller solves the whole shot while aiming, so we just use its launcher state
+    SwerveAlignmentController alignmentController = SwerveAlignmentController.getInstance();
+    Logger.recordOutput("Launcher/AutomaticControl/Distance", alignmentController.currentShotDistance);
+    Logger.recordOutput("Launcher/AutomaticControl/SpeakerAngle", alignmentController.targetAngle);
 
-    return new LauncherState(speed, angle);
+    return new LauncherState(alignmentController.currentShotSpeed, alignmentController.currentShotAngle);
   }
   
   public enum LauncherControlType {
@@ -286,10 +229,13 @@ public class AutomaticLauncherControl {
     launcher.setLauncherState(state);
     
     boolean launcherAtSetpoints = launcher.atSetpoints();
+    // Tell the operator to launch once the rollers will be at speed by the time the note gets to them
+    boolean launcherReady = launcher.willBeReadyWithin(Constants.Launcher.noteFeedTimeSeconds);
     boolean atTarget = SwerveAlignmentController.getInstance().atTarget;
     Logger.recordOutput("Launcher/AutomaticControl/AtSetpoints", launcherAtSetpoints);
+    Logger.recordOutput("Launcher/AutomaticControl/PredictedReady", launcherReady);
     Logger.recordOutput("Launcher/AutomaticControl/AtTarget", atTarget);
-    if(!inAuto && launcherAtSetpoints && atTarget) {
+    if(!inAuto && launcherReady && atTarget) {
       VibrationFeedback.getInstance().addToOperatorLeft(1.0);
       VibrationFeedback.getInstance().addToOperatorRight(1.0);
       VibrationFeedback.getInstance().addToDriverLeft(0.3);
@@ -7,7 +7,7 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.RobotBase;
-import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import edu.wpi.first.wpilibj.XboxController;
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
@@ -15,12 +15,14 @@ import edu.wpi.first.wpilibj2.command.RepeatCommand;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 import frc.robot.Constants;
+import frc.robot.FieldGeometry;
 import frc.robot.commands.DriveCommands;
 import frc.robot.commands.StoreModuleOffsets;
 import frc.robot.commands.TeleopIntake;
 import frc.robot.commands.climber.ClimberControls;
 import frc.robot.commands.control.PathfindingCommands;
 import frc.robot.commands.transport.SetLauncherState;
+import frc.robot.controls.ShotCorrectionGrid.ShotOutcome;
 import frc.robot.controls.SwerveAlignmentController.AlignmentMode;
 import frc.robot.subsystems.Superstructure;
 import frc.robot.subsystems.climber.Climber;
@@ -110,17 +112,11 @@ public class Controls {
         driver.b().whileTrue(PathfindingCommands.pathfindToAmpAndLaunch());
         
         driver.a().onTrue(new InstantCommand(() -> {
-            if(DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == Alliance.Blue) {
-                swerveSubsystem.setPose(new Pose2d(
-                    new Translation2d(1.37, 5.55),
-                    new Rotation2d()
-                ));
-            } else {
-                swerveSubsystem.setPose(new Pose2d(
-                    new Translation2d(Constants.fieldLengthMeters - 1.37, 5.55),
-                    Rotation2d.fromDegrees(180)
-                ));
-            }
+            FieldGeometry field = FieldGeometry.getInstance();
+            swerveSubsystem.setPose(new Pose2d(
+                new Translation2d(field.getSubwooferX(), FieldGeometry.speakerY),
+                field.isBlueAlliance() ? new Rotation2d() : Rotation2d.fromDegrees(180)
+            ));
         }));
 
         /*//////////////////////////*/
@@ -175,5 +171,13 @@ public class Controls {
         ));
 
         operator.back().whileTrue(new StoreModuleOffsets().onlyIf(DriverStation::isTest));
+
+        // Mark how the last shot went so we can refine our shot model
+        ShotRecorder shotRecorder = ShotRecorder.getInstance();
+        // The right stick isn't used otherwise: press it for a hit, flick it up for a shot that went long, and
+        // down for one that fell short
+        operator.rightStick().onTrue(new InstantCommand(() -> shotRecorder.markOutcome(ShotOutcome.Hit)));
+        operator.axisLessThan(XboxController.Axis.kRightY.value, -0.7).onTrue(new InstantCommand(() -> shotRecorder.markOutcome(ShotOutcome.MissLong)));
+        operator.axisGreaterThan(XboxController.Axis.kRightY.value, 0.7).onTrue(new InstantCommand(() -> shotRecorder.markOutcome(ShotOutcome.MissShort)));
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package frc.robot.controls;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Converts the launcher lookup table from the text format written by misc/launcherAimDataProcessing.ipynb
+ * into the binary format memory-mapped by {@link AutomaticLauncherControl}. This runs through the
+ * {@code generateLauncherTable} Gradle task, which deploying and simulating run first.
+ *
+ * <p>The binary format is big-endian: a magic number, a version, the grid X and Y sizes as ints, the
+ * minimum X, maximum X, minimum Y, and maximum Y as floats, and then a packed (speed, angle) float pair
+ * for each grid point, with X varying fastest.
+ */
+public final class LauncherTableGenerator {
+  private LauncherTableGenerator() {}
+
+  public static final int fileMagic = 0x4c4e4348; // "LNCH"
+  public static final int fileVersion = 1;
+
+  /**
+   * Converts a table.
+   * @param textFile
+   * @param binaryFile
+   * @return The number of grid points written.
+   * @throws IOException
+   */
+  public static int convert(File textFile, File binaryFile) throws IOException {
+    try (
+      BufferedReader input = new BufferedReader(new FileReader(textFile));
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(binaryFile)))
+    ) {
+      String[] sizes = input.readLine().split(":");
+      int gridXSize = Integer.parseInt(sizes[0]);
+      int gridYSize = Integer.parseInt(sizes[1]);
+
+      output.writeInt(fileMagic);
+      output.writeInt(fileVersion);
+      output.writeInt(gridXSize);
+      output.writeInt(gridYSize);
+      for(int i = 2; i < 6; i++) output.writeFloat(Float.parseFloat(sizes[i]));
+
+      int pointCount = 0;
+      String line;
+      while ((line = input.readLine()) != null) {
+        if(line.length() == 0) continue; // Skip empty lines -- the last line will be empty
+        String[] parts = line.split(",");
+        output.writeFloat(Float.parseFloat(parts[0]));
+        output.writeFloat(Float.parseFloat(parts[1]));
+        pointCount++;
+      }
+
+      if(pointCount != gridXSize * gridYSize) {
+        throw new IOException("Expected " + (gridXSize * gridYSize) + " launcher table points but found " + pointCount);
+      }
+      return pointCount;
+    }
+  }
+
+  /**
+   * Converts the launcher table.
+   * @param args The text table to read and the binary table to write.
+   */
+  public static void main(String[] args) throws IOException {
+    if(args.length != 2) {
+      System.err.println("Usage: LauncherTableGenerator <text table> <binary table>");
+      System.exit(1);
+    }
+
+    File binaryFile = new File(args[1]);
+    int pointCount = convert(new File(args[0]), binaryFile);
+    System.out.println("Wrote " + binaryFile + " (" + pointCount + " points, " + binaryFile.length() + " bytes)");
+  }
+}
@@ -0,0 +1,191 @@
+package frc.robot.controls;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import frc.robot.Constants;
+import frc.robot.controls.NoteShotSimulator.ShotResult;
+
+/**
+ * A command line tool that builds the launcher lookup table and the speaker shot time curve from
+ * {@link NoteShotSimulator} instead of from hand-collected points in misc/launcherAimDataProcessing.ipynb.
+ *
+ * <p>The field grid is split across cores with fork/join, so regenerating the whole table takes seconds.
+ * The launcher table is written in the same text format as the notebook's, so it can replace
+ * launcherData.txt directly; the shot time curve is a CSV of distance, flight time, and launch angle for
+ * refitting {@link ShotModel#getShotTime}. Run it with the {@code simulateLauncherTable} Gradle task.
+ */
+public final class LauncherTableSimulator {
+  private LauncherTableSimulator() {}
+
+  // These match the notebook's grid and FieldGeometry's red speaker; the table is mirrored for blue
+  private static final double fieldLengthMeters = 16.485;
+  private static final double fieldWidthMeters = 8.103;
+  private static final double gridSpacingMeters = 0.3;
+  private static final double speakerX = fieldLengthMeters + 0.08;
+  private static final double speakerY = 5.55;
+  /** The height of the middle of the speaker opening, in meters. */
+  private static final double speakerHeightMeters = 2.045;
+
+  /** The roller speed we shoot at the speaker with; this matches {@link ShotModel}'s speaker fit. */
+  private static final double speakerRollerRPM = 6125;
+  /** The roller speed the launcher actually reaches for speaker shots, since it clamps its setpoints. */
+  private static final double launchRollerRPM = Math.min(speakerRollerRPM, Constants.Launcher.maxRollerVelocity);
+  /** The bottom roller speed relative to the top when leveling the note; this matches {@code Launcher.setLauncherSpeed}. */
+  private static final double levelNoteBottomRollerRatio = 0.65;
+
+  /** How many grid points each fork/join task solves without splitting further. */
+  private static final int pointsPerTask = 16;
+
+  private static final class SolveTask extends RecursiveAction {
+    private final double[] distances;
+    private final float[] angles;
+    private final float[] flightTimes;
+    private final AtomicInteger unreachableCount;
+    private final int start;
+    private final int end;
+
+    SolveTask(double[] distances, float[] angles, float[] flightTimes, AtomicInteger unreachableCount, int start, int end) {
+      this.distances = distances;
+      this.angles = angles;
+      this.flightTimes = flightTimes;
+      this.unreachableCount = unreachableCount;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start > pointsPerTask) {
+        int middle = (start + end) >>> 1;
+        invokeAll(
+          new SolveTask(distances, angles, flightTimes, unreachableCount, start, middle),
+          new SolveTask(distances, angles, flightTimes, unreachableCount, middle, end)
+        );
+        return;
+      }
+
+      NoteShotSimulator simulator = new NoteShotSimulator();
+      ShotResult result = new ShotResult();
+      double topRPM = launchRollerRPM;
+      double bottomRPM = launchRollerRPM * levelNoteBottomRollerRatio;
+      for(int i = start; i < end; i++) {
+        double angle = simulator.solveLaunchAngle(
+          topRPM, bottomRPM, distances[i], speakerHeightMeters, ShotModel.minAngle, ShotModel.maxAngle, result
+        );
+        if(Double.isNaN(angle)) {
+          // Out of range; aim as high as we can
+          unreachableCount.incrementAndGet();
+          angle = ShotModel.maxAngle;
+          simulator.simulate(topRPM, bottomRPM, angle, distances[i], result);
+        }
+        angles[i] = (float)angle;
+        flightTimes[i] = result.reachedTarget ? (float)result.flightTimeSeconds : Float.NaN;
+      }
+    }
+  }
+
+  /**
+   * Solves the launch angle and flight time for every distance in parallel.
+   * @param pool
+   * @param distances
+   * @param angles
+   * @param flightTimes
+   * @return The number of distances that couldn't be reached.
+   */
+  private static int solveAll(ForkJoinPool pool, double[] distances, float[] angles, float[] flightTimes) {
+    AtomicInteger unreachableCount = new AtomicInteger();
+    pool.invoke(new SolveTask(distances, angles, flightTimes, unreachableCount, 0, distances.length));
+    return unreachableCount.get();
+  }
+
+  /**
+   * Writes the launcher lookup table.
+   * @param pool
+   * @param file
+   * @throws IOException
+   */
+  public static void writeLauncherTable(ForkJoinPool pool, File file) throws IOException {
+    int gridXSize = (int)Math.ceil(fieldLengthMeters / gridSpacingMeters);
+    int gridYSize = (int)Math.ceil(fieldWidthMeters / gridSpacingMeters);
+
+    // The header says the grid spans the whole field, so the points are spread evenly across it rather
+    // than placed exactly gridSpacingMeters apart. The grid is stored with X varying fastest.
+    double xSpacing = fieldLengthMeters / (gridXSize - 1);
+    double ySpacing = fieldWidthMeters / (gridYSize - 1);
+    double[] distances = new double[gridXSize * gridYSize];
+    for(int y = 0; y < gridYSize; y++) {
+      for(int x = 0; x < gridXSize; x++) {
+        double fieldX = x * xSpacing;
+        if(fieldX < fieldLengthMeters / 2) fieldX = fieldLengthMeters - fieldX;
+        distances[y * gridXSize + x] = Math.hypot(speakerX - fieldX, speakerY - y * ySpacing);
+      }
+    }
+
+    float[] angles = new float[distances.length];
+    float[] flightTimes = new float[distances.length];
+    int unreachableCount = solveAll(pool, distances, angles, flightTimes);
+
+    try(PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+      writer.printf(Locale.ROOT, "%d:%d:%s:%s:%s:%s\n", gridXSize, gridYSize, 0.0, fieldLengthMeters, 0.0, fieldWidthMeters);
+      for(int i = 0; i < distances.length; i++) {
+        writer.printf(Locale.ROOT, "%d,%.2f\n", Math.round(launchRollerRPM), angles[i]);
+      }
+    }
+    System.out.println("Wrote " + file + " (" + distances.length + " points, " + unreachableCount + " out of range)");
+  }
+
+  /**
+   * Writes the speaker shot time curve.
+   * @param pool
+   * @param file
+   * @throws IOException
+   */
+  public static void writeShotTimeCurve(ForkJoinPool pool, File file) throws IOException {
+    double minDistance = 1;
+    double maxDistance = 8;
+    double step = 0.1;
+    int count = (int)Math.round((maxDistance - minDistance) / step) + 1;
+    double[] distances = new double[count];
+    for(int i = 0; i < count; i++) distances[i] = minDistance + i * step;
+
+    float[] angles = new float[count];
+    float[] flightTimes = new float[count];
+    int unreachableCount = solveAll(pool, distances, angles, flightTimes);
+
+    try(PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+      writer.println("distance,shotTime,angle");
+      for(int i = 0; i < count; i++) {
+        writer.printf(Locale.ROOT, "%.2f,%.4f,%.2f\n", distances[i], flightTimes[i], angles[i]);
+      }
+    }
+    System.out.println("Wrote " + file + " (" + count + " points, " + unreachableCount + " out of range)");
+  }
+
+  /**
+   * Writes the launcher table and shot time curve.
+   * @param args The launcher table file and the shot time curve file to write.
+   */
+  public static void main(String[] args) throws IOException {
+    if(args.length != 2) {
+      System.err.println("Usage: LauncherTableSimulator <launcher table> <shot time curve>");
+      System.exit(1);
+    }
+
+    long startTime = System.nanoTime();
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    for(String path : args) {
+      File parent = new File(path).getAbsoluteFile().getParentFile();
+      if(!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Couldn't create " + parent);
+    }
+    writeLauncherTable(pool, new File(args[0]));
+    writeShotTimeCurve(pool, new File(args[1]));
+    System.out.printf(Locale.ROOT, "Simulated in %.2f s on %d threads\n", (System.nanoTime() - startTime) / 1e9, pool.getParallelism());
+  }
+}
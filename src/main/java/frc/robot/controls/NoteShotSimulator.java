@@ -0,0 +1,211 @@
+package frc.robot.controls;
+
+/**
+ * A 2D simulation of a note's flight from the launcher, with aerodynamic drag and lift from the spin
+ * the top and bottom rollers put on it. Used offline by {@link LauncherTableSimulator} to build launcher
+ * tables and shot time curves instead of fitting them by hand.
+ *
+ * <p>The simulation is in the vertical plane through the launcher and the target: X is the horizontal
+ * distance toward the target and Z is the height above the carpet. It doesn't depend on WPILib, so it
+ * can run anywhere.
+ *
+ * <p>The aerodynamic constants are starting estimates; they should be tuned against recorded shots.
+ * Instances aren't thread-safe, but they're cheap, so use one per thread.
+ */
+public class NoteShotSimulator {
+  private static final double gravity = 9.81;
+  private static final double airDensity = 1.2;
+
+  private static final double noteMassKg = 0.235;
+  private static final double noteOuterDiameterMeters = 0.356;
+  private static final double noteThicknessMeters = 0.0508;
+  /** The note flies roughly flat, so the area facing the air is its diameter times its thickness. */
+  private static final double noteFrontalAreaSquareMeters = noteOuterDiameterMeters * noteThicknessMeters;
+  private static final double dragCoefficient = 0.6;
+  /** The lift coefficient per unit of spin ratio (surface speed from spin over airspeed). */
+  private static final double liftCoefficientPerSpinRatio = 0.25;
+  private static final double maxLiftCoefficient = 0.3;
+
+  /** The roller surface speed the note leaves with, as a fraction of the average surface speed of the rollers. */
+  private static final double exitEfficiency = 0.5;
+  /** The fastest the rollers actually get to, in RPM. Faster setpoints are capped to this. */
+  public static final double maxRollerRPM = 4650;
+  /** Matches {@code Constants.Launcher.wheelRadiusMeters}; we don't use Constants here since it needs WPILib. */
+  private static final double rollerRadiusMeters = 0.0508;
+
+  /** The height the note leaves the launcher at, in meters. */
+  private static final double launchHeightMeters = 0.55;
+
+  private static final double timeStepSeconds = 0.001;
+  private static final double maxFlightTimeSeconds = 4;
+
+  /**
+   * The outcome of a simulated shot. Instances are reused between shots so simulating doesn't allocate.
+   */
+  public static final class ShotResult {
+    /** If the note reached the target distance before hitting the ground. */
+    public boolean reachedTarget;
+    /** The note's height when it reached the target distance, in meters. */
+    public double heightMeters;
+    /** The time the note took to reach the target distance, in seconds. */
+    public double flightTimeSeconds;
+    /** If the note was still rising when it reached the target distance. */
+    public boolean rising;
+  }
+
+  // Integration state: x, z, vx, vz
+  private final double[] state = new double[4];
+  private final double[] k1 = new double[4];
+  private final double[] k2 = new double[4];
+  private final double[] k3 = new double[4];
+  private final double[] k4 = new double[4];
+  private final double[] scratch = new double[4];
+  private double spinSurfaceSpeed;
+
+  /**
+   * Gets the speed the note leaves the launcher at.
+   * @param topRollerRPM
+   * @param bottomRollerRPM
+   * @return The exit speed, in meters per second.
+   */
+  public static double getExitSpeed(double topRollerRPM, double bottomRollerRPM) {
+    double averageSurfaceSpeed = (getSurfaceSpeed(topRollerRPM) + getSurfaceSpeed(bottomRollerRPM)) / 2;
+    return averageSurfaceSpeed * exitEfficiency;
+  }
+
+  private static double getSurfaceSpeed(double rollerRPM) {
+    return Math.min(rollerRPM, maxRollerRPM) / 60. * 2 * Math.PI * rollerRadiusMeters;
+  }
+
+  /**
+   * Simulates a shot until it reaches the target distance or hits the ground.
+   * @param topRollerRPM
+   * @param bottomRollerRPM
+   * @param launchAngleDegrees The angle above horizontal the note leaves at.
+   * @param targetDistanceMeters The horizontal distance to the target.
+   * @param result Where to store the outcome.
+   */
+  public void simulate(double topRollerRPM, double bottomRollerRPM, double launchAngleDegrees, double targetDistanceMeters, ShotResult result) {
+    double exitSpeed = getExitSpeed(topRollerRPM, bottomRollerRPM);
+    double launchAngle = Math.toRadians(launchAngleDegrees);
+    // A faster top roller puts backspin on the note, which lifts it
+    spinSurfaceSpeed = (getSurfaceSpeed(topRollerRPM) - getSurfaceSpeed(bottomRollerRPM)) / 2 * exitEfficiency;
+
+    state[0] = 0;
+    state[1] = launchHeightMeters;
+    state[2] = exitSpeed * Math.cos(launchAngle);
+    state[3] = exitSpeed * Math.sin(launchAngle);
+
+    double time = 0;
+    result.reachedTarget = false;
+    while(time < maxFlightTimeSeconds && state[1] > 0 && state[2] > 0) {
+      double lastX = state[0];
+      double lastZ = state[1];
+      double lastVz = state[3];
+      step();
+      time += timeStepSeconds;
+
+      if(state[0] >= targetDistanceMeters) {
+        // Interpolate to exactly the target distance
+        double fraction = (targetDistanceMeters - lastX) / (state[0] - lastX);
+        result.reachedTarget = true;
+        result.heightMeters = lastZ + (state[1] - lastZ) * fraction;
+        result.flightTimeSeconds = time - timeStepSeconds * (1 - fraction);
+        result.rising = lastVz + (state[3] - lastVz) * fraction > 0;
+        return;
+      }
+    }
+  }
+
+  /** Advances the state by one time step with RK4. */
+  private void step() {
+    computeDerivative(state, k1);
+    offsetState(k1, timeStepSeconds / 2);
+    computeDerivative(scratch, k2);
+    offsetState(k2, timeStepSeconds / 2);
+    computeDerivative(scratch, k3);
+    offsetState(k3, timeStepSeconds);
+    computeDerivative(scratch, k4);
+    for(int i = 0; i < 4; i++) {
+      state[i] += timeStepSeconds / 6 * (k1[i] + 2 * k2[i] + 2 * k3[i] + k4[i]);
+    }
+  }
+
+  private void offsetState(double[] rate, double dt) {
+    for(int i = 0; i < 4; i++) scratch[i] = state[i] + rate[i] * dt;
+  }
+
+  private void computeDerivative(double[] current, double[] output) {
+    double vx = current[2];
+    double vz = current[3];
+    double speed = Math.hypot(vx, vz);
+
+    double dragAcceleration = 0.5 * airDensity * dragCoefficient * noteFrontalAreaSquareMeters * speed * speed / noteMassKg;
+    double liftCoefficient = speed > 1e-6 ? liftCoefficientPerSpinRatio * spinSurfaceSpeed / speed : 0;
+    liftCoefficient = Math.max(-maxLiftCoefficient, Math.min(liftCoefficient, maxLiftCoefficient));
+    double liftAcceleration = 0.5 * airDensity * liftCoefficient * noteFrontalAreaSquareMeters * speed * speed / noteMassKg;
+
+    // Drag acts against the velocity; lift acts perpendicular to it
+    double unitX = speed > 1e-6 ? vx / speed : 0;
+    double unitZ = speed > 1e-6 ? vz / speed : 0;
+    output[0] = vx;
+    output[1] = vz;
+    output[2] = -dragAcceleration * unitX - liftAcceleration * unitZ;
+    output[3] = -dragAcceleration * unitZ + liftAcceleration * unitX - gravity;
+  }
+
+  /**
+   * Finds the lowest launch angle that puts the note at the target height at the target distance.
+   * Lower angles are flatter and faster, so they're less sensitive to distance errors.
+   * @param topRollerRPM
+   * @param bottomRollerRPM
+   * @param targetDistanceMeters
+   * @param targetHeightMeters
+   * @param minAngleDegrees
+   * @param maxAngleDegrees
+   * @param result Where to store the outcome of the solved shot.
+   * @return The launch angle in degrees, or NaN if no angle in the range reaches the target.
+   */
+  public double solveLaunchAngle(
+    double topRollerRPM,
+    double bottomRollerRPM,
+    double targetDistanceMeters,
+    double targetHeightMeters,
+    double minAngleDegrees,
+    double maxAngleDegrees,
+    ShotResult result
+  ) {
+    // Scan upward until we go from under the target to over it, then bisect
+    double scanStepDegrees = 1;
+    double lowAngle = minAngleDegrees;
+    double lowError = getHeightError(topRollerRPM, bottomRollerRPM, lowAngle, targetDistanceMeters, targetHeightMeters, result);
+    if(lowError == 0) return lowAngle;
+
+    for(double angle = minAngleDegrees + scanStepDegrees; angle <= maxAngleDegrees + 1e-9; angle += scanStepDegrees) {
+      double error = getHeightError(topRollerRPM, bottomRollerRPM, angle, targetDistanceMeters, targetHeightMeters, result);
+      if(lowError < 0 && error >= 0) {
+        double highAngle = angle;
+        for(int i = 0; i < 30; i++) {
+          double middle = (lowAngle + highAngle) / 2;
+          if(getHeightError(topRollerRPM, bottomRollerRPM, middle, targetDistanceMeters, targetHeightMeters, result) < 0) {
+            lowAngle = middle;
+          } else {
+            highAngle = middle;
+          }
+        }
+        simulate(topRollerRPM, bottomRollerRPM, highAngle, targetDistanceMeters, result);
+        return highAngle;
+      }
+      lowAngle = angle;
+      lowError = error;
+    }
+    return Double.NaN;
+  }
+
+  /** Gets how far above the target height a shot ends up; shots that fall short count as far below it. */
+  private double getHeightError(double topRollerRPM, double bottomRollerRPM, double angle, double distance, double height, ShotResult result) {
+    simulate(topRollerRPM, bottomRollerRPM, angle, distance, result);
+    if(!result.reachedTarget) return -height;
+    return result.heightMeters - height;
+  }
+}
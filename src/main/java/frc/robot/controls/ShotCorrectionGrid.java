@@ -0,0 +1,147 @@
+package frc.robot.controls;
+
+import frc.robot.controls.ShotModel.ShotTarget;
+
+/**
+ * Learned corrections on top of {@link ShotModel}, indexed by target and shot distance. Each missed shot
+ * nudges the correction at its distance toward making it, so the model can be tuned during an event
+ * without touching the fits or restarting code.
+ *
+ * <p>Speaker shots all use the same roller speed, so misses correct the launcher angle. Lob shots are
+ * mostly sensitive to roller speed, so misses correct the speed. Each update moves the two grid points
+ * around the shot distance by at most a fixed step, weighted by how close the shot was to them, and the
+ * total correction is bounded.
+ */
+public class ShotCorrectionGrid {
+  public enum ShotOutcome {
+    /** Nobody marked the shot. */
+    Unknown,
+    Hit,
+    /** The shot went over or past the target. */
+    MissLong,
+    /** The shot fell under or short of the target. */
+    MissShort
+  }
+
+  private static final double minDistance = 0;
+  private static final double maxDistance = 12;
+  private static final double distanceStep = 0.5;
+  private static final int pointCount = (int)Math.round((maxDistance - minDistance) / distanceStep) + 1;
+
+  /** The most a single miss changes the speaker angle correction, in degrees. */
+  private static final double angleStepDegrees = 0.5;
+  private static final double maxAngleCorrectionDegrees = 5;
+  /** The most a single miss changes the lob speed correction, in RPM. */
+  private static final double speedStepRPM = 75;
+  private static final double maxSpeedCorrectionRPM = 600;
+
+  private final double[][] angleCorrections = new double[ShotTarget.values().length][pointCount];
+  private final double[][] speedCorrections = new double[ShotTarget.values().length][pointCount];
+
+  /**
+   * Updates the corrections with the outcome of a shot. Hits and unmarked shots don't change anything.
+   * @param target
+   * @param distance The effective distance the shot was taken from, in meters.
+   * @param outcome
+   */
+  public void addOutcome(ShotTarget target, double distance, ShotOutcome outcome) {
+    if(outcome != ShotOutcome.MissLong && outcome != ShotOutcome.MissShort) return;
+    double direction = outcome == ShotOutcome.MissLong ? -1 : 1;
+
+    double position = getGridPosition(distance);
+    int lower = (int)Math.floor(position);
+    double fraction = position - lower;
+
+    if(target == ShotTarget.Speaker) {
+      // A higher angle sends speaker shots higher
+      nudge(angleCorrections[target.ordinal()], lower, fraction, direction * angleStepDegrees, maxAngleCorrectionDegrees);
+    } else {
+      nudge(speedCorrections[target.ordinal()], lower, fraction, direction * speedStepRPM, maxSpeedCorrectionRPM);
+    }
+  }
+
+  private static void nudge(double[] corrections, int lower, double fraction, double step, double limit) {
+    corrections[lower] = clamp(corrections[lower] + step * (1 - fraction), limit);
+    if(lower + 1 < corrections.length) {
+      corrections[lower + 1] = clamp(corrections[lower + 1] + step * fraction, limit);
+    }
+  }
+
+  private static double clamp(double value, double limit) {
+    return Math.max(-limit, Math.min(value, limit));
+  }
+
+  /**
+   * Gets the launcher angle correction for a shot.
+   * @param target
+   * @param distance The effective shot distance, in meters.
+   * @return The correction to add, in degrees.
+   */
+  public double getAngleCorrection(ShotTarget target, double distance) {
+    return interpolate(angleCorrections[target.ordinal()], distance);
+  }
+
+  /**
+   * Gets the roller speed correction for a shot.
+   * @param target
+   * @param distance The effective shot distance, in meters.
+   * @return The correction to add, in RPM.
+   */
+  public double getSpeedCorrection(ShotTarget target, double distance) {
+    return interpolate(speedCorrections[target.ordinal()], distance);
+  }
+
+  /**
+   * Gets a copy of every launcher angle correction, all of each target's points before the next target's.
+   * @return
+   */
+  public double[] getAngleCorrections() {
+    return flatten(angleCorrections);
+  }
+
+  /**
+   * Gets a copy of every roller speed correction, all of each target's points before the next target's.
+   * @return
+   */
+  public double[] getSpeedCorrections() {
+    return flatten(speedCorrections);
+  }
+
+  /**
+   * Replaces every correction, in the layout returned by {@link #getAngleCorrections} and {@link #getSpeedCorrections}.
+   * @param angleCorrections
+   * @param speedCorrections
+   * @return If the corrections were replaced. This is false if either array is the wrong size, in which case nothing changes.
+   */
+  public boolean setCorrections(double[] angleCorrections, double[] speedCorrections) {
+    int size = ShotTarget.values().length * pointCount;
+    if(angleCorrections.length != size || speedCorrections.length != size) return false;
+    for(int target = 0; target < ShotTarget.values().length; target++) {
+      System.arraycopy(angleCorrections, target * pointCount, this.angleCorrections[target], 0, pointCount);
+      System.arraycopy(speedCorrections, target * pointCount, this.speedCorrections[target], 0, pointCount);
+    }
+    return true;
+  }
+
+  private static double[] flatten(double[][] corrections) {
+    double[] flattened = new double[corrections.length * pointCount];
+    for(int target = 0; target < corrections.length; target++) {
+      System.arraycopy(corrections[target], 0, flattened, target * pointCount, pointCount);
+    }
+    return flattened;
+  }
+
+  private double interpolate(double[] corrections, double distance) {
+    double position = getGridPosition(distance);
+    int lower = (int)Math.floor(position);
+    if(lower + 1 >= corrections.length) return corrections[corrections.length - 1];
+    double fraction = position - lower;
+    return corrections[lower] * (1 - fraction) + corrections[lower + 1] * fraction;
+  }
+
+  /** Gets the fractional grid index for a distance, clamped to the grid. */
+  private double getGridPosition(double distance) {
+    double position = (distance - minDistance) / distanceStep;
+    return Math.max(0, Math.min(position, pointCount - 1));
+  }
+}
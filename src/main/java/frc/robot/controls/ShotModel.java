@@ -0,0 +1,265 @@
+package frc.robot.controls;
+
+/**
+ * The fitted models we use to aim while moving: how long a shot takes to reach the target, and the launcher
+ * speed and angle for a given distance and bearing.
+ *
+ * <p>These are pure functions of their arguments with no robot state, so {@link ShotTableGenerator} can
+ * evaluate them offline when building the shot tables. {@link #solve} is what the tables are built from; on
+ * the robot it's only used if a table couldn't be loaded.
+ *
+ * <p>Shots are solved in a frame relative to the target: the robot is at the origin and the target is
+ * straight ahead along the positive X axis. Radial velocity is the robot's velocity toward the target, and
+ * tangential velocity is its velocity 90 degrees counterclockwise from that.
+ */
+public final class ShotModel {
+  private ShotModel() {}
+
+  public enum ShotTarget {
+    Speaker,
+    Lob
+  }
+
+  /** The bearing to the speaker, in degrees from straight on, where we start blending toward the obtuse fits. */
+  public static final double farInterpolationStartDegrees = 10;
+  /** The width of the bearing range, in degrees, we blend between the acute and obtuse fits over. */
+  public static final double farInterpolationWidthDegrees = 22;
+
+  /** Roughly the pipeline latency in seconds. Acceleration is projected forward this far and added to the velocity we compensate for. */
+  public static final double accelerationCompensationSeconds = 0.1;
+  /** Ideally would be close to 1, but just to compensate for other inaccuracies. */
+  private static final double motionCorrectionFactor = 0.99;
+  /** How much of the motion-corrected distance, rather than the real distance, we use to pick the launcher state. */
+  private static final double useDistanceForLauncherFactor = 0.3;
+  /** The most times the solver evaluates the shot time fit before giving up. This bounds the solve time. */
+  public static final int maxIterations = 8;
+  /** How close, in seconds, the shot time has to be to the flight time at the aim point for a solution to count as converged. */
+  private static final double convergenceThresholdSeconds = 1e-4;
+  /** The longest shot we consider valid, in seconds. Anything longer means we're outrunning our own shot. */
+  private static final double maxShotTimeSeconds = 3;
+
+  public static final double minSpeed = 150;
+  public static final double maxSpeed = 6800;
+  public static final double minAngle = 20;
+  public static final double maxAngle = 60;
+
+  /** The distance along the line to the target of the point we should aim at, in meters. */
+  public static final int AIM_ALONG = 0;
+  /** The distance across the line to the target, counterclockwise positive, of the point we should aim at, in meters. */
+  public static final int AIM_ACROSS = 1;
+  /** The distance used to pick the launcher state, in meters. */
+  public static final int EFFECTIVE_DISTANCE = 2;
+  /** The launcher speed, in RPM. */
+  public static final int SPEED = 3;
+  /** The launcher angle, in degrees. */
+  public static final int ANGLE = 4;
+  public static final int SOLUTION_SIZE = 5;
+
+  /**
+   * Gets the time a shot takes to reach the target.
+   * Higher shot time = more correction for velocity (and acceleration depending on pipeline latency).
+   * @param target
+   * @param distance The distance to the target, in meters.
+   * @return The shot time, in seconds.
+   */
+  public static double getShotTime(ShotTarget target, double distance) {
+    if(target == ShotTarget.Speaker) return 0.35 * distance + 0.05;
+    // Past the end of the lob fits the launcher state stops changing, so the flight time doesn't either.
+    // The cubic also goes negative a little past 12 meters.
+    distance = Math.min(distance, 10);
+    return 0.538 + -0.501 * distance + 0.218 * Math.pow(distance, 2) + -0.0147 * Math.pow(distance, 3);
+  }
+
+  /**
+   * Gets how far we are between the acute and obtuse fits.
+   * @param bearingDegrees The absolute bearing to the target, in degrees from straight on.
+   * @return 0 for fully acute, 1 for fully obtuse.
+   */
+  public static double getObtuseInterpolation(double bearingDegrees) {
+    if(bearingDegrees < farInterpolationStartDegrees) return 0;
+    if(bearingDegrees > farInterpolationStartDegrees + farInterpolationWidthDegrees) return 1;
+    return (bearingDegrees - farInterpolationStartDegrees) / farInterpolationWidthDegrees;
+  }
+
+  // https://docs.google.com/spreadsheets/d/1dXLGZ84TEYzmvrYkXQ3SZOwmgObqmYSdxnnUZoMg85Bo/edit?usp=sharing
+  // Very rudimentary model for now
+  /**
+   * Gets the launcher speed for a shot, before clamping.
+   * @param target
+   * @param distance The distance to the target, in meters.
+   * @param bearingDegrees The absolute bearing to the target, in degrees from straight on.
+   * @return The speed, in RPM.
+   */
+  public static double getSpeed(ShotTarget target, double distance, double bearingDegrees) {
+    double interpolation = getObtuseInterpolation(bearingDegrees);
+    return interpolate(getSpeedAcute(target, distance), getSpeedObtuse(target, distance), interpolation);
+  }
+
+  /**
+   * Gets the launcher angle for a shot, before clamping.
+   * @param target
+   * @param distance The distance to the target, in meters.
+   * @param bearingDegrees The absolute bearing to the target, in degrees from straight on.
+   * @return The angle, in degrees.
+   */
+  public static double getAngle(ShotTarget target, double distance, double bearingDegrees) {
+    double interpolation = getObtuseInterpolation(bearingDegrees);
+    return interpolate(getAngleAcute(target, distance), getAngleObtuse(target, distance), interpolation);
+  }
+
+  private static double getSpeedAcute(ShotTarget target, double distance) {
+    if(target == ShotTarget.Speaker) return 6125;
+    else return getLobSpeed(distance);
+  }
+  private static double getAngleAcute(ShotTarget target, double distance) {
+    if(target == ShotTarget.Speaker) return 97.2 * Math.exp(-0.473 * distance) * 1.06 + 0.8;
+    else return getLobAngle(distance);
+  }
+  private static double getSpeedObtuse(ShotTarget target, double distance) {
+    if(target == ShotTarget.Speaker) return 6125;
+    else return getLobSpeed(distance);
+  }
+  private static double getAngleObtuse(ShotTarget target, double distance) {
+    if(target == ShotTarget.Speaker) return getAngleAcute(target, distance) * 1.035 - 0.2;
+    else return getLobAngle(distance);
+  }
+
+  private static double getLobSpeed(double distance) {
+    distance = Math.min(distance, 10);
+    return 756 + 185 * distance + 49.8 * Math.pow(distance, 2) + -3.92 * Math.pow(distance, 3);
+  }
+  private static double getLobAngle(double distance) {
+    distance = Math.min(distance, 10);
+    return 19.2 + 1.63 * distance + 1.17 * Math.pow(distance, 2) + -0.0969 * Math.pow(distance, 3);
+  }
+
+  /**
+   * How a call to {@link #solve} went. Instances are meant to be reused between calls so solving doesn't allocate.
+   */
+  public static final class SolveStatus {
+    /** If the shot time converged. If not, the solution only leads the target by the shot time for the real distance. */
+    public boolean converged;
+    /** The number of times the shot time fit was evaluated. */
+    public int iterations;
+    /** The difference between the final shot time and the flight time to the aim point, in seconds. */
+    public double residualSeconds;
+    /** The shot time of the solution, in seconds. */
+    public double shotTimeSeconds;
+  }
+
+  /**
+   * Solves for where to aim and how to set the launcher while moving.
+   *
+   * <p>We aim at the target shifted back by how far the robot will move during the shot. That changes the
+   * distance and therefore the shot time, so we need the shot time {@code t} where
+   * {@code getShotTime(distanceToAimPoint(t)) = t}. This finds it with the secant method, starting from the
+   * shot time for a stationary robot, and stops after {@link #maxIterations} evaluations.
+   *
+   * <p>If it doesn't converge to a sensible shot time (for example, when we're driving away from the target
+   * faster than the shot gets there), the solution falls back to leading the target by the shot time for
+   * the real distance.
+   * @param target
+   * @param distance The distance to the target, in meters.
+   * @param bearingDegrees The absolute bearing to the target, in degrees from straight on.
+   * @param radialVelocity The robot's velocity toward the target, in meters per second.
+   * @param tangentialVelocity The robot's velocity across the line to the target, counterclockwise positive, in meters per second.
+   * @param solution The array to store the solution in, indexed by {@link #AIM_ALONG} and friends.
+   * @param status Where to store how the solve went.
+   */
+  public static void solve(
+    ShotTarget target,
+    double distance,
+    double bearingDegrees,
+    double radialVelocity,
+    double tangentialVelocity,
+    double[] solution,
+    SolveStatus status
+  ) {
+    double alongVelocity = radialVelocity * motionCorrectionFactor;
+    double acrossVelocity = tangentialVelocity * motionCorrectionFactor;
+
+    // The residual is how far the shot time is from the flight time to the aim point it implies
+    double previousShotTime = getShotTime(target, distance);
+    double previousResidual = getShotTime(target, getAimDistance(distance, alongVelocity, acrossVelocity, previousShotTime)) - previousShotTime;
+    int iterations = 2;
+
+    // Take a fixed-point step to get the second point for the secant method
+    double shotTime = previousShotTime + previousResidual;
+    double residual = previousResidual;
+    boolean converged = Math.abs(previousResidual) < convergenceThresholdSeconds;
+    if(converged) {
+      shotTime = previousShotTime;
+    }
+
+    while(!converged && iterations < maxIterations) {
+      residual = getShotTime(target, getAimDistance(distance, alongVelocity, acrossVelocity, shotTime)) - shotTime;
+      iterations++;
+      if(!Double.isFinite(residual)) break;
+      if(Math.abs(residual) < convergenceThresholdSeconds) {
+        converged = true;
+        break;
+      }
+
+      double slope = (residual - previousResidual) / (shotTime - previousShotTime);
+      if(!Double.isFinite(slope) || slope == 0) break;
+
+      previousShotTime = shotTime;
+      previousResidual = residual;
+      // Keep the guesses in the range of shot times we'd accept anyway so a bad step can't run off
+      shotTime = clamp(shotTime - residual / slope, 0, maxShotTimeSeconds);
+    }
+
+    // A solution behind us means the shot never catches up with the target
+    converged = converged && shotTime > 0 && shotTime <= maxShotTimeSeconds && distance - shotTime * alongVelocity > 0;
+    if(!converged) {
+      // Lead the target by the shot time for our real distance. This is just the first step of the
+      // iteration, so it's always bounded, and it's what we'd converge to if we weren't moving.
+      shotTime = getShotTime(target, distance);
+    }
+    double aimAlong = distance - shotTime * alongVelocity;
+    double aimAcross = -shotTime * acrossVelocity;
+    double correctedDistance = Math.hypot(aimAlong, aimAcross);
+
+    status.converged = converged;
+    status.iterations = iterations;
+    status.residualSeconds = residual;
+    status.shotTimeSeconds = shotTime;
+
+    double effectiveDistance = correctedDistance * useDistanceForLauncherFactor + distance * (1 - useDistanceForLauncherFactor);
+
+    solution[AIM_ALONG] = aimAlong;
+    solution[AIM_ACROSS] = aimAcross;
+    solution[EFFECTIVE_DISTANCE] = effectiveDistance;
+    solution[SPEED] = clamp(getSpeed(target, effectiveDistance, bearingDegrees), minSpeed, maxSpeed);
+    solution[ANGLE] = clamp(getAngle(target, effectiveDistance, bearingDegrees), minAngle, maxAngle);
+  }
+
+  /**
+   * Gets the distance to the point we'd aim at for a given shot time.
+   * @param distance The distance to the target, in meters.
+   * @param alongVelocity The corrected radial velocity, in meters per second.
+   * @param acrossVelocity The corrected tangential velocity, in meters per second.
+   * @param shotTime The shot time, in seconds.
+   * @return
+   */
+  private static double getAimDistance(double distance, double alongVelocity, double acrossVelocity, double shotTime) {
+    return Math.hypot(distance - shotTime * alongVelocity, shotTime * acrossVelocity);
+  }
+
+  /**
+   * Gets the heading offset from pointing straight at the target to pointing at the aim point of a solution.
+   * @param solution
+   * @return The offset, counterclockwise positive, in radians.
+   */
+  public static double getHeadingOffset(double[] solution) {
+    return Math.atan2(solution[AIM_ACROSS], solution[AIM_ALONG]);
+  }
+
+  // These match MathUtil, but we don't depend on WPILib so the generator can run without the native libraries
+  private static double interpolate(double start, double end, double t) {
+    return start + (end - start) * t;
+  }
+  private static double clamp(double value, double low, double high) {
+    return Math.max(low, Math.min(value, high));
+  }
+}
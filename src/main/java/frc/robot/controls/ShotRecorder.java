@@ -0,0 +1,324 @@
+package frc.robot.controls;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.Logger;
+import org.littletonrobotics.junction.inputs.LoggableInputs;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.Notifier;
+import frc.lib.drive.FieldRelativeVelocity;
+import frc.lib.util.SpscDoubleRing;
+import frc.robot.Constants;
+import frc.robot.RobotState;
+import frc.robot.controls.ShotCorrectionGrid.ShotOutcome;
+import frc.robot.controls.ShotModel.ShotTarget;
+import frc.robot.controls.SwerveAlignmentController.AlignmentMode;
+import frc.robot.subsystems.launcher.Launcher;
+import frc.robot.subsystems.transport.Transport;
+import frc.robot.subsystems.transport.Transport.TransportState;
+
+/**
+ * Records every launched note with the state we shot it from and whether it went in, and feeds the
+ * outcomes into a {@link ShotCorrectionGrid}.
+ *
+ * <p>When the transport starts launching a note, in auto or teleop, we capture the distance, bearing, robot
+ * velocity, and the commanded and measured launcher state. Only shots aimed by the {@link SwerveAlignmentController}
+ * are recorded, since the corrections are keyed on its distance and only apply to shots it aims. The operator then
+ * has a few seconds to mark the shot as a hit, long, or short; unmarked shots are recorded as unknown. Finished records are appended to a binary file on the roboRIO,
+ * and the file is replayed through the correction grid at boot so the corrections survive restarts.
+ *
+ * <p>The corrections loaded at boot are logged as inputs, so replaying a log starts from the same
+ * corrections the robot had; every later change comes from logged operator inputs. Records are written
+ * to the file from a background notifier so the disk never stalls the main loop.
+ *
+ * <p>The file starts with a magic number, a version, and the record size, followed by fixed-size
+ * big-endian records; see {@link #writeQueuedRecords} for the layout. Delete it to reset the corrections.
+ */
+public class ShotRecorder {
+  private static ShotRecorder instance = null;
+  public static ShotRecorder getInstance() {
+    if(instance == null) {
+      instance = new ShotRecorder();
+    }
+    return instance;
+  }
+
+  private static final String fileName = "shotRecords.bin";
+  private static final int fileMagic = 0x53524543; // "SREC"
+  private static final int fileVersion = 1;
+  private static final int recordBytes = Double.BYTES + 2 + 9 * Float.BYTES;
+
+  /** How long the operator has to mark a shot, in seconds. */
+  private static final double markWindowSeconds = 4;
+
+  /** How many finished records can wait for the writer before new ones are dropped. */
+  private static final int recordQueueCapacity = 32;
+  /** How often the writer appends waiting records to the file, in seconds. */
+  private static final double writePeriodSeconds = 0.5;
+  // The columns of a queued record, in the order they're written
+  private static final int TIMESTAMP = 0;
+  private static final int TARGET = 1;
+  private static final int OUTCOME = 2;
+  private static final int FIRST_FLOAT = 3;
+  private static final int RECORD_COLUMNS = FIRST_FLOAT + 9;
+
+  private static class LoadedCorrectionsInputs implements LoggableInputs {
+    public int replayedShots = 0;
+    public double[] angleCorrections = new double[0];
+    public double[] speedCorrections = new double[0];
+
+    @Override
+    public void toLog(LogTable table) {
+      table.put("ReplayedShots", replayedShots);
+      table.put("AngleCorrections", angleCorrections);
+      table.put("SpeedCorrections", speedCorrections);
+    }
+
+    @Override
+    public void fromLog(LogTable table) {
+      replayedShots = table.get("ReplayedShots", 0);
+      angleCorrections = table.get("AngleCorrections", new double[0]);
+      speedCorrections = table.get("SpeedCorrections", new double[0]);
+    }
+  }
+
+  private final ShotCorrectionGrid corrections = new ShotCorrectionGrid();
+  /** The record file. Only used by the writer notifier once it's started. */
+  private DataOutputStream output = null;
+  private final SpscDoubleRing recordQueue = new SpscDoubleRing(recordQueueCapacity, RECORD_COLUMNS);
+  private final double[] recordRow = new double[RECORD_COLUMNS];
+  private Notifier writerNotifier = null;
+
+  // The shot waiting to be marked
+  private boolean hasPendingShot = false;
+  private double pendingTimestamp;
+  private ShotTarget pendingTarget;
+  private float pendingDistance;
+  private float pendingBearingDegrees;
+  private float pendingVelocityX;
+  private float pendingVelocityY;
+  private float pendingCommandedSpeed;
+  private float pendingCommandedAngle;
+  private float pendingMeasuredTopSpeed;
+  private float pendingMeasuredBottomSpeed;
+  private float pendingMeasuredAngle;
+
+  private int hitCount = 0;
+  private int missCount = 0;
+
+  private ShotRecorder() {
+    // Transitions to LaunchingNote only come from commands, so this runs on the main thread
+    Transport.getInstance().onEntry(TransportState.LaunchingNote, this::recordLaunch);
+
+    LoadedCorrectionsInputs loadedCorrections = new LoadedCorrectionsInputs();
+
+    // Only keep a record file on the robot; we don't want simulation or replay shots to tune the real robot
+    if(Constants.currentMode == Constants.Mode.REAL) {
+      File file = new File(Filesystem.getOperatingDirectory(), fileName);
+      boolean newFile = !file.exists() || file.length() == 0;
+      if(!newFile) loadedCorrections.replayedShots = replay(file);
+      loadedCorrections.angleCorrections = corrections.getAngleCorrections();
+      loadedCorrections.speedCorrections = corrections.getSpeedCorrections();
+      openOutput(file, newFile);
+    }
+
+    // We're constructed during robotInit, so in replay this reads back what the robot loaded at boot
+    Logger.processInputs("ShotRecorder/LoadedCorrections", loadedCorrections);
+    if(
+      loadedCorrections.angleCorrections.length > 0 &&
+      !corrections.setCorrections(loadedCorrections.angleCorrections, loadedCorrections.speedCorrections)
+    ) {
+      DriverStation.reportWarning("WARNING: The logged shot corrections don't match the correction grid; starting without corrections", false);
+    }
+  }
+
+  /**
+   * Opens the record file for appending and starts the writer.
+   * @param file
+   * @param newFile If the file needs a header.
+   */
+  private void openOutput(File file, boolean newFile) {
+    try {
+      output = new DataOutputStream(new FileOutputStream(file, true));
+      if(newFile) {
+        output.writeInt(fileMagic);
+        output.writeInt(fileVersion);
+        output.writeInt(recordBytes);
+        output.flush();
+      }
+    } catch(IOException ioException) {
+      output = null;
+      DriverStation.reportWarning("WARNING: Couldn't open the shot record file; shots won't be recorded: " + ioException.getLocalizedMessage(), false);
+      return;
+    }
+
+    writerNotifier = new Notifier(this::writeQueuedRecords);
+    writerNotifier.setName("ShotRecorder");
+    writerNotifier.startPeriodic(writePeriodSeconds);
+  }
+
+  /**
+   * Rebuilds the corrections from every marked shot in the file.
+   * @param file
+   * @return The number of records replayed.
+   */
+  private int replay(File file) {
+    int recordCount = 0;
+    try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if(input.readInt() != fileMagic || input.readInt() != fileVersion || input.readInt() != recordBytes) {
+        throw new IOException("Unsupported shot record file");
+      }
+
+      ShotTarget[] targets = ShotTarget.values();
+      ShotOutcome[] outcomes = ShotOutcome.values();
+      byte[] record = new byte[recordBytes];
+      while(true) {
+        try {
+          input.readFully(record);
+        } catch(EOFException eofException) {
+          // A partial record at the end means we lost power mid-write; ignore it
+          break;
+        }
+        // Only the target, outcome, and distance matter for the corrections
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int targetIndex = buffer.get(Double.BYTES);
+        int outcomeIndex = buffer.get(Double.BYTES + 1);
+        float distance = buffer.getFloat(Double.BYTES + 2);
+        if(targetIndex < 0 || targetIndex >= targets.length || outcomeIndex < 0 || outcomeIndex >= outcomes.length) continue;
+
+        corrections.addOutcome(targets[targetIndex], distance, outcomes[outcomeIndex]);
+        recordCount++;
+      }
+    } catch(IOException ioException) {
+      DriverStation.reportWarning("WARNING: Couldn't replay the shot record file: " + ioException.getLocalizedMessage(), false);
+    }
+    return recordCount;
+  }
+
+  /**
+   * Captures the state of a shot that's being launched. Runs when the transport starts launching a note.
+   */
+  private void recordLaunch() {
+    // Don't leave the last shot hanging if the operator never marked it
+    finishPendingShot(ShotOutcome.Unknown);
+
+    // Other shots use presets, and the alignment data isn't kept up to date for them
+    SwerveAlignmentController alignmentController = SwerveAlignmentController.getInstance();
+    AlignmentMode alignmentMode = alignmentController.getAlignmentMode();
+    if(alignmentMode != AlignmentMode.AllianceSpeaker && alignmentMode != AlignmentMode.LobShot) return;
+
+    Launcher launcher = Launcher.getInstance();
+    FieldRelativeVelocity velocity = RobotState.getCurrent().getFieldRelativeVelocity();
+
+    hasPendingShot = true;
+    pendingTimestamp = Logger.getTimestamp() / 1e6;
+    pendingTarget = alignmentMode == AlignmentMode.AllianceSpeaker ? ShotTarget.Speaker : ShotTarget.Lob;
+    pendingDistance = (float)alignmentController.currentShotDistance;
+    pendingBearingDegrees = (float)alignmentController.targetAngle.getDegrees();
+    pendingVelocityX = (float)velocity.vx;
+    pendingVelocityY = (float)velocity.vy;
+    pendingCommandedSpeed = (float)launcher.topRollerSpeed;
+    pendingCommandedAngle = (float)launcher.launcherAngle.getDegrees();
+    pendingMeasuredTopSpeed = (float)launcher.getTopSpeedRPM();
+    pendingMeasuredBottomSpeed = (float)launcher.getBottomSpeedRPM();
+    pendingMeasuredAngle = (float)launcher.getMeasuredAngle().getDegrees();
+  }
+
+  /**
+   * Marks the outcome of the last shot, if it's still waiting to be marked.
+   * @param outcome
+   */
+  public void markOutcome(ShotOutcome outcome) {
+    finishPendingShot(outcome);
+  }
+
+  /**
+   * Records the last shot as unknown once the operator has had their chance to mark it. Should be called once per loop.
+   */
+  public void update() {
+    if(hasPendingShot && Logger.getTimestamp() / 1e6 - pendingTimestamp > markWindowSeconds) {
+      finishPendingShot(ShotOutcome.Unknown);
+    }
+  }
+
+  private void finishPendingShot(ShotOutcome outcome) {
+    if(!hasPendingShot) return;
+    hasPendingShot = false;
+
+    corrections.addOutcome(pendingTarget, pendingDistance, outcome);
+    if(outcome == ShotOutcome.Hit) hitCount++;
+    if(outcome == ShotOutcome.MissLong || outcome == ShotOutcome.MissShort) missCount++;
+
+    Logger.recordOutput("ShotRecorder/LastOutcome", outcome.toString());
+    Logger.recordOutput("ShotRecorder/LastDistance", pendingDistance);
+    Logger.recordOutput("ShotRecorder/Hits", hitCount);
+    Logger.recordOutput("ShotRecorder/Misses", missCount);
+
+    if(writerNotifier != null) queueRecord(outcome);
+  }
+
+  /**
+   * Queues the pending shot for the writer.
+   * @param outcome
+   */
+  private void queueRecord(ShotOutcome outcome) {
+    recordRow[TIMESTAMP] = pendingTimestamp;
+    recordRow[TARGET] = pendingTarget.ordinal();
+    recordRow[OUTCOME] = outcome.ordinal();
+    recordRow[FIRST_FLOAT] = pendingDistance;
+    recordRow[FIRST_FLOAT + 1] = pendingBearingDegrees;
+    recordRow[FIRST_FLOAT + 2] = pendingVelocityX;
+    recordRow[FIRST_FLOAT + 3] = pendingVelocityY;
+    recordRow[FIRST_FLOAT + 4] = pendingCommandedSpeed;
+    recordRow[FIRST_FLOAT + 5] = pendingCommandedAngle;
+    recordRow[FIRST_FLOAT + 6] = pendingMeasuredTopSpeed;
+    recordRow[FIRST_FLOAT + 7] = pendingMeasuredBottomSpeed;
+    recordRow[FIRST_FLOAT + 8] = pendingMeasuredAngle;
+    if(!recordQueue.tryWrite(recordRow)) {
+      DriverStation.reportWarning("WARNING: The shot record writer is falling behind; dropped a shot record", false);
+    }
+  }
+
+  /**
+   * Appends every queued record to the file. Runs on the writer notifier.
+   *
+   * <p>Each record is the FPGA timestamp as a double, the target and outcome ordinals as bytes, then
+   * floats for the distance, bearing, field-relative X and Y velocity, commanded speed and angle,
+   * measured top and bottom roller speeds, and the measured launcher angle.
+   */
+  private void writeQueuedRecords() {
+    int available = recordQueue.available();
+    if(available == 0) return;
+
+    try {
+      for(int row = 0; row < available; row++) {
+        output.writeDouble(recordQueue.get(row, TIMESTAMP));
+        output.writeByte((int)recordQueue.get(row, TARGET));
+        output.writeByte((int)recordQueue.get(row, OUTCOME));
+        for(int column = FIRST_FLOAT; column < RECORD_COLUMNS; column++) {
+          output.writeFloat((float)recordQueue.get(row, column));
+        }
+      }
+      output.flush();
+    } catch(IOException ioException) {
+      DriverStation.reportWarning("WARNING: Couldn't write shot records: " + ioException.getLocalizedMessage(), false);
+    }
+    recordQueue.release(available);
+  }
+
+  /** Gets the learned corrections. */
+  public ShotCorrectionGrid getCorrections() {
+    return corrections;
+  }
+}
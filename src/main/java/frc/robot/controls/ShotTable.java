@@ -0,0 +1,220 @@
+package frc.robot.controls;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import frc.robot.controls.ShotModel.ShotTarget;
+
+/**
+ * A precomputed table of {@link ShotModel#solve} solutions, indexed by distance, bearing, radial velocity,
+ * and tangential velocity. Looking up a shot is a single multilinear interpolation between the 16
+ * surrounding grid points instead of iterating on the shot time, and it doesn't allocate.
+ *
+ * <p>Each grid point also records if the solver converged there. Where it didn't, the point holds the solver's
+ * fallback, which jumps away from the converged solutions next to it. Blending across that jump would aim at a
+ * point neither solution gives, so when the surrounding points disagree we only blend the ones on whichever
+ * side of the jump most of the interpolation weight is on.
+ *
+ * <p>Tables are built by {@link ShotTableGenerator} and loaded from the deploy directory. Inputs outside
+ * the grid are clamped to its edges.
+ *
+ * <p>This class isn't thread-safe; lookups share scratch arrays.
+ */
+public class ShotTable {
+  private final double[][] axes;
+  /** The stride of each axis in {@link #values}, in floats. Each cell is {@link ShotTableGenerator#CELL_SIZE} floats. */
+  private final int[] strides;
+  private final float[] values;
+
+  private final int[] lowerIndices = new int[ShotTableGenerator.AXIS_COUNT];
+  private final double[] fractions = new double[ShotTableGenerator.AXIS_COUNT];
+  private final ShotModel.SolveStatus unusedStatus = new ShotModel.SolveStatus();
+
+  private ShotTable(double[][] axes, float[] values) {
+    this.axes = axes;
+    this.values = values;
+
+    strides = new int[axes.length];
+    int stride = ShotTableGenerator.CELL_SIZE;
+    for(int axis = axes.length - 1; axis >= 0; axis--) {
+      strides[axis] = stride;
+      stride *= axes[axis].length;
+    }
+  }
+
+  /**
+   * Loads the table for a target from the deploy directory.
+   * @param target
+   * @return The table, or an empty optional if it couldn't be loaded.
+   */
+  public static Optional<ShotTable> load(ShotTarget target) {
+    return load(target, new File(Filesystem.getDeployDirectory(), "shotTables/" + ShotTableGenerator.getFileName(target)));
+  }
+
+  /**
+   * Loads the table for a target from a file.
+   * @param target
+   * @param file
+   * @return The table, or an empty optional if it couldn't be loaded.
+   */
+  static Optional<ShotTable> load(ShotTarget target, File file) {
+    try(DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if(input.readInt() != ShotTableGenerator.fileMagic) throw new IOException("Not a shot table");
+      int version = input.readInt();
+      if(version != ShotTableGenerator.fileVersion) throw new IOException("Unsupported shot table version " + version);
+      if(input.readInt() != ShotTableGenerator.AXIS_COUNT) throw new IOException("Wrong number of shot table axes");
+
+      double[][] axes = new double[ShotTableGenerator.AXIS_COUNT][];
+      int cellCount = 1;
+      for(int axis = 0; axis < axes.length; axis++) {
+        int pointCount = input.readInt();
+        if(pointCount < 2) throw new IOException("Shot table axes need at least 2 points");
+        axes[axis] = new double[pointCount];
+        for(int i = 0; i < pointCount; i++) axes[axis][i] = input.readDouble();
+        cellCount *= pointCount;
+      }
+
+      float[] values = new float[cellCount * ShotTableGenerator.CELL_SIZE];
+      for(int i = 0; i < values.length; i++) values[i] = input.readFloat();
+
+      return Optional.of(new ShotTable(axes, values));
+    } catch(IOException ioException) {
+      DriverStation.reportWarning("WARNING: Couldn't load the " + target + " shot table, falling back to solving shots every loop: " + ioException.getLocalizedMessage(), false);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Looks up a shot solution.
+   * @param distance The distance to the target, in meters.
+   * @param bearingDegrees The absolute bearing to the target, in degrees from straight on.
+   * @param radialVelocity The robot's velocity toward the target, in meters per second.
+   * @param tangentialVelocity The robot's velocity across the line to the target, counterclockwise positive, in meters per second.
+   * @param solution The array to store the solution in, indexed by {@link ShotModel#AIM_ALONG} and friends.
+   */
+  public void lookup(double distance, double bearingDegrees, double radialVelocity, double tangentialVelocity, double[] solution) {
+    lookup(distance, bearingDegrees, radialVelocity, tangentialVelocity, solution, unusedStatus);
+  }
+
+  /**
+   * Looks up a shot solution and how the solver went at the grid points it came from.
+   * @param distance The distance to the target, in meters.
+   * @param bearingDegrees The absolute bearing to the target, in degrees from straight on.
+   * @param radialVelocity The robot's velocity toward the target, in meters per second.
+   * @param tangentialVelocity The robot's velocity across the line to the target, counterclockwise positive, in meters per second.
+   * @param solution The array to store the solution in, indexed by {@link ShotModel#AIM_ALONG} and friends.
+   * @param status Where to store how the solve went. It converged if every blended point converged; the
+   *   rest is from the nearest blended point.
+   */
+  public void lookup(
+    double distance,
+    double bearingDegrees,
+    double radialVelocity,
+    double tangentialVelocity,
+    double[] solution,
+    ShotModel.SolveStatus status
+  ) {
+    findCell(ShotTableGenerator.DISTANCE_AXIS, distance);
+    findCell(ShotTableGenerator.BEARING_AXIS, bearingDegrees);
+    findCell(ShotTableGenerator.RADIAL_VELOCITY_AXIS, radialVelocity);
+    findCell(ShotTableGenerator.TANGENTIAL_VELOCITY_AXIS, tangentialVelocity);
+
+    int baseIndex = 0;
+    for(int axis = 0; axis < axes.length; axis++) baseIndex += lowerIndices[axis] * strides[axis];
+    int cornerCount = 1 << axes.length;
+
+    // The solver's fallback is discontinuous with the converged solutions, so don't blend across it.
+    // Interpolating which corners converged tells us which side of the boundary we're likely on.
+    double convergedWeight = 0;
+    for(int corner = 0; corner < cornerCount; corner++) {
+      int index = getCornerIndex(baseIndex, corner);
+      if(values[index + ShotTableGenerator.CONVERGED] != 0) convergedWeight += getCornerWeight(corner);
+    }
+    float side = convergedWeight >= 0.5 ? 1 : 0;
+
+    // Blend the corners on that side of the 16 in the cell, each weighted by how close we are to it on every
+    // axis and reweighted so their weights add to 1
+    for(int i = 0; i < ShotModel.SOLUTION_SIZE; i++) solution[i] = 0;
+    double totalWeight = 0;
+    double nearestWeight = -1;
+    int nearestIndex = baseIndex;
+    for(int corner = 0; corner < cornerCount; corner++) {
+      double weight = getCornerWeight(corner);
+      if(weight == 0) continue;
+      int index = getCornerIndex(baseIndex, corner);
+      if(values[index + ShotTableGenerator.CONVERGED] != side) continue;
+
+      totalWeight += weight;
+      if(weight > nearestWeight) {
+        nearestWeight = weight;
+        nearestIndex = index;
+      }
+      for(int i = 0; i < ShotModel.SOLUTION_SIZE; i++) solution[i] += weight * values[index + i];
+    }
+    for(int i = 0; i < ShotModel.SOLUTION_SIZE; i++) solution[i] /= totalWeight;
+
+    status.converged = side != 0;
+    status.iterations = (int)values[nearestIndex + ShotTableGenerator.ITERATIONS];
+    status.residualSeconds = values[nearestIndex + ShotTableGenerator.RESIDUAL];
+    status.shotTimeSeconds = values[nearestIndex + ShotTableGenerator.SHOT_TIME];
+  }
+
+  /** Gets how much a corner of the current cell contributes, from the fractions along each axis. */
+  private double getCornerWeight(int corner) {
+    double weight = 1;
+    for(int axis = 0; axis < axes.length; axis++) {
+      weight *= (corner & (1 << axis)) != 0 ? fractions[axis] : 1 - fractions[axis];
+    }
+    return weight;
+  }
+
+  /** Gets the index in {@link #values} of a corner of the current cell. */
+  private int getCornerIndex(int baseIndex, int corner) {
+    int index = baseIndex;
+    for(int axis = 0; axis < axes.length; axis++) {
+      if((corner & (1 << axis)) != 0) index += strides[axis];
+    }
+    return index;
+  }
+
+  /**
+   * Finds the grid cell containing a value on an axis and how far through it the value is.
+   * @param axis
+   * @param value
+   */
+  private void findCell(int axis, double value) {
+    double[] points = axes[axis];
+    int last = points.length - 1;
+    if(value <= points[0]) {
+      lowerIndices[axis] = 0;
+      fractions[axis] = 0;
+      return;
+    }
+    if(value >= points[last]) {
+      lowerIndices[axis] = last - 1;
+      fractions[axis] = 1;
+      return;
+    }
+
+    // Find the first point after the value
+    int low = 0;
+    int high = last;
+    while(low < high) {
+      int middle = (low + high) >>> 1;
+      if(points[middle] <= value) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    int lower = low - 1;
+    lowerIndices[axis] = lower;
+    fractions[axis] = (value - points[lower]) / (points[low] - points[lower]);
+  }
+}
@@ -0,0 +1,160 @@
+package frc.robot.controls;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import frc.robot.controls.ShotModel.ShotTarget;
+
+/**
+ * Builds the shoot-on-the-move tables loaded by {@link ShotTable} by evaluating {@link ShotModel#solve} over
+ * a grid of distances, bearings, and velocities. This runs through the {@code generateShotTables} Gradle task,
+ * which writes the tables into the deploy directory. Deploying and simulating run it first, so the tables always
+ * match the current fits.
+ *
+ * <p>The file format is big-endian: a magic number, a version, the axis count, then each axis as a point
+ * count followed by its points. After that comes {@link #CELL_SIZE} floats per grid cell, with the first axis
+ * varying slowest: the {@link ShotModel#SOLUTION_SIZE} solution values, then how the solve went.
+ */
+public final class ShotTableGenerator {
+  private ShotTableGenerator() {}
+
+  public static final int fileMagic = 0x53484f54; // "SHOT"
+  public static final int fileVersion = 2;
+
+  /** The order of the axes in the table. */
+  public static final int DISTANCE_AXIS = 0;
+  public static final int BEARING_AXIS = 1;
+  public static final int RADIAL_VELOCITY_AXIS = 2;
+  public static final int TANGENTIAL_VELOCITY_AXIS = 3;
+  public static final int AXIS_COUNT = 4;
+
+  // The solve status stored after the solution in each cell
+  /** 1 if the solver converged at this cell, or 0 if the cell holds the solver's fallback. */
+  public static final int CONVERGED = ShotModel.SOLUTION_SIZE;
+  /** The number of times the solver evaluated the shot time fit. */
+  public static final int ITERATIONS = ShotModel.SOLUTION_SIZE + 1;
+  /** The solver's final residual, in seconds. */
+  public static final int RESIDUAL = ShotModel.SOLUTION_SIZE + 2;
+  /** The shot time of the solution, in seconds. */
+  public static final int SHOT_TIME = ShotModel.SOLUTION_SIZE + 3;
+  /** The number of floats stored for each cell. */
+  public static final int CELL_SIZE = ShotModel.SOLUTION_SIZE + 4;
+
+  /**
+   * Gets the name of the table file for a target.
+   * @param target
+   * @return
+   */
+  public static String getFileName(ShotTarget target) {
+    return "shot" + target.name() + ".bin";
+  }
+
+  /**
+   * The longest distance in the table, in meters. This is a bit past the field diagonal, so no shot on the field
+   * is clamped to a shorter distance and aimed along the wrong line.
+   */
+  private static final double maxDistance = 18.5;
+
+  /**
+   * Gets the grid points for each axis.
+   * @return
+   */
+  static double[][] getAxes() {
+    double[][] axes = new double[AXIS_COUNT][];
+    // Most shots are within 12 meters, so the grid is finer there. Past that only long lobs need it, and
+    // their fits have stopped changing, so a coarser grid is just as accurate.
+    axes[DISTANCE_AXIS] = concatenate(range(0, 12, 0.25), range(12.5, maxDistance, 0.5));
+    // The bearing only changes the blend between the acute and obtuse fits, which is linear between
+    // these points, so interpolating between them is exact.
+    axes[BEARING_AXIS] = new double[] {
+      0,
+      ShotModel.farInterpolationStartDegrees,
+      ShotModel.farInterpolationStartDegrees + ShotModel.farInterpolationWidthDegrees,
+      180
+    };
+    // A bit past our top speed to leave room for the acceleration compensation
+    axes[RADIAL_VELOCITY_AXIS] = range(-5, 5, 0.5);
+    axes[TANGENTIAL_VELOCITY_AXIS] = range(-5, 5, 0.5);
+    return axes;
+  }
+
+  private static double[] range(double min, double max, double step) {
+    int count = (int)Math.round((max - min) / step) + 1;
+    double[] points = new double[count];
+    for(int i = 0; i < count; i++) points[i] = min + i * step;
+    return points;
+  }
+
+  private static double[] concatenate(double[] first, double[] second) {
+    double[] points = new double[first.length + second.length];
+    System.arraycopy(first, 0, points, 0, first.length);
+    System.arraycopy(second, 0, points, first.length, second.length);
+    return points;
+  }
+
+  /**
+   * Writes the table for a target.
+   * @param target
+   * @param file
+   * @return The number of cells where the solver didn't converge.
+   * @throws IOException
+   */
+  public static int writeTable(ShotTarget target, File file) throws IOException {
+    double[][] axes = getAxes();
+    double[] solution = new double[ShotModel.SOLUTION_SIZE];
+    ShotModel.SolveStatus status = new ShotModel.SolveStatus();
+    int unconvergedCount = 0;
+
+    try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      output.writeInt(fileMagic);
+      output.writeInt(fileVersion);
+      output.writeInt(AXIS_COUNT);
+      for(double[] axis : axes) {
+        output.writeInt(axis.length);
+        for(double point : axis) output.writeDouble(point);
+      }
+
+      for(double distance : axes[DISTANCE_AXIS]) {
+        for(double bearing : axes[BEARING_AXIS]) {
+          for(double radialVelocity : axes[RADIAL_VELOCITY_AXIS]) {
+            for(double tangentialVelocity : axes[TANGENTIAL_VELOCITY_AXIS]) {
+              ShotModel.solve(target, distance, bearing, radialVelocity, tangentialVelocity, solution, status);
+              if(!status.converged) unconvergedCount++;
+              for(double value : solution) output.writeFloat((float)value);
+              output.writeFloat(status.converged ? 1 : 0);
+              output.writeFloat(status.iterations);
+              output.writeFloat((float)status.residualSeconds);
+              output.writeFloat((float)status.shotTimeSeconds);
+            }
+          }
+        }
+      }
+    }
+    return unconvergedCount;
+  }
+
+  /**
+   * Writes every table.
+   * @param args The directory to write the tables to.
+   */
+  public static void main(String[] args) throws IOException {
+    if(args.length != 1) {
+      System.err.println("Usage: ShotTableGenerator <output directory>");
+      System.exit(1);
+    }
+
+    File directory = new File(args[0]);
+    if(!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Couldn't create shot table directory " + directory);
+    }
+    for(ShotTarget target : ShotTarget.values()) {
+      File file = new File(directory, getFileName(target));
+      int unconvergedCount = writeTable(target, file);
+      // Some cells are expected not to converge at high speeds away from the target; they use the solver's fallback
+      System.out.println("Wrote " + file + " (" + file.length() + " bytes, " + unconvergedCount + " cells didn't converge)");
+    }
+  }
+}
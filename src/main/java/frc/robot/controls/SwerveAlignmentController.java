@@ -1,17 +1,22 @@
 package frc.robot.controls;
 
+import java.util.Optional;
+
 import org.littletonrobotics.junction.Logger;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.filter.LinearFilter;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.util.Units;
-import edu.wpi.first.wpilibj.DriverStation;
 import frc.lib.drive.FieldRelativeAcceleration;
 import frc.lib.drive.FieldRelativeVelocity;
 import frc.robot.Constants;
+import frc.robot.FieldGeometry;
+import frc.robot.RobotState;
+import frc.robot.controls.ShotModel.ShotTarget;
 import frc.robot.subsystems.drive.Swerve;
 import frc.robot.subsystems.vision.Limelight;
 
@@ -59,7 +64,7 @@ public class SwerveAlignmentController {
     }
 
     private boolean isBlueAlliance() {
-        return DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == DriverStation.Alliance.Blue;
+        return FieldGeometry.getInstance().isBlueAlliance();
     }
 
     public AlignmentMode getAlignmentMode() {
@@ -71,112 +76,108 @@ public class SwerveAlignmentController {
     private LinearFilter accelerationXFilter = LinearFilter.singlePoleIIR(0.2, 0.02);
     private LinearFilter accelerationYFilter = LinearFilter.singlePoleIIR(0.2, 0.02);
 
+    private final Optional<ShotTable> speakerShotTable = ShotTable.load(ShotTarget.Speaker);
+    private final Optional<ShotTable> lobShotTable = ShotTable.load(ShotTarget.Lob);
+    private final double[] shotSolution = new double[ShotModel.SOLUTION_SIZE];
+    private final ShotModel.SolveStatus shotSolveStatus = new ShotModel.SolveStatus();
+
     public double updateDistanceAndGetAngle() {
-        Swerve swerve = Swerve.getInstance();
+        RobotState state = RobotState.getCurrent();
 
-        Translation2d currentPosition = swerve.getPose().getTranslation();
-        FieldRelativeVelocity currentVelocity = swerve.getFieldRelativeVelocity();
-        FieldRelativeAcceleration currentAcceleration = swerve.getFieldRelativeAcceleration();
+        Translation2d currentPosition = state.getPose().getTranslation();
+        FieldRelativeVelocity currentVelocity = state.getFieldRelativeVelocity();
+        FieldRelativeAcceleration currentAcceleration = state.getFieldRelativeAcceleration();
         
-        double speakerY = 5.55;
-        double obtuseShiftY = 5.93 - speakerY;
-
-        boolean isBlueAlliance = DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == DriverStation.Alliance.Blue;
-        Translation2d centerTargetLocation = new Translation2d();
-        if(alignmentMode == AlignmentMode.AllianceSpeaker) {
-            // Speaker
-            double speakerInward = -0.08;
-            centerTargetLocation = isBlueAlliance ? new Translation2d(speakerInward, speakerY) : new Translation2d(Constants.fieldLengthMeters - speakerInward, speakerY);
+        FieldGeometry field = FieldGeometry.getInstance();
+        double obtuseShiftY = FieldGeometry.speakerObtuseY - FieldGeometry.speakerY;
+
+        boolean isBlueAlliance = field.isBlueAlliance();
+        ShotTarget shotTarget = alignmentMode == AlignmentMode.AllianceSpeaker ? ShotTarget.Speaker : ShotTarget.Lob;
+        double targetX, targetY;
+        if(shotTarget == ShotTarget.Speaker) {
+            targetX = field.getSpeakerX();
+            targetY = FieldGeometry.speakerY;
         } else {
-            // Lob
-            double targetX = 2.1;
-            double targetY = 6.48;
-            centerTargetLocation = isBlueAlliance ? new Translation2d(targetX, targetY) : new Translation2d(Constants.fieldLengthMeters - targetX, targetY);
+            targetX = field.getLobTargetX();
+            targetY = FieldGeometry.lobTargetY;
         }
 
-        Rotation2d angleToTarget = centerTargetLocation.minus(currentPosition).getAngle().minus(Rotation2d.fromDegrees(
-            isBlueAlliance ? 180 : 0
-        ));
-        targetAngle = new Rotation2d(Math.abs(angleToTarget.getRadians()));
+        double angleToTarget = MathUtil.angleModulus(
+            Math.atan2(targetY - currentPosition.getY(), targetX - currentPosition.getX()) - (isBlueAlliance ? Math.PI : 0)
+        );
+        targetAngle = new Rotation2d(Math.abs(angleToTarget));
+        double bearingDegrees = targetAngle.getDegrees();
 
         double filteredVelocityX = velocityXFilter.calculate(currentVelocity.vx);
         double filteredVelocityY = velocityYFilter.calculate(currentVelocity.vy);
         double filteredAccelerationX = accelerationXFilter.calculate(currentAcceleration.ax);
         double filteredAccelerationY = accelerationYFilter.calculate(currentAcceleration.ay);
 
-        Logger.recordOutput("SwerveAlignmentController/TargetLocation", centerTargetLocation);
         Logger.recordOutput("SwerveAlignmentController/CurrentPosition", currentPosition);
         Logger.recordOutput("SwerveAlignmentController/CurrentVelocity/Mag", currentVelocity.getNorm());
         Logger.recordOutput("SwerveAlignmentController/CurrentAcceleration/Mag", currentAcceleration.getNorm());
 
-        Translation2d targetLocation = centerTargetLocation;
-
-        if(alignmentMode == AlignmentMode.AllianceSpeaker) {
+        if(shotTarget == ShotTarget.Speaker) {
             // Move to the side for obtuse angles
-            double startAngle = farInterpolationStartAngle.getDegrees();
-            double angleWidth = farInterpolationWidth.getDegrees();
-            if(targetAngle.getDegrees() > startAngle) {
-                double shiftY = (angleToTarget.getRadians() < 0 || angleToTarget.getRadians() > 180) ? -obtuseShiftY : obtuseShiftY;
-                shiftY = isBlueAlliance ? -shiftY : shiftY;
-
-                Translation2d movedTargetLocation = targetLocation.plus(new Translation2d(0, shiftY));
-                if(targetAngle.getDegrees() < startAngle + angleWidth) {
-                    double interpolation = (targetAngle.getDegrees() - startAngle) / angleWidth;
-                    targetLocation = targetLocation.interpolate(movedTargetLocation, interpolation);
-                } else {
-                    targetLocation = movedTargetLocation;
-                }
-            }
+            double shiftY = angleToTarget < 0 ? -obtuseShiftY : obtuseShiftY;
+            shiftY = isBlueAlliance ? -shiftY : shiftY;
+            targetY += shiftY * ShotModel.getObtuseInterpolation(bearingDegrees);
         }
 
-        Translation2d relativeTargetLocation = targetLocation.minus(currentPosition);
-        double distance = relativeTargetLocation.getNorm();
-        double startDistance = distance;
+        double relativeTargetX = targetX - currentPosition.getX();
+        double relativeTargetY = targetY - currentPosition.getY();
+        double distance = Math.hypot(relativeTargetX, relativeTargetY);
 
         Logger.recordOutput("SwerveAlignmentController/RealDistance", distance);
-        Logger.recordOutput("SwerveAlignmentController/TargetLocation", targetLocation);
-
-        double shotTime = AutomaticLauncherControl.getShotTime(distance);
-
-        double correctionFactor = 0.99; // Ideally would be close to 1, but just to compensate for other inaccuracies.
-
-        // Poor man's Newton's method
-        int iterations = 5; // Maximum number of iterations
-        Translation2d correctedTargetPosition = targetLocation;
-        for(int i = 0; i < iterations; i++) {
-            double accelerationCompensationFactor = 0.1; // Roughly the pipeline latency in seconds
-            correctedTargetPosition = new Translation2d(
-                // Note that this doesn't use correctedTargetPosition as a base -- it uses targetLocation
-                targetLocation.getX() - shotTime * (filteredVelocityX + filteredAccelerationX * accelerationCompensationFactor) * correctionFactor,
-                targetLocation.getY() - shotTime * (filteredVelocityY + filteredAccelerationY * accelerationCompensationFactor) * correctionFactor
-            );
-
-            Translation2d relativeCorrectedTargetPosition = correctedTargetPosition.minus(currentPosition);
-            distance = relativeCorrectedTargetPosition.getNorm();
-
-            double oldShotTime = shotTime;
-            shotTime = AutomaticLauncherControl.getShotTime(distance);
-
-            if(Math.abs(shotTime - oldShotTime) < 0.01) {
-                // Once we're close enough, stop
-                break;
-            }
+        Logger.recordOutput("SwerveAlignmentController/TargetLocation", new Translation2d(targetX, targetY));
+
+        // Split our velocity into the parts toward and across the line to the target
+        double towardX = distance > 1e-6 ? relativeTargetX / distance : 1;
+        double towardY = distance > 1e-6 ? relativeTargetY / distance : 0;
+        double velocityX = filteredVelocityX + filteredAccelerationX * ShotModel.accelerationCompensationSeconds;
+        double velocityY = filteredVelocityY + filteredAccelerationY * ShotModel.accelerationCompensationSeconds;
+        double radialVelocity = velocityX * towardX + velocityY * towardY;
+        double tangentialVelocity = velocityY * towardX - velocityX * towardY;
+
+        double solveStartTime = Logger.getRealTimestamp();
+        Optional<ShotTable> shotTable = shotTarget == ShotTarget.Speaker ? speakerShotTable : lobShotTable;
+        if(shotTable.isPresent()) {
+            shotTable.get().lookup(distance, bearingDegrees, radialVelocity, tangentialVelocity, shotSolution, shotSolveStatus);
+        } else {
+            ShotModel.solve(shotTarget, distance, bearingDegrees, radialVelocity, tangentialVelocity, shotSolution, shotSolveStatus);
         }
-
-        double useDistanceForLauncherFactor = 0.3;
-        currentShotDistance = distance * useDistanceForLauncherFactor + startDistance * (1 - useDistanceForLauncherFactor);
-
-        // Aim at correctedTargetPosition
-        Translation2d currentTranslation = swerve.getPose().getTranslation();
-        Translation2d relativeCorrectedTargetPosition = correctedTargetPosition.minus(currentTranslation);
-        double angle = Math.atan2(relativeCorrectedTargetPosition.getY(), relativeCorrectedTargetPosition.getX());
+        Logger.recordOutput("SwerveAlignmentController/ShotSolver/Converged", shotSolveStatus.converged);
+        Logger.recordOutput("SwerveAlignmentController/ShotSolver/Iterations", shotSolveStatus.iterations);
+        Logger.recordOutput("SwerveAlignmentController/ShotSolver/Residual", shotSolveStatus.residualSeconds);
+        Logger.recordOutput("SwerveAlignmentController/ShotSolver/ShotTime", shotSolveStatus.shotTimeSeconds);
+        Logger.recordOutput("SwerveAlignmentController/ShotSolver/UsingTable", shotTable.isPresent());
+        Logger.recordOutput("SwerveAlignmentController/ShotSolver/SolveTime", (Logger.getRealTimestamp() - solveStartTime) / 1000);
+
+        currentShotDistance = shotSolution[ShotModel.EFFECTIVE_DISTANCE];
+
+        // Apply what we've learned from recent misses
+        ShotCorrectionGrid corrections = ShotRecorder.getInstance().getCorrections();
+        double speedCorrection = corrections.getSpeedCorrection(shotTarget, currentShotDistance);
+        double angleCorrection = corrections.getAngleCorrection(shotTarget, currentShotDistance);
+        currentShotSpeed = MathUtil.clamp(shotSolution[ShotModel.SPEED] + speedCorrection, ShotModel.minSpeed, ShotModel.maxSpeed);
+        currentShotAngle = MathUtil.clamp(shotSolution[ShotModel.ANGLE] + angleCorrection, ShotModel.minAngle, ShotModel.maxAngle);
+        Logger.recordOutput("SwerveAlignmentController/SpeedCorrection", speedCorrection);
+        Logger.recordOutput("SwerveAlignmentController/AngleCorrection", angleCorrection);
+        Logger.recordOutput("SwerveAlignmentController/HeadingOffset", Math.toDegrees(ShotModel.getHeadingOffset(shotSolution)));
+
+        // Aim at the corrected target position, rotating the aim point from the target frame back to the field
+        double aimX = towardX * shotSolution[ShotModel.AIM_ALONG] - towardY * shotSolution[ShotModel.AIM_ACROSS];
+        double aimY = towardY * shotSolution[ShotModel.AIM_ALONG] + towardX * shotSolution[ShotModel.AIM_ACROSS];
+        double angle = Math.atan2(aimY, aimX);
 
         return angle;
     }
     
-    public static Rotation2d farInterpolationStartAngle = Rotation2d.fromDegrees(10);
-    public static Rotation2d farInterpolationWidth = Rotation2d.fromDegrees(22);
     public double currentShotDistance = 0.0;
+    /** The launcher speed for the current shot, in RPM. */
+    public double currentShotSpeed = 0.0;
+    /** The launcher angle for the current shot, in degrees. */
+    public double currentShotAngle = 0.0;
     public Rotation2d targetAngle = new Rotation2d();
     public boolean atTarget = false;
 
@@ -192,8 +193,14 @@ public class SwerveAlignmentController {
                 return Rotation2d.fromDegrees(isBlueAlliance() ? 180.0 : 0.0);
             case Left:
                 return Rotation2d.fromDegrees(isBlueAlliance() ? 90.0 : 270.0);
-            case CenterNote:
-                return Swerve.getInstance().getPose().getRotation().minus(Limelight.getInstance().getIntakeNoteX());
+            case CenterNote: {
+                // The note angle is relative to where we were facing when the frame was captured, so use our heading from then
+                Limelight limelight = Limelight.getInstance();
+                Rotation2d headingAtCapture = Swerve.getInstance().getPoseAt(limelight.getIntakeNoteTimestamp())
+                    .orElseGet(() -> RobotState.getCurrent().getPose())
+                    .getRotation();
+                return headingAtCapture.minus(limelight.getIntakeNoteX());
+            }
             default:
                 return Rotation2d.fromDegrees(isBlueAlliance() ? 0.0 : 180.0);
         }
@@ -213,7 +220,7 @@ public class SwerveAlignmentController {
         // If we are in any other mode, we want to change the speeds to align with the target angle.
         Rotation2d targetAngle = getTargetAngle();
 
-        Rotation2d currentAngle = Swerve.getInstance().getPose().getRotation();
+        Rotation2d currentAngle = RobotState.getCurrent().getPose().getRotation();
 
         double newOmegaRadiansPerSecond = Math.min(
             thetaController.calculate(currentAngle.getRadians(), targetAngle.getRadians()),
@@ -1,19 +1,18 @@
 package frc.robot.subsystems;
 
-import java.util.HashMap;
-
 import org.littletonrobotics.junction.AutoLogOutput;
 
+import edu.wpi.first.math.filter.Debouncer;
 import edu.wpi.first.math.filter.Debouncer.DebounceType;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Notifier;
-import edu.wpi.first.wpilibj.event.BooleanEvent;
-import edu.wpi.first.wpilibj.event.EventLoop;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.SequentialCommandGroup;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.WaitUntilCommand;
+import frc.lib.util.EnumMailbox;
+import frc.lib.util.EnumStateMachine;
 import frc.robot.Constants;
 import frc.robot.commands.climber.ClimberFullyUp;
 import frc.robot.controls.SwerveAlignmentController;
@@ -26,6 +25,15 @@ import frc.robot.subsystems.noteSensors.NoteSensors;
 import frc.robot.subsystems.transport.Transport;
 import frc.robot.subsystems.transport.Transport.TransportState;
 
+/**
+ * Coordinates the subsystems. The note state is updated from a notifier and from the note sensor interrupts,
+ * not the main loop, so the transport can stop a note as soon as it reaches the launcher.
+ *
+ * <p>On those threads we only do things that are safe from any thread: reading the published sensor states,
+ * transitioning the state machines, and writing the transport motors through {@link Transport#immediatelyUpdateSpeeds()}.
+ * Everything else, like controller vibration (which schedules commands), is posted to {@link #mainThreadEvents} and
+ * handled in {@link #periodic()}.
+ */
 public class Superstructure extends SubsystemBase {
     private static Superstructure instance = null;
     public static Superstructure getInstance() {
@@ -62,37 +70,48 @@ public class Superstructure extends SubsystemBase {
         ReadyToLaunch
     }
 
+    /** Work the note state updates hand off to the main loop. */
+    private enum MainThreadEvent {
+        /** A note entered the robot, so the driver should feel it. */
+        NoteEnteredRobot
+    }
+
+    /** Events posted from the note state update threads, handled on the main thread in {@link #periodic()}. */
+    private final EnumMailbox<MainThreadEvent> mainThreadEvents = new EnumMailbox<>(MainThreadEvent.class);
+
     /**
-     * The current state of the note in the robot.
+     * The note state machine. The state is measured by the sensors rather than requested, so every transition is
+     * allowed; the entry actions are what drive the transport.
      */
-    @AutoLogOutput(key = "Superstructure/CurrentState")
-    private NoteState currentState = NoteState.NoNote;
+    private final EnumStateMachine<NoteState> noteStateMachine = new EnumStateMachine<>(NoteState.class, NoteState.NoNote)
+        .allowAllTransitions();
 
     /**
      * Gets the current state of the note in the robot.
      * @return
      */
+    @AutoLogOutput(key = "Superstructure/CurrentState")
     public NoteState getNoteState() {
-        return currentState;
+        return noteStateMachine.getState();
     }
 
     /**
-     * A map from the sensor states combined as a binary value to the note state.
+     * The note state for each combination of sensor states, indexed by the sensor states combined as a binary value.
      */
-    private HashMap<Integer, NoteState> sensorStateMap = createSensorStateHashmap();
-    private HashMap<Integer, NoteState> createSensorStateHashmap() {
-        HashMap<Integer, NoteState> hashmap = new HashMap<>(8);
+    private final NoteState[] sensorStateMap = createSensorStateMap();
+    private static NoteState[] createSensorStateMap() {
+        NoteState[] map = new NoteState[8];
         // [intake, transition, position] sensor order
         // Using bottom two
-        hashmap.put(0b000, NoteState.NoNote);
-        hashmap.put(0b001, NoteState.ReadyToLaunch);
-        hashmap.put(0b010, NoteState.MovingNote); // Physically impossible in theory
-        hashmap.put(0b011, NoteState.MovingNote);
-        hashmap.put(0b100, NoteState.IntakingNote);
-        hashmap.put(0b101, NoteState.EjectingNote);
-        hashmap.put(0b110, NoteState.MovingNote);
-        hashmap.put(0b111, NoteState.EjectingNote);
-        return hashmap;
+        map[0b000] = NoteState.NoNote;
+        map[0b001] = NoteState.ReadyToLaunch;
+        map[0b010] = NoteState.MovingNote; // Physically impossible in theory
+        map[0b011] = NoteState.MovingNote;
+        map[0b100] = NoteState.IntakingNote;
+        map[0b101] = NoteState.EjectingNote;
+        map[0b110] = NoteState.MovingNote;
+        map[0b111] = NoteState.EjectingNote;
+        return map;
     }
 
     /**
@@ -106,88 +125,93 @@ public class Superstructure extends SubsystemBase {
      */
     private static final double NOTE_STATE_UPDATE_RATE = 100;
 
-    private EventLoop noteStateEventLoop = new EventLoop();
-
-    // I would use triggers here, but for some reason, they lead to internal scheduler ConcurrentModificationException errors that I don't want to deal with.
-
-    /** Used for controller vibration feedback. */
-    private BooleanEvent intakingNoteEvent = new BooleanEvent(noteStateEventLoop, () -> currentState == NoteState.IntakingNote)
-        // .debounce(0.2, DebounceType.kFalling)
-        .rising();
-
-    private BooleanEvent movingNoteEvent = new BooleanEvent(noteStateEventLoop, () -> currentState == NoteState.MovingNote)
-        // .debounce(0.2, DebounceType.kRising)
-        .rising();
-    
-    private BooleanEvent readyToLaunchEvent = new BooleanEvent(noteStateEventLoop, () -> currentState == NoteState.ReadyToLaunch);
-    
-    private BooleanEvent ejectingNoteEvent = new BooleanEvent(noteStateEventLoop, () -> currentState == NoteState.EjectingNote).debounce(0.5, DebounceType.kFalling);
-    private BooleanEvent startEjectNoteEvent = ejectingNoteEvent.rising();
-    private BooleanEvent stopEjectNoteEvent = ejectingNoteEvent.falling();
-    
-    private BooleanEvent stopNoteAtLauncherEvent = readyToLaunchEvent.rising().and(ejectingNoteEvent.negate());
+    /**
+     * True while ejecting and for a short time after, so we don't stop the transport as soon as the note briefly
+     * leaves the ejecting state.
+     */
+    private final Debouncer ejectingNoteDebouncer = new Debouncer(0.5, DebounceType.kFalling);
+    private boolean ejectingNote = false;
  
     /**
-     * Updates the current state based on the sensor values.
+     * Updates the current state based on the sensor values.  
+     * This runs on the notifier and, when the sensors use interrupts, on the interrupt threads as soon as a sensor changes.
+     * In replay, it runs from periodic instead.
      */
-    private void updateNoteState() {
+    private synchronized void updateNoteState() {
         NoteSensors noteSensorsSubsystem = NoteSensors.getInstance();
 
         // We don't do this in periodic because we want to synchronize the sensor reads with the superstructure state updates to avoid extra latency.
         noteSensorsSubsystem.updateSensorValues();
-        
-        currentState = sensorStateMap.get(
-            (noteSensorsSubsystem.getNoteInPositionSensorActivated() ? 1 : 0) +
-            ((noteSensorsSubsystem.getNoteInTransitionSensorActivated() ? 1 : 0) << 1) +
-            ((noteSensorsSubsystem.getIntakeSensorActivated() ? 1 : 0) << 2)
-        );
 
-        noteStateEventLoop.poll();
+        // The packed sensor states are in the same [intake, transition, position] order as the map
+        NoteState newState = sensorStateMap[noteSensorsSubsystem.getSensorStates()];
+
+        // The entry actions check this, so it has to be updated first
+        boolean wasEjectingNote = ejectingNote;
+        ejectingNote = ejectingNoteDebouncer.calculate(newState == NoteState.EjectingNote);
+
+        noteStateMachine.attemptTransition(newState);
+
+        if(ejectingNote && !wasEjectingNote) attemptTransitionToState(TransportState.EjectingNote);
+        if(!ejectingNote && wasEjectingNote) attemptTransitionToState(TransportState.Stopped);
     }
 
     /** Attempts to transition the transport to the given state, only if we are in a state it makes sense to in. */
     private void attemptTransitionToState(TransportState state) {
-        Transport transportSubsystem = Transport.getInstance();
-        
-        // Do not transition if doing sweep transport or operator override
-        TransportState transportState = transportSubsystem.getCurrentState();
-        if (
-            transportState == TransportState.SweepTransport ||
-            transportState == TransportState.OperatorOverride
-        ) return;
-
-        transportSubsystem.attemptTransitionToState(state);
+        // Does not transition if doing sweep transport or operator override
+        Transport.getInstance().attemptAutomaticTransitionToState(state);
     }
 
     private Superstructure() {
         Transport transportSubsystem = Transport.getInstance();
 
-        intakingNoteEvent.ifHigh(() -> {
-            if(!DriverStation.isTeleop()) return;
-            VibrationFeedback.getInstance().runPattern(VibrationPatternType.IntakingNote);
+        noteStateMachine.onEntry(NoteState.IntakingNote, () -> {
+            mainThreadEvents.post(MainThreadEvent.NoteEnteredRobot);
         });
-        movingNoteEvent.ifHigh(() -> {
+        noteStateMachine.onEntry(NoteState.MovingNote, () -> {
             attemptTransitionToState(TransportState.MovingNote);
             transportSubsystem.immediatelyUpdateSpeeds();
             
             // Remove when we have a working sensor on the intake
-            if(!DriverStation.isTeleop()) return;
-            VibrationFeedback.getInstance().runPattern(VibrationPatternType.IntakingNote);
+            mainThreadEvents.post(MainThreadEvent.NoteEnteredRobot);
         });
-
-        startEjectNoteEvent.ifHigh(() -> attemptTransitionToState(TransportState.EjectingNote));
-        stopEjectNoteEvent.ifHigh(() -> attemptTransitionToState(TransportState.Stopped));
-        
-        stopNoteAtLauncherEvent.ifHigh(() -> {
+        noteStateMachine.onEntry(NoteState.ReadyToLaunch, () -> {
+            // Stop the note at the launcher, unless we're ejecting
+            if(ejectingNote) return;
             attemptTransitionToState(TransportState.Stopped);
             transportSubsystem.immediatelyUpdateSpeeds();
         });
 
-        updateNoteStateNotifier.setName("SuperstructureNoteState");
-        updateNoteStateNotifier.startPeriodic(1 / NOTE_STATE_UPDATE_RATE);
+        // In replay, the sensor states only change when the logged inputs do, so we update in periodic
+        if(Constants.currentMode != Constants.Mode.REPLAY) {
+            // React to sensor changes immediately instead of up to a notifier period later
+            NoteSensors.getInstance().setSensorEdgeCallback(this::updateNoteState);
+            // The notifier still runs so the eject debouncer updates and we recover from any missed edges
+            updateNoteStateNotifier.setName("SuperstructureNoteState");
+            updateNoteStateNotifier.startPeriodic(1 / NOTE_STATE_UPDATE_RATE);
+        }
 
         if(!Constants.enableNonEssentialShuffleboard) return;
-        Shuffleboard.getTab("Notes").addString("Superstructure note state", () -> currentState.toString());
+        Shuffleboard.getTab("Notes").addString("Superstructure note state", () -> getNoteState().toString());
+    }
+
+    @Override
+    public void periodic() {
+        if(Constants.currentMode == Constants.Mode.REPLAY) updateNoteState();
+
+        mainThreadEvents.drain(this::handleMainThreadEvent);
+
+        noteStateMachine.logStatistics("Superstructure/StateMachine");
+    }
+
+    /** Handles an event posted from the note state update threads. Called from the main thread. */
+    private void handleMainThreadEvent(MainThreadEvent event) {
+        switch(event) {
+            case NoteEnteredRobot:
+                if(!DriverStation.isTeleop()) return;
+                VibrationFeedback.getInstance().runPattern(VibrationPatternType.IntakingNote);
+                break;
+        }
     }
 
     public Command scheduledClimbCommand = null;
@@ -212,6 +236,7 @@ public class Superstructure extends SubsystemBase {
 
         Launcher.getInstance().resetToAbsolute();
         Launcher.getInstance().useAutoCurrentLimits();
+        Launcher.getInstance().useAutoRollerControl();
     }
     
     public void resetSubsystemsForTeleop() {
@@ -222,6 +247,7 @@ public class Superstructure extends SubsystemBase {
         
         Launcher.getInstance().resetToAbsolute();
         Launcher.getInstance().useTeleopCurrentLimits();
+        Launcher.getInstance().useTeleopRollerControl();
     }
 
     public void climbersUp() {
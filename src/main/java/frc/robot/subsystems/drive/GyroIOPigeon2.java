@@ -1,8 +1,5 @@
 package frc.robot.subsystems.drive;
 
-import java.util.OptionalDouble;
-import java.util.Queue;
-
 import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
@@ -16,9 +13,9 @@ import frc.robot.Constants;
 public class GyroIOPigeon2 implements GyroIO {
   private final Pigeon2 pigeon = new Pigeon2(Constants.Swerve.pigeonID);
   private final StatusSignal<Double> yaw = pigeon.getYaw();
-  private final Queue<Double> yawPositionQueue;
-  private final Queue<Double> yawTimestampQueue;
   private final StatusSignal<Double> yawVelocity = pigeon.getAngularVelocityZWorld();
+  /** A copy of the yaw signal for the odometry thread, since status signals aren't thread-safe. */
+  private final StatusSignal<Double> odometryYaw = yaw.clone();
 
   public GyroIOPigeon2() {
     pigeon.getConfigurator().apply(new Pigeon2Configuration());
@@ -27,16 +24,17 @@ public class GyroIOPigeon2 implements GyroIO {
     yawVelocity.setUpdateFrequency(100.0);
     pigeon.optimizeBusUtilization();
 
-    yawTimestampQueue = SparkMaxOdometryThread.getInstance().makeTimestampQueue();
-    yawPositionQueue = SparkMaxOdometryThread.getInstance().registerSignal(
+    SparkMaxOdometryThread.getInstance().registerFrequencyListener(frequency -> yaw.setUpdateFrequency(frequency));
+    SparkMaxOdometryThread.getInstance().registerYaw(
       () -> {
-        boolean valid = yaw.refresh().getStatus().isOK();
+        boolean valid = odometryYaw.refresh().getStatus().isOK();
         if (valid) {
-          return OptionalDouble.of(yaw.getValueAsDouble());
+          return Units.degreesToRadians(odometryYaw.getValueAsDouble());
         } else {
-          return OptionalDouble.empty();
+          return Double.NaN;
         }
-      }
+      },
+      () -> odometryYaw.getTimestamp().getLatency()
     );
   }
 
@@ -45,10 +43,5 @@ public class GyroIOPigeon2 implements GyroIO {
     inputs.connected = BaseStatusSignal.refreshAll(yaw, yawVelocity).equals(StatusCode.OK);
     inputs.yawPosition = Rotation2d.fromDegrees(yaw.getValueAsDouble());
     inputs.yawVelocityRadPerSec = Units.degreesToRadians(yawVelocity.getValueAsDouble());
-
-    inputs.odometryYawTimestamps = yawTimestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryYawPositions = yawPositionQueue.stream().map(Rotation2d::fromDegrees).toArray(Rotation2d[]::new);
-    yawTimestampQueue.clear();
-    yawPositionQueue.clear();
   }
 }
\ No newline at end of file
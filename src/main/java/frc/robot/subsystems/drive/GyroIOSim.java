@@ -1,24 +1,24 @@
 package frc.robot.subsystems.drive;
 
-import java.util.OptionalDouble;
-import java.util.Queue;
-
 import org.littletonrobotics.junction.Logger;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
 
 public class GyroIOSim implements GyroIO {
-  private final Queue<Double> yawPositionQueue;
-  private final Queue<Double> yawTimestampQueue;
-  private double yaw = 0; // Degrees
-  private double yawVelocity = 0; // Degrees per second
+  private volatile double yaw = 0; // Degrees
+  private volatile double yawVelocity = 0; // Degrees per second
+  /** The time of the last odometry sample, in seconds. Only used by the odometry thread. */
+  private double lastSampleTimestamp = 0;
 
   public GyroIOSim() {
-    yawTimestampQueue = SparkMaxOdometryThread.getInstance().makeTimestampQueue();
-    yawPositionQueue = SparkMaxOdometryThread.getInstance().registerSignal(
+    SparkMaxOdometryThread.getInstance().registerYaw(
       () -> {
-        return OptionalDouble.of(yaw + yawVelocity * ((Logger.getRealTimestamp() / 1e6) - yawTimestampQueue.peek()) / 1000.0);
-      }
+        double timestamp = Logger.getRealTimestamp() / 1e6;
+        double value = yaw + yawVelocity * (timestamp - lastSampleTimestamp) / 1000.0;
+        lastSampleTimestamp = timestamp;
+        return Units.degreesToRadians(value);
+      },
+      () -> 0.0
     );
   }
 
@@ -27,11 +27,5 @@ public class GyroIOSim implements GyroIO {
     inputs.connected = true;
     inputs.yawPosition = Rotation2d.fromDegrees(yaw);
     inputs.yawVelocityRadPerSec = Units.degreesToRadians(yawVelocity);
-
-    inputs.odometryYawTimestamps = yawTimestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryYawPositions = yawPositionQueue.stream().map(Rotation2d::fromDegrees).toArray(Rotation2d[]::new);
-    
-    yawTimestampQueue.clear();
-    yawPositionQueue.clear();
   }
 }
\ No newline at end of file
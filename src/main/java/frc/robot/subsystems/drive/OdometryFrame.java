@@ -0,0 +1,92 @@
+package frc.robot.subsystems.drive;
+
+/**
+ * Every odometry signal sampled in a single tick of the odometry thread: a timestamp, the drive and
+ * turn positions of every module, and the gyro yaw.
+ *
+ * <p>Individual signals can fail to read without discarding the whole frame. Each frame has a validity
+ * bitmask with one bit per column; invalid values are filled in by
+ * {@link OdometryFrameBuffer#processFrames()} before the frame is used.
+ *
+ * <p>This is a view into an {@link OdometryFrameBuffer} rather than a copy, so reading frames
+ * doesn't allocate. Get instances with {@link OdometryFrameBuffer#getFrame(int)}.
+ */
+public class OdometryFrame {
+  /** The number of swerve modules in a frame. */
+  public static final int MODULE_COUNT = 4;
+
+  // The column layout of a frame
+  static final int TIMESTAMP_COLUMN = 0;
+  static final int DRIVE_POSITION_COLUMN = 1;
+  static final int TURN_POSITION_COLUMN = DRIVE_POSITION_COLUMN + MODULE_COUNT;
+  static final int YAW_COLUMN = TURN_POSITION_COLUMN + MODULE_COUNT;
+  /** The time the gyro measured the yaw, which is usually a few milliseconds before the wheel timestamp. */
+  static final int YAW_TIMESTAMP_COLUMN = YAW_COLUMN + 1;
+  /**
+   * The validity bitmask, where bit {@code c} is set if column {@code c} was read successfully.
+   * It's stored as a double so the whole frame fits in one row; the mask is a small integer, so this is exact.
+   */
+  static final int VALID_MASK_COLUMN = YAW_TIMESTAMP_COLUMN + 1;
+  static final int COLUMN_COUNT = VALID_MASK_COLUMN + 1;
+
+  private final OdometryFrameBuffer buffer;
+  int index = 0;
+
+  OdometryFrame(OdometryFrameBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Gets the estimated time the wheel positions in this frame were measured, in seconds.
+   * After {@link OdometryFrameBuffer#processFrames()}, the yaw is also at this time.
+   */
+  public double getTimestamp() {
+    return buffer.get(index, TIMESTAMP_COLUMN);
+  }
+
+  /**
+   * Gets the drive wheel position of a module, in radians.
+   * @param module The module index.
+   * @return
+   */
+  public double getDrivePositionRad(int module) {
+    return buffer.get(index, DRIVE_POSITION_COLUMN + module);
+  }
+
+  /**
+   * Gets the turn angle of a module, in radians.
+   * @param module The module index.
+   * @return
+   */
+  public double getTurnPositionRad(int module) {
+    return buffer.get(index, TURN_POSITION_COLUMN + module);
+  }
+
+  /** Gets the gyro yaw, in radians. Positive is counterclockwise. */
+  public double getYawRad() {
+    return buffer.get(index, YAW_COLUMN);
+  }
+
+  /** Gets the time the gyro measured the yaw in this frame, in seconds. */
+  public double getYawTimestamp() {
+    return buffer.get(index, YAW_TIMESTAMP_COLUMN);
+  }
+
+  /**
+   * Gets if a column was read successfully in this frame, rather than interpolated.
+   * @param column
+   * @return
+   */
+  boolean isValid(int column) {
+    return (getValidMask() & (1 << column)) != 0;
+  }
+
+  /** Gets if the gyro yaw was read successfully in this frame, rather than interpolated. */
+  public boolean isYawValid() {
+    return isValid(YAW_COLUMN);
+  }
+
+  int getValidMask() {
+    return (int) buffer.get(index, VALID_MASK_COLUMN);
+  }
+}
@@ -0,0 +1,224 @@
+package frc.robot.subsystems.drive;
+
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.inputs.LoggableInputs;
+
+/**
+ * The odometry frames received in a single cycle, logged as inputs so they can be replayed.
+ *
+ * <p>Frames are stored struct-of-arrays in one contiguous buffer: every timestamp, then every front
+ * left drive position, and so on. Column {@code c} of frame {@code f} is at {@code data[c * capacity + f]}.
+ * This keeps each signal's samples next to each other in memory while guaranteeing that every signal
+ * in a frame was sampled in the same tick.
+ *
+ * <p>The raw frames are what gets logged. {@link #processFrames()} copies them into a separate buffer
+ * before filling in failed reads and aligning the yaw, so the logged inputs stay raw and replay runs
+ * the same processing exactly once.
+ */
+public class OdometryFrameBuffer implements LoggableInputs {
+  private final int capacity;
+  /** The frames as received from the odometry thread or read from the log. */
+  private final double[] rawData;
+  /** The frames after interpolation and yaw alignment. This is what {@link OdometryFrame} reads. */
+  private final double[] processedData;
+  private int frameCount = 0;
+  /**
+   * The total number of failed reads of each column since the odometry thread started, indexed by column.
+   * Failed reads are filled in by interpolation instead of dropping the frame.
+   */
+  private final long[] dropCounts = new long[OdometryFrame.COLUMN_COUNT];
+
+  // The logger may still be serializing last cycle's arrays on its own thread, so we log copies and
+  // alternate between two of them rather than handing it arrays we keep writing to.
+  private final double[][] loggedData = new double[2][];
+  private final long[][] loggedDropCounts = new long[2][OdometryFrame.COLUMN_COUNT];
+  private int nextLogBuffer = 0;
+
+  // The last successfully read value of each column, carried between cycles for interpolation.
+  // These aren't logged since they're recalculated from the logged frames in replay.
+  private final double[] lastValidTimestamps = new double[OdometryFrame.COLUMN_COUNT];
+  private final double[] lastValidValues = new double[OdometryFrame.COLUMN_COUNT];
+  private final boolean[] hasValidValue = new boolean[OdometryFrame.COLUMN_COUNT];
+
+  // Scratch space for time-aligning the yaw, holding the raw yaw samples from this cycle plus the last
+  // one from the previous cycle. Like the interpolation state, these aren't logged.
+  private final double[] rawYawTimestamps;
+  private final double[] rawYaws;
+  private double lastRawYawTimestamp, lastRawYaw;
+  private boolean hasLastRawYaw = false;
+
+  private final OdometryFrame frame = new OdometryFrame(this);
+
+  /**
+   * Creates a new frame buffer.
+   * @param capacity The maximum number of frames the buffer can hold.
+   */
+  public OdometryFrameBuffer(int capacity) {
+    this.capacity = capacity;
+    rawData = new double[capacity * OdometryFrame.COLUMN_COUNT];
+    processedData = new double[rawData.length];
+    loggedData[0] = new double[rawData.length];
+    loggedData[1] = new double[rawData.length];
+    rawYawTimestamps = new double[capacity + 1];
+    rawYaws = new double[capacity + 1];
+  }
+
+  /** Gets the number of frames received this cycle. */
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /** Gets the maximum number of frames the buffer can hold. */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets a view of the frame at the given index.
+   * The returned object is reused between calls, so it's only valid until the next call to this method.
+   * @param index The frame index, where 0 is the oldest frame.
+   * @return
+   */
+  public OdometryFrame getFrame(int index) {
+    frame.index = index;
+    return frame;
+  }
+
+  /** Reads a processed value. */
+  double get(int frameIndex, int column) {
+    return processedData[column * capacity + frameIndex];
+  }
+
+  /** Writes a raw value. It isn't visible through {@link #get} until {@link #processFrames()} is called. */
+  void set(int frameIndex, int column, double value) {
+    rawData[column * capacity + frameIndex] = value;
+  }
+
+  private void setProcessed(int frameIndex, int column, double value) {
+    processedData[column * capacity + frameIndex] = value;
+  }
+
+  void setFrameCount(int frameCount) {
+    this.frameCount = frameCount;
+  }
+
+  void setDropCount(int column, long dropCount) {
+    dropCounts[column] = dropCount;
+  }
+
+  /**
+   * Copies the raw frames into the processed buffer, fills in the values that failed to read, and aligns
+   * the yaw to the wheel timestamps. This should be called once per cycle, after the frames are logged.
+   */
+  public void processFrames() {
+    System.arraycopy(rawData, 0, processedData, 0, rawData.length);
+    interpolateInvalidSamples();
+    alignYawToWheelTimestamps();
+  }
+
+  /**
+   * Fills in every value that failed to read by linearly interpolating, by timestamp, between the
+   * closest valid samples of the same signal on either side. If there's no later valid sample yet,
+   * the last valid value is held instead. Validity masks aren't changed.
+   */
+  private void interpolateInvalidSamples() {
+    for (int column = 0; column < OdometryFrame.COLUMN_COUNT; column++) {
+      if (column == OdometryFrame.TIMESTAMP_COLUMN || column == OdometryFrame.VALID_MASK_COLUMN) continue;
+      int columnBit = 1 << column;
+
+      for (int i = 0; i < frameCount; i++) {
+        double timestamp = get(i, OdometryFrame.TIMESTAMP_COLUMN);
+        if ((getValidMask(i) & columnBit) != 0) {
+          lastValidTimestamps[column] = timestamp;
+          lastValidValues[column] = get(i, column);
+          hasValidValue[column] = true;
+          continue;
+        }
+
+        int next = i + 1;
+        while (next < frameCount && (getValidMask(next) & columnBit) == 0) next++;
+        boolean hasNext = next < frameCount;
+
+        if (hasValidValue[column] && hasNext) {
+          double nextTimestamp = get(next, OdometryFrame.TIMESTAMP_COLUMN);
+          double t = (timestamp - lastValidTimestamps[column]) / (nextTimestamp - lastValidTimestamps[column]);
+          setProcessed(i, column, lastValidValues[column] + (get(next, column) - lastValidValues[column]) * t);
+        } else if (hasValidValue[column]) {
+          setProcessed(i, column, lastValidValues[column]);
+        } else if (hasNext) {
+          setProcessed(i, column, get(next, column));
+        }
+      }
+    }
+  }
+
+  /**
+   * Replaces the yaw in every frame with the yaw interpolated to the frame's wheel timestamp, so the gyro
+   * and wheel data line up in time. Yaw samples newer than every wheel sample are held rather than
+   * extrapolated. This should be called after {@link #interpolateInvalidSamples()}.
+   */
+  private void alignYawToWheelTimestamps() {
+    int sampleCount = 0;
+    if (hasLastRawYaw) {
+      rawYawTimestamps[0] = lastRawYawTimestamp;
+      rawYaws[0] = lastRawYaw;
+      sampleCount++;
+    }
+    for (int i = 0; i < frameCount; i++) {
+      double yawTimestamp = get(i, OdometryFrame.YAW_TIMESTAMP_COLUMN);
+      // Skip samples that aren't newer, like when the gyro didn't get a new CAN frame since the last tick
+      if (sampleCount > 0 && yawTimestamp <= rawYawTimestamps[sampleCount - 1]) continue;
+      rawYawTimestamps[sampleCount] = yawTimestamp;
+      rawYaws[sampleCount] = get(i, OdometryFrame.YAW_COLUMN);
+      sampleCount++;
+    }
+    if (sampleCount == 0) return;
+
+    lastRawYawTimestamp = rawYawTimestamps[sampleCount - 1];
+    lastRawYaw = rawYaws[sampleCount - 1];
+    hasLastRawYaw = true;
+
+    // Wheel timestamps increase, so we can walk forward through the yaw samples
+    int sample = 0;
+    for (int i = 0; i < frameCount; i++) {
+      double timestamp = get(i, OdometryFrame.TIMESTAMP_COLUMN);
+      while (sample < sampleCount - 1 && rawYawTimestamps[sample + 1] <= timestamp) sample++;
+
+      double yaw;
+      if (sample == sampleCount - 1 || timestamp <= rawYawTimestamps[sample]) {
+        yaw = rawYaws[sample];
+      } else {
+        double t = (timestamp - rawYawTimestamps[sample]) / (rawYawTimestamps[sample + 1] - rawYawTimestamps[sample]);
+        yaw = rawYaws[sample] + (rawYaws[sample + 1] - rawYaws[sample]) * t;
+      }
+      setProcessed(i, OdometryFrame.YAW_COLUMN, yaw);
+      setProcessed(i, OdometryFrame.YAW_TIMESTAMP_COLUMN, timestamp);
+    }
+  }
+
+  private int getValidMask(int frameIndex) {
+    return (int) get(frameIndex, OdometryFrame.VALID_MASK_COLUMN);
+  }
+
+  @Override
+  public void toLog(LogTable table) {
+    double[] frames = loggedData[nextLogBuffer];
+    long[] drops = loggedDropCounts[nextLogBuffer];
+    nextLogBuffer = 1 - nextLogBuffer;
+    System.arraycopy(rawData, 0, frames, 0, rawData.length);
+    System.arraycopy(dropCounts, 0, drops, 0, dropCounts.length);
+
+    table.put("FrameCount", frameCount);
+    table.put("Frames", frames);
+    table.put("DropCounts", drops);
+  }
+
+  @Override
+  public void fromLog(LogTable table) {
+    frameCount = table.get("FrameCount", frameCount);
+    double[] frames = table.get("Frames", rawData);
+    System.arraycopy(frames, 0, rawData, 0, Math.min(frames.length, rawData.length));
+    long[] drops = table.get("DropCounts", dropCounts);
+    System.arraycopy(drops, 0, dropCounts, 0, Math.min(drops.length, dropCounts.length));
+  }
+}
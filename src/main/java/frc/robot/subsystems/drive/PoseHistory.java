@@ -0,0 +1,122 @@
+package frc.robot.subsystems.drive;
+
+import java.util.Optional;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.lib.util.DoubleRingBuffer;
+
+/**
+ * A bounded history of timestamped robot poses, used to look up where the robot was when a delayed
+ * measurement (like a camera frame) was captured.
+ *
+ * <p>Unlike WPILib's {@code TimeInterpolatableBuffer}, which stores boxed poses in a {@code TreeMap},
+ * samples are stored as primitive x, y, and theta values in ring buffers that move in lockstep. Adding a
+ * sample never allocates, and lookups are a binary search followed by linear interpolation.
+ *
+ * <p>This class isn't thread-safe; it should only be used from the main loop.
+ */
+public class PoseHistory {
+  private final double windowSeconds;
+  private final DoubleRingBuffer timestamps;
+  private final DoubleRingBuffer xs;
+  private final DoubleRingBuffer ys;
+  private final DoubleRingBuffer thetas;
+
+  /**
+   * Creates a new pose history.
+   * @param windowSeconds How long samples are kept, in seconds, relative to the newest sample.
+   * @param sampleFrequency The expected rate samples are added at, in hertz. Used to size the buffers.
+   */
+  public PoseHistory(double windowSeconds, double sampleFrequency) {
+    this.windowSeconds = windowSeconds;
+
+    // Leave some headroom in case samples come in slightly faster than expected
+    int capacity = (int)Math.ceil(windowSeconds * sampleFrequency * 1.25) + 1;
+    timestamps = new DoubleRingBuffer(capacity);
+    xs = new DoubleRingBuffer(capacity);
+    ys = new DoubleRingBuffer(capacity);
+    thetas = new DoubleRingBuffer(capacity);
+  }
+
+  /**
+   * Adds a pose sample. Samples must be added in increasing timestamp order; older samples are ignored.
+   * @param timestampSeconds
+   * @param pose
+   */
+  public void addSample(double timestampSeconds, Pose2d pose) {
+    addSample(timestampSeconds, pose.getX(), pose.getY(), pose.getRotation().getRadians());
+  }
+
+  /**
+   * Adds a pose sample. Samples must be added in increasing timestamp order; older samples are ignored.
+   * @param timestampSeconds
+   * @param x The x position, in meters.
+   * @param y The y position, in meters.
+   * @param thetaRadians The heading, in radians.
+   */
+  public void addSample(double timestampSeconds, double x, double y, double thetaRadians) {
+    if(!timestamps.isEmpty() && timestampSeconds <= timestamps.peekLast(0)) return;
+
+    // Remove samples outside the window, and the oldest sample if we're full
+    while(!timestamps.isEmpty() && (
+      timestamps.size() == timestamps.capacity() ||
+      timestamps.peekFirst(0) < timestampSeconds - windowSeconds
+    )) {
+      timestamps.removeFirst();
+      xs.removeFirst();
+      ys.removeFirst();
+      thetas.removeFirst();
+    }
+
+    timestamps.offer(timestampSeconds);
+    xs.offer(x);
+    ys.offer(y);
+    thetas.offer(thetaRadians);
+  }
+
+  /**
+   * Gets the pose at the given time, interpolating between the samples on either side of it.
+   * Times after the newest sample return the newest sample.
+   * @param timestampSeconds
+   * @return The pose, or an empty optional if the time is before the oldest sample in the history.
+   */
+  public Optional<Pose2d> getPoseAt(double timestampSeconds) {
+    if(timestamps.isEmpty() || timestampSeconds < timestamps.peekFirst(0)) return Optional.empty();
+
+    int last = timestamps.size() - 1;
+    if(timestampSeconds >= timestamps.get(last)) {
+      return Optional.of(new Pose2d(xs.get(last), ys.get(last), new Rotation2d(thetas.get(last))));
+    }
+
+    // Find the first sample after the timestamp
+    int low = 0;
+    int high = last;
+    while(low < high) {
+      int middle = (low + high) >>> 1;
+      if(timestamps.get(middle) <= timestampSeconds) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    int after = low;
+    int before = after - 1;
+
+    double t = (timestampSeconds - timestamps.get(before)) / (timestamps.get(after) - timestamps.get(before));
+    double x = xs.get(before) + (xs.get(after) - xs.get(before)) * t;
+    double y = ys.get(before) + (ys.get(after) - ys.get(before)) * t;
+    // Interpolate the heading the short way around
+    double theta = thetas.get(before) + MathUtil.angleModulus(thetas.get(after) - thetas.get(before)) * t;
+    return Optional.of(new Pose2d(x, y, new Rotation2d(theta)));
+  }
+
+  /** Removes every sample from the history. */
+  public void clear() {
+    timestamps.clear();
+    xs.clear();
+    ys.clear();
+    thetas.clear();
+  }
+}
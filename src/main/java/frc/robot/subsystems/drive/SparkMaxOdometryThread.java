@@ -1,24 +1,105 @@
 package frc.robot.subsystems.drive;
 
 import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.lib.util.LatencyHistogram;
+import frc.lib.util.SpscDoubleRing;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.OptionalDouble;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.Logger;
 
 /**
- * Provides an interface for asynchronously reading high-frequency measurements to a set of queues.
+ * Provides an interface for asynchronously reading high-frequency measurements into odometry frames.
  *
  * <p>This version is intended for devices like the SparkMax that require polling rather than a
  * blocking thread. A Notifier thread is used to gather samples with consistent timing.
+ *
+ * <p>Every tick samples all registered signals together into one {@link OdometryFrame}, so the drive
+ * positions, turn positions, and gyro yaw in a frame always line up. If a single signal fails to read,
+ * only that signal is marked invalid in the frame's validity mask; the rest of the frame is kept.
+ *
+ * <p>Frames are handed to the main loop without a shared lock. Each frame is published as one row of a
+ * lock-free single-producer/single-consumer ring, and the main loop copies published frames out by
+ * calling {@link #updateFrames(OdometryFrameBuffer)}. The devices themselves aren't thread-safe, so the
+ * IO implementations still serialize their own device calls, but only per device: a sample waits at most
+ * for the main loop's read of that one device, never for the whole loop.
+ *
+ * <p>The thread also times every tick: how late the notifier woke up compared to the nominal period,
+ * how long reading the signals took, and how long publishing the frame took. These go into histograms
+ * that are summarized once per second and logged with {@link #logTimingStatistics()}.
+ *
+ * <p>When {@link SwerveModule#ADAPTIVE_ODOMETRY_FREQUENCY} is enabled, the sample rate is stepped down
+ * when the CAN bus is saturated or samples are failing to read, and back up once things recover.
+ * Devices update their status frame rates to match through listeners registered with
+ * {@link #registerFrequencyListener(DoubleConsumer)}.
+ *
+ * <p>Frames carry two timestamps. SPARKs don't report when a status frame arrived, so the wheel
+ * timestamp is estimated as the read time minus half the status frame period: the average age of
+ * the latest frame. The gyro reports its own sample age, so the yaw gets an exact timestamp.
  */
 public class SparkMaxOdometryThread {
-  private List<Supplier<OptionalDouble>> signals = new ArrayList<>();
-  private List<Queue<Double>> queues = new ArrayList<>();
-  private List<Queue<Double>> timestampQueues = new ArrayList<>();
+  /**
+   * The number of frames that can be buffered before new frames are dropped.
+   * This is far more than we should ever see in one 20ms cycle at our odometry frequency.
+   */
+  public static final int SAMPLE_BUFFER_CAPACITY = 20;
+
+  /** The signal sampled for each frame column, or null if nothing is registered for the column. */
+  private final DoubleSupplier[] signals = new DoubleSupplier[OdometryFrame.COLUMN_COUNT];
+  /** A supplier for how old the last yaw sample was when it was read, in seconds. */
+  private DoubleSupplier yawAgeSeconds = () -> 0.0;
+
+  /**
+   * The channel from the notifier thread to the main loop. Each row is one frame.
+   * This is null until the thread is started.
+   */
+  private SpscDoubleRing frameChannel = null;
+  /** Scratch space for the frame read in a single tick, reused to avoid allocating. Only used by the notifier thread. */
+  private final double[] frame = new double[OdometryFrame.COLUMN_COUNT];
+  /** The number of frames dropped because the main loop didn't poll often enough. Only written by the notifier thread. */
+  private volatile long overflowCount = 0;
+  /** The number of failed reads of each column. Only written by the notifier thread. */
+  private final AtomicLongArray dropCounts = new AtomicLongArray(OdometryFrame.COLUMN_COUNT);
+
+  // Timing histograms, in microseconds. Only used by the notifier thread.
+  // 25us buckets up to 10ms; anything longer is far past a missed tick anyway.
+  private final LatencyHistogram jitterHistogram = new LatencyHistogram(25, 400);
+  private final LatencyHistogram readTimeHistogram = new LatencyHistogram(25, 400);
+  private final LatencyHistogram publishTimeHistogram = new LatencyHistogram(25, 400);
+  private long lastWakeNanos = 0;
+
+  // Summary of the timing histograms, published by the notifier thread once per second.
+  // This is guarded by a seqlock: the notifier thread holds the write lock only while copying the
+  // summary, and the main loop reads optimistically, so neither side ever waits on the other.
+  private static final int TIMING_STATISTIC_COUNT = 9;
+  private final StampedLock timingLock = new StampedLock();
+  private final double[] timingSummary = new double[TIMING_STATISTIC_COUNT];
+  private long timingSummaryVersion = 0;
+  /** The main loop's copy of the timing summary. Only used by the main loop. */
+  private final double[] loggedTimingSummary = new double[TIMING_STATISTIC_COUNT];
+  private long loggedTimingSummaryVersion = 0;
+
+  // Adaptive frequency state. The period is in whole milliseconds so SPARK status frame periods match it exactly.
+  private static final int MIN_PERIOD_MS = (int)Math.round(1000.0 / SwerveModule.ODOMETRY_FREQUENCY);
+  private static final int MAX_PERIOD_MS = (int)Math.round(1000.0 / SwerveModule.MIN_ODOMETRY_FREQUENCY);
+  /** Above this CAN bus utilization, or this fraction of failed reads, we step the frequency down. */
+  private static final double HIGH_CAN_UTILIZATION = 0.8, HIGH_INVALID_SAMPLE_RATE = 0.02;
+  /** Below this CAN bus utilization and this fraction of failed reads, we step the frequency back up. */
+  private static final double LOW_CAN_UTILIZATION = 0.6, LOW_INVALID_SAMPLE_RATE = 0.005;
+  /** The number of main loop cycles between frequency adjustments. */
+  private static final int ADAPTIVE_EVALUATION_CYCLES = 50;
+
+  private final List<DoubleConsumer> frequencyListeners = new ArrayList<>();
+  private int periodMs = MIN_PERIOD_MS;
+  /** The current sample frequency in hertz. Written by the main loop and read by the notifier thread. */
+  private volatile double frequency = 1000.0 / MIN_PERIOD_MS;
+  private int cyclesSinceEvaluation = 0;
+  private long framesSinceEvaluation = 0;
+  private long dropsAtLastEvaluation = 0;
 
   private final Notifier notifier;
   private static SparkMaxOdometryThread instance = null;
@@ -35,60 +116,243 @@ public class SparkMaxOdometryThread {
     notifier.setName("SparkMaxOdometryThread");
   }
 
+  /**
+   * Starts sampling. All signals must be registered before this is called.
+   */
   public void start() {
-    if (timestampQueues.size() > 0) {
-      notifier.startPeriodic(1.0 / SwerveModule.ODOMETRY_FREQUENCY);
+    if (frameChannel != null) return;
+
+    boolean anyRegistered = false;
+    for (DoubleSupplier signal : signals) {
+      if (signal != null) anyRegistered = true;
     }
+    if (!anyRegistered) return;
+
+    frameChannel = new SpscDoubleRing(SAMPLE_BUFFER_CAPACITY, OdometryFrame.COLUMN_COUNT);
+    notifier.startPeriodic(1.0 / frequency);
   }
 
-  public Queue<Double> registerSignal(Supplier<OptionalDouble> signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    Swerve.odometryLock.lock();
-    try {
-      signals.add(signal);
-      queues.add(queue);
-    } finally {
-      Swerve.odometryLock.unlock();
+  /**
+   * Registers a listener that's called on the main loop whenever the odometry frequency changes, so
+   * devices can update their status frame rates to match.
+   * @param listener Called with the new frequency in hertz.
+   */
+  public void registerFrequencyListener(DoubleConsumer listener) {
+    if (frameChannel != null) throw new IllegalStateException("Odometry frequency listeners must be registered before the odometry thread starts");
+    frequencyListeners.add(listener);
+  }
+
+  /** Gets the current odometry sample frequency, in hertz. */
+  public double getFrequency() {
+    return frequency;
+  }
+
+  /**
+   * Steps the odometry frequency up or down based on CAN bus utilization and the fraction of signal
+   * reads that failed since the last adjustment, and logs the result. Must be called from the main loop
+   * every cycle; adjustments only happen about once per second.
+   */
+  public void updateAdaptiveFrequency() {
+    if (frameChannel == null) return;
+
+    cyclesSinceEvaluation++;
+    if (SwerveModule.ADAPTIVE_ODOMETRY_FREQUENCY && cyclesSinceEvaluation >= ADAPTIVE_EVALUATION_CYCLES) {
+      cyclesSinceEvaluation = 0;
+      evaluateFrequency();
     }
-    return queue;
+    Logger.recordOutput("Drive/Odometry/FrequencyHz", frequency);
   }
 
-  public Queue<Double> makeTimestampQueue() {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    Swerve.odometryLock.lock();
+  private void evaluateFrequency() {
+
+    int registeredSignals = 0;
+    long drops = 0;
+    for (int column = 0; column < OdometryFrame.COLUMN_COUNT; column++) {
+      if (signals[column] != null) registeredSignals++;
+      drops += dropCounts.get(column);
+    }
+    long expectedReads = framesSinceEvaluation * registeredSignals;
+    double invalidSampleRate = expectedReads == 0 ? 0 : (double)(drops - dropsAtLastEvaluation) / expectedReads;
+    dropsAtLastEvaluation = drops;
+    framesSinceEvaluation = 0;
+
+    double canUtilization = RobotController.getCANStatus().percentBusUtilization;
+    Logger.recordOutput("Drive/Odometry/CANUtilization", canUtilization);
+    Logger.recordOutput("Drive/Odometry/InvalidSampleRate", invalidSampleRate);
+
+    int newPeriodMs = periodMs;
+    if (canUtilization > HIGH_CAN_UTILIZATION || invalidSampleRate > HIGH_INVALID_SAMPLE_RATE) {
+      newPeriodMs = Math.min(periodMs + 1, MAX_PERIOD_MS);
+    } else if (canUtilization < LOW_CAN_UTILIZATION && invalidSampleRate < LOW_INVALID_SAMPLE_RATE) {
+      newPeriodMs = Math.max(periodMs - 1, MIN_PERIOD_MS);
+    }
+    if (newPeriodMs == periodMs) return;
+
+    periodMs = newPeriodMs;
+    frequency = 1000.0 / periodMs;
+    notifier.startPeriodic(periodMs / 1000.0);
+    for (DoubleConsumer listener : frequencyListeners) {
+      listener.accept(frequency);
+    }
+  }
+
+  /**
+   * Registers a module's drive position signal.
+   * @param module The module index.
+   * @param signal A supplier for the drive wheel position in radians. It should return {@link Double#NaN}
+   * if the read failed, in which case the value is marked invalid in the frame.
+   */
+  public void registerDrivePosition(int module, DoubleSupplier signal) {
+    registerSignal(OdometryFrame.DRIVE_POSITION_COLUMN + module, signal);
+  }
+
+  /**
+   * Registers a module's turn position signal.
+   * @param module The module index.
+   * @param signal A supplier for the turn angle in radians. It should return {@link Double#NaN}
+   * if the read failed, in which case the value is marked invalid in the frame.
+   */
+  public void registerTurnPosition(int module, DoubleSupplier signal) {
+    registerSignal(OdometryFrame.TURN_POSITION_COLUMN + module, signal);
+  }
+
+  /**
+   * Registers the gyro yaw signal.
+   * @param signal A supplier for the yaw in radians, counterclockwise positive. It should return
+   * {@link Double#NaN} if the read failed, in which case the value is marked invalid in the frame.
+   * @param ageSeconds A supplier for how long before it was read the last yaw sample was measured, in seconds.
+   * This is called right after {@code signal}.
+   */
+  public void registerYaw(DoubleSupplier signal, DoubleSupplier ageSeconds) {
+    registerSignal(OdometryFrame.YAW_COLUMN, signal);
+    yawAgeSeconds = ageSeconds;
+  }
+
+  private void registerSignal(int column, DoubleSupplier signal) {
+    if (frameChannel != null) throw new IllegalStateException("Odometry signals must be registered before the odometry thread starts");
+    signals[column] = signal;
+  }
+
+  /**
+   * Copies every frame published by the odometry thread since the last call into the given buffer.
+   * Must only be called from the main loop.
+   * @param frames
+   */
+  public void updateFrames(OdometryFrameBuffer frames) {
+    if (frameChannel == null) {
+      frames.setFrameCount(0);
+      return;
+    }
+
+    int frameCount = Math.min(frameChannel.available(), frames.getCapacity());
+    for (int i = 0; i < frameCount; i++) {
+      for (int column = 0; column < OdometryFrame.COLUMN_COUNT; column++) {
+        frames.set(i, column, frameChannel.get(i, column));
+      }
+    }
+    frames.setFrameCount(frameCount);
+    frameChannel.release(frameCount);
+    framesSinceEvaluation += frameCount;
+
+    for (int column = 0; column < OdometryFrame.COLUMN_COUNT; column++) {
+      frames.setDropCount(column, dropCounts.get(column));
+    }
+  }
+
+  /**
+   * Gets the number of frames dropped because the main loop didn't poll before the channel filled up.
+   * @return
+   */
+  public long getOverflowCount() {
+    return overflowCount;
+  }
+
+  /**
+   * Logs the latest once-per-second timing summary, if a new one has been published since the last call.
+   * Must only be called from the main loop.
+   */
+  public void logTimingStatistics() {
+    long stamp = timingLock.tryOptimisticRead();
+    long version = timingSummaryVersion;
+    System.arraycopy(timingSummary, 0, loggedTimingSummary, 0, TIMING_STATISTIC_COUNT);
+    // If the notifier thread published while we were copying, just try again next cycle
+    if (!timingLock.validate(stamp) || version == loggedTimingSummaryVersion) return;
+    loggedTimingSummaryVersion = version;
+
+    Logger.recordOutput("Drive/Odometry/Timing/JitterP50MS", loggedTimingSummary[0]);
+    Logger.recordOutput("Drive/Odometry/Timing/JitterP99MS", loggedTimingSummary[1]);
+    Logger.recordOutput("Drive/Odometry/Timing/JitterMaxMS", loggedTimingSummary[2]);
+    Logger.recordOutput("Drive/Odometry/Timing/ReadTimeP50MS", loggedTimingSummary[3]);
+    Logger.recordOutput("Drive/Odometry/Timing/ReadTimeP99MS", loggedTimingSummary[4]);
+    Logger.recordOutput("Drive/Odometry/Timing/ReadTimeMaxMS", loggedTimingSummary[5]);
+    Logger.recordOutput("Drive/Odometry/Timing/PublishTimeP50MS", loggedTimingSummary[6]);
+    Logger.recordOutput("Drive/Odometry/Timing/PublishTimeP99MS", loggedTimingSummary[7]);
+    Logger.recordOutput("Drive/Odometry/Timing/PublishTimeMaxMS", loggedTimingSummary[8]);
+  }
+
+  /** Summarizes and resets the timing histograms. Called from the notifier thread. */
+  private void publishTimingSummary() {
+    long stamp = timingLock.writeLock();
     try {
-      timestampQueues.add(queue);
+      timingSummary[0] = jitterHistogram.getPercentile(0.5) / 1000.0;
+      timingSummary[1] = jitterHistogram.getPercentile(0.99) / 1000.0;
+      timingSummary[2] = jitterHistogram.getMax() / 1000.0;
+      timingSummary[3] = readTimeHistogram.getPercentile(0.5) / 1000.0;
+      timingSummary[4] = readTimeHistogram.getPercentile(0.99) / 1000.0;
+      timingSummary[5] = readTimeHistogram.getMax() / 1000.0;
+      timingSummary[6] = publishTimeHistogram.getPercentile(0.5) / 1000.0;
+      timingSummary[7] = publishTimeHistogram.getPercentile(0.99) / 1000.0;
+      timingSummary[8] = publishTimeHistogram.getMax() / 1000.0;
+      timingSummaryVersion++;
     } finally {
-      Swerve.odometryLock.unlock();
+      timingLock.unlockWrite(stamp);
     }
-    return queue;
+
+    jitterHistogram.reset();
+    readTimeHistogram.reset();
+    publishTimeHistogram.reset();
   }
 
   private void periodic() {
-    Swerve.odometryLock.lock();
-    double timestamp = Logger.getRealTimestamp() / 1e6;
-    try {
-      double[] values = new double[signals.size()];
-      boolean isValid = true;
-      for (int i = 0; i < signals.size(); i++) {
-        OptionalDouble value = signals.get(i).get();
-        if (value.isPresent()) {
-          values[i] = value.getAsDouble();
-        } else {
-          isValid = false;
-          break;
-        }
+    long wakeNanos = System.nanoTime();
+    if (lastWakeNanos != 0) {
+      double periodMicros = (wakeNanos - lastWakeNanos) / 1000.0;
+      jitterHistogram.record(Math.abs(periodMicros - 1e6 / frequency));
+    }
+    lastWakeNanos = wakeNanos;
+    // Roughly once per second
+    if (jitterHistogram.getCount() >= frequency) publishTimingSummary();
+
+    double readTimestamp = Logger.getRealTimestamp() / 1e6;
+    // On average, the latest SPARK status frame arrived half a period ago
+    frame[OdometryFrame.TIMESTAMP_COLUMN] = readTimestamp - 0.5 / frequency;
+    int validMask = 0;
+    for (int column = 0; column < OdometryFrame.COLUMN_COUNT; column++) {
+      DoubleSupplier signal = signals[column];
+      if (signal == null) continue;
+
+      double value = signal.getAsDouble();
+      if (Double.isNaN(value)) {
+        // Keep the rest of the frame; the main loop interpolates this value from its neighbors
+        dropCounts.incrementAndGet(column);
+        continue;
       }
-      if (isValid) {
-        for (int i = 0; i < queues.size(); i++) {
-          queues.get(i).offer(values[i]);
-        }
-        for (int i = 0; i < timestampQueues.size(); i++) {
-          timestampQueues.get(i).offer(timestamp);
-        }
+      frame[column] = value;
+      validMask |= 1 << column;
+
+      if (column == OdometryFrame.YAW_COLUMN) {
+        frame[OdometryFrame.YAW_TIMESTAMP_COLUMN] = Logger.getRealTimestamp() / 1e6 - yawAgeSeconds.getAsDouble();
+        validMask |= 1 << OdometryFrame.YAW_TIMESTAMP_COLUMN;
       }
-    } finally {
-      Swerve.odometryLock.unlock();
     }
+    long readEndNanos = System.nanoTime();
+    readTimeHistogram.record((readEndNanos - wakeNanos) / 1000.0);
+    if (validMask == 0) return; // Nothing was read, so there's nothing to publish
+    frame[OdometryFrame.VALID_MASK_COLUMN] = validMask;
+
+    if (!frameChannel.tryWrite(frame)) {
+      overflowCount++;
+    }
+    publishTimeHistogram.record((System.nanoTime() - readEndNanos) / 1000.0);
   }
-}
\ No newline at end of file
+}
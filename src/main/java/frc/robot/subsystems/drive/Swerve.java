@@ -2,8 +2,7 @@ package frc.robot.subsystems.drive;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Optional;
 
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
@@ -17,19 +16,15 @@ import com.pathplanner.lib.util.PIDConstants;
 import com.pathplanner.lib.util.PathPlannerLogging;
 import com.pathplanner.lib.util.ReplanningConfig;
 
-import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.units.BaseUnits;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Tracer;
-import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -40,6 +35,8 @@ import frc.lib.drive.FieldRelativeVelocity;
 import frc.lib.util.LocalADStarAK;
 import frc.lib.util.ShuffleboardContent;
 import frc.robot.Constants;
+import frc.robot.FieldGeometry;
+import frc.robot.RobotState;
 import frc.robot.subsystems.vision.Limelight;
 import frc.robot.visualization.NoteVisualizer;
 
@@ -53,10 +50,10 @@ public class Swerve extends SubsystemBase {
           instance = new Swerve(
             new GyroIOPigeon2(),
             new SwerveModuleIO[] {
-              new SwerveModuleIOSparkMax(Constants.Swerve.mod0Constants),
-              new SwerveModuleIOSparkMax(Constants.Swerve.mod1Constants),
-              new SwerveModuleIOSparkMax(Constants.Swerve.mod2Constants),
-              new SwerveModuleIOSparkMax(Constants.Swerve.mod3Constants)
+              new SwerveModuleIOSparkMax(0, Constants.Swerve.mod0Constants),
+              new SwerveModuleIOSparkMax(1, Constants.Swerve.mod1Constants),
+              new SwerveModuleIOSparkMax(2, Constants.Swerve.mod2Constants),
+              new SwerveModuleIOSparkMax(3, Constants.Swerve.mod3Constants)
             }
           );
           return instance;
@@ -64,7 +61,7 @@ public class Swerve extends SubsystemBase {
           // Sim robot, instantiate physics sim IO implementations
           instance = new Swerve(
             new GyroIO() {},
-            new SwerveModuleIO[] { new SwerveModuleIOSim(), new SwerveModuleIOSim(), new SwerveModuleIOSim(), new SwerveModuleIOSim() }
+            new SwerveModuleIO[] { new SwerveModuleIOSim(0), new SwerveModuleIOSim(1), new SwerveModuleIOSim(2), new SwerveModuleIOSim(3) }
           );
           return instance;
         default:
@@ -79,13 +76,13 @@ public class Swerve extends SubsystemBase {
     return instance;
   }
 
-  static final Lock odometryLock = new ReentrantLock();
-
   private final GyroIO gyroIO;
   private final GyroIOInputsAutoLogged gyroInputs = new GyroIOInputsAutoLogged();
+  /** The odometry frames received from the odometry thread this cycle. */
+  private final OdometryFrameBuffer odometryFrames = new OdometryFrameBuffer(SparkMaxOdometryThread.SAMPLE_BUFFER_CAPACITY);
 
   private final SwerveDriveKinematics kinematics;
-  private SwerveDrivePoseEstimator swerveOdometry;
+  private SwervePoseEstimator swerveOdometry;
   private SwerveModule[] swerveModules;
 
   private Field2d field;
@@ -119,11 +116,12 @@ public class Swerve extends SubsystemBase {
 
   
   private Rotation2d rawGyroRotation = new Rotation2d();
-  /**
-   * The last known module positions.  
-   * Used for delta tracking.
-   */
-  private SwerveModulePosition[] lastModulePositions;
+  private double rawGyroRadians = 0.0;
+
+  // Preallocated buffers for the odometry loop so it doesn't create garbage for every frame
+  private final double[] odometryDistancesMeters = new double[OdometryFrame.MODULE_COUNT];
+  private final double[] odometryAnglesRadians = new double[OdometryFrame.MODULE_COUNT];
+  private static final SwerveModuleState[] emptyModuleStates = new SwerveModuleState[] {};
 
   private Swerve(
     GyroIO gyroIO,
@@ -138,24 +136,16 @@ public class Swerve extends SubsystemBase {
     
     SparkMaxOdometryThread.getInstance().start();
 
-    SwerveModulePosition[] swerveModulePositions = new SwerveModulePosition[swerveModules.length];
-    for (int i = 0; i < swerveModules.length; i++) {
-      swerveModulePositions[i] = swerveModules[i].getPosition();
-    }
-    
-    lastModulePositions = swerveModulePositions;
-
     Pose2d startPose = new Pose2d(new Translation2d(0.0, 0.0), new Rotation2d());
 
     kinematics = new SwerveDriveKinematics(Constants.Swerve.modulePositions);
 
-    swerveOdometry = new SwerveDrivePoseEstimator(
-      kinematics,
-      getYaw(),
-      swerveModulePositions,
-      startPose,
+    swerveOdometry = new SwervePoseEstimator(
+      Constants.Swerve.modulePositions,
       Limelight.stateStdDevs,
-      Limelight.visionMeasurementStdDevs
+      getYaw().getRadians(),
+      getModuleDistances(),
+      startPose
     );
     
     resetRotation();
@@ -163,7 +153,7 @@ public class Swerve extends SubsystemBase {
     AutoBuilder.configureHolonomic(
       this::getPose, // Robot pose supplier
       this::setPose, // Method to reset odometry (will be called if your auto has a starting pose)
-      this::getRobotRelativeSpeeds, // ChassisSpeeds supplier. MUST BE ROBOT RELATIVE
+      () -> RobotState.getCurrent().getRobotRelativeSpeeds(), // ChassisSpeeds supplier. MUST BE ROBOT RELATIVE
       this::driveVelocity, // Method that will drive the robot given ROBOT RELATIVE ChassisSpeeds
       new HolonomicPathFollowerConfig( // HolonomicPathFollowerConfig, this should likely live in your Constants class
         new PIDConstants(7, 0, 0), // Translation PID constants
@@ -175,7 +165,7 @@ public class Swerve extends SubsystemBase {
       // Boolean supplier that controls when the path will be mirrored for the red alliance
       // This will flip the path being followed to the red side of the field.
       // THE ORIGIN WILL REMAIN ON THE BLUE SIDE
-      () -> DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == Alliance.Red,
+      () -> FieldGeometry.getInstance().isRedAlliance(),
       this // Reference to this subsystem to set requirements
     );
     
@@ -211,39 +201,18 @@ public class Swerve extends SubsystemBase {
       .withSize(5, 4);
 
     if(Constants.enableNonEssentialShuffleboard) {
-      Shuffleboard.getTab("Notes").addString("Odometry position", () -> ("(" + getPose().getX() + ", " + getPose().getY() + ")"));
+      Shuffleboard.getTab("Notes").addString("Odometry position", () -> {
+        Pose2d pose = RobotState.getCurrent().getPose();
+        return "(" + pose.getX() + ", " + pose.getY() + ")";
+      });
       
       Shuffleboard.getTab("Notes").addNumber("Speaker distance", () -> {
-        Swerve swerve = Swerve.getInstance();
-
-        Translation2d currentPosition = swerve.getPose().getTranslation();
-        
-        double speakerInward = -0.1;
-        double speakerY = 5.55;
-
-        boolean isBlueAlliance = DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == DriverStation.Alliance.Blue;
-        Translation2d targetLocation = isBlueAlliance ? new Translation2d(speakerInward, speakerY) : new Translation2d(Constants.fieldLengthMeters - speakerInward, speakerY);
-
-        Translation2d relativeTargetLocation = targetLocation.minus(currentPosition);
-        double distance = relativeTargetLocation.getNorm();
-
-        return distance;
+        Pose2d pose = RobotState.getCurrent().getPose();
+        return Math.hypot(FieldGeometry.getInstance().getSpeakerX() - pose.getX(), FieldGeometry.speakerY - pose.getY());
       });
       Shuffleboard.getTab("Notes").addNumber("Lob distance", () -> {
-        Swerve swerve = Swerve.getInstance();
-
-        Translation2d currentPosition = swerve.getPose().getTranslation();
-
-        double targetX = 1.38;
-        double targetY = 7.06;
-
-        boolean isBlueAlliance = DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == DriverStation.Alliance.Blue;
-        Translation2d targetLocation = isBlueAlliance ? new Translation2d(targetX, targetY) : new Translation2d(Constants.fieldLengthMeters - targetX, targetY);
-
-        Translation2d relativeTargetLocation = targetLocation.minus(currentPosition);
-        double distance = relativeTargetLocation.getNorm();
-
-        return distance;
+        Pose2d pose = RobotState.getCurrent().getPose();
+        return Math.hypot(FieldGeometry.getInstance().getLobTargetX() - pose.getX(), FieldGeometry.lobTargetY - pose.getY());
       });
     }
 
@@ -261,9 +230,7 @@ public class Swerve extends SubsystemBase {
   }
 
   private double robotSpeed = 0.0;
-  private FieldRelativeVelocity velocity = new FieldRelativeVelocity();
   private FieldRelativeVelocity lastVelocity = new FieldRelativeVelocity();
-  private FieldRelativeAcceleration acceleration = new FieldRelativeAcceleration();
 
   /**
    * Gets the absolute speed of the robot in meters per second.
@@ -273,12 +240,6 @@ public class Swerve extends SubsystemBase {
   public double getRobotSpeed() {
     return robotSpeed;
   }
-  public FieldRelativeVelocity getFieldRelativeVelocity() {
-    return velocity;
-  }
-  public FieldRelativeAcceleration getFieldRelativeAcceleration() {
-    return acceleration;
-  }
 
   public ChassisSpeeds getRobotRelativeSpeeds() {
     return kinematics.toChassisSpeeds(getStates());
@@ -292,13 +253,13 @@ public class Swerve extends SubsystemBase {
     );
   }
 
-  /** Returns the module positions (turn angles and drive positions) for all of the modules. */
-  private SwerveModulePosition[] getModulePositions() {
-    SwerveModulePosition[] states = new SwerveModulePosition[swerveModules.length];
+  /** Returns the drive positions, in meters, for all of the modules. */
+  private double[] getModuleDistances() {
+    double[] distances = new double[swerveModules.length];
     for (int i = 0; i < swerveModules.length; i++) {
-      states[i] = swerveModules[i].getPosition();
+      distances[i] = swerveModules[i].getPosition().distanceMeters;
     }
-    return states;
+    return distances;
   }
 
   /**
@@ -376,9 +337,20 @@ public class Swerve extends SubsystemBase {
     return getPose().getRotation();
   }
 
+  /**
+   * Gets the estimated pose at a past time, like when a camera frame was captured.
+   * @param timestampSeconds The FPGA timestamp, in seconds.
+   * @return The pose, or an empty optional if the time is older than the pose history.
+   */
+  public Optional<Pose2d> getPoseAt(double timestampSeconds) {
+    return swerveOdometry.getEstimatedPositionAt(timestampSeconds);
+  }
+
   /** Resets the current odometry pose. */
   public void setPose(Pose2d pose) {
-    swerveOdometry.resetPosition(rawGyroRotation, getModulePositions(), pose);
+    swerveOdometry.resetPosition(rawGyroRadians, getModuleDistances(), pose);
+    // Don't make anything wait until the next cycle to see the new pose
+    RobotState.publish(RobotState.getCurrent().withPose(getPose()));
   }
 
   /**
@@ -414,6 +386,52 @@ public class Swerve extends SubsystemBase {
     return gyroInputs.yawPosition;
   }
 
+  /**
+   * Integrates a cycle of odometry frames into the pose estimator. This is the per-frame part of
+   * {@link #periodic()}, split out so it can be tested without hardware. It doesn't allocate.
+   * @param frames The processed frames from this cycle.
+   * @param estimator
+   * @param gyroConnected If the gyro yaw can be used. If not, the heading is integrated from the wheels.
+   * @param rawGyroRadians The raw gyro angle after the previous cycle.
+   * @param distancesMeters A reused buffer for the wheel distances.
+   * @param anglesRadians A reused buffer for the wheel angles.
+   * @return The raw gyro angle after the last frame.
+   */
+  static double integrateOdometryFrames(
+    OdometryFrameBuffer frames,
+    SwervePoseEstimator estimator,
+    boolean gyroConnected,
+    double rawGyroRadians,
+    double[] distancesMeters,
+    double[] anglesRadians
+  ) {
+    // Every frame holds all signals sampled in the same tick, so they're always aligned.
+    int frameCount = frames.getFrameCount();
+    for (int i = 0; i < frameCount; i++) {
+      OdometryFrame frame = frames.getFrame(i);
+
+      // Read wheel positions from each module into the reused buffers
+      for (int moduleIndex = 0; moduleIndex < OdometryFrame.MODULE_COUNT; moduleIndex++) {
+        distancesMeters[moduleIndex] = frame.getDrivePositionRad(moduleIndex) * Constants.Swerve.wheelDiameter / 2.0;
+        anglesRadians[moduleIndex] = frame.getTurnPositionRad(moduleIndex);
+      }
+
+      // Update gyro angle
+      if (gyroConnected) {
+        // Use the real gyro angle
+        rawGyroRadians = frame.getYawRad();
+      } else {
+        // Use the angle delta from the kinematics and module deltas.
+        // This is only needed here, so we skip computing it when the gyro is connected.
+        rawGyroRadians += estimator.getWheelHeadingDelta(distancesMeters, anglesRadians);
+      }
+
+      // Apply update
+      estimator.update(frame.getTimestamp(), rawGyroRadians, distancesMeters, anglesRadians);
+    }
+    return rawGyroRadians;
+  }
+
   Tracer timeTracer = new Tracer();
 
   @Override
@@ -421,14 +439,23 @@ public class Swerve extends SubsystemBase {
     double startTime = Logger.getRealTimestamp();
     timeTracer.clearEpochs();
 
-    odometryLock.lock(); // Prevents odometry updates while reading data
+    // Copy out the frames published by the odometry thread.
+    // This doesn't block the odometry thread, so it keeps sampling while we read from CAN below.
+    SparkMaxOdometryThread.getInstance().updateFrames(odometryFrames);
+    Logger.processInputs("Drive/Odometry", odometryFrames);
+    // Fill in any signals that failed to read so a single bad read doesn't cost us the whole frame, and
+    // line up the gyro and SPARK samples in time since they're read at slightly different points in the tick.
+    // This works on a copy, so the logged frames stay raw.
+    odometryFrames.processFrames();
+    Logger.recordOutput("Drive/Odometry/OverflowCount", SparkMaxOdometryThread.getInstance().getOverflowCount());
+    SparkMaxOdometryThread.getInstance().logTimingStatistics();
+    SparkMaxOdometryThread.getInstance().updateAdaptiveFrequency();
     gyroIO.updateInputs(gyroInputs);
     timeTracer.addEpoch("Gyro updates");
     for (SwerveModule module : swerveModules) {
       module.updateInputs();
     }
     timeTracer.addEpoch("Module input updates");
-    odometryLock.unlock();
 
     Logger.processInputs("Drive/Gyro", gyroInputs);
     for (SwerveModule module : swerveModules) {
@@ -446,40 +473,19 @@ public class Swerve extends SubsystemBase {
 
     // Log empty setpoint states when disabled
     if (DriverStation.isDisabled()) {
-      Logger.recordOutput("SwerveStates/Setpoints", new SwerveModuleState[] {});
-      Logger.recordOutput("SwerveStates/SetpointsOptimized", new SwerveModuleState[] {});
+      Logger.recordOutput("SwerveStates/Setpoints", emptyModuleStates);
+      Logger.recordOutput("SwerveStates/SetpointsOptimized", emptyModuleStates);
     }
 
     // Update odometry.
     // We use many samples per update to vastly increase the accuracy of the odometry.
 
-    double[] sampleTimestamps = swerveModules[0].getOdometryTimestamps(); // All signals are sampled together
-    int sampleCount = sampleTimestamps.length;
-    for (int i = 0; i < sampleCount; i++) {
-      // Read wheel positions and deltas from each module
-      SwerveModulePosition[] modulePositions = new SwerveModulePosition[4];
-      SwerveModulePosition[] moduleDeltas = new SwerveModulePosition[4];
-      for (int moduleIndex = 0; moduleIndex < swerveModules.length; moduleIndex++) {
-        modulePositions[moduleIndex] = swerveModules[moduleIndex].getOdometryPositions()[i];
-        moduleDeltas[moduleIndex] = new SwerveModulePosition(
-          modulePositions[moduleIndex].distanceMeters - lastModulePositions[moduleIndex].distanceMeters,
-          modulePositions[moduleIndex].angle
-        );
-        lastModulePositions[moduleIndex] = modulePositions[moduleIndex];
-      }
-
-      // Update gyro angle
-      if (gyroInputs.connected) {
-        // Use the real gyro angle
-        rawGyroRotation = gyroInputs.odometryYawPositions[i];
-      } else {
-        // Use the angle delta from the kinematics and module deltas
-        Twist2d twist = kinematics.toTwist2d(moduleDeltas);
-        rawGyroRotation = rawGyroRotation.plus(new Rotation2d(twist.dtheta));
-      }
-
-      // Apply update
-      swerveOdometry.updateWithTime(sampleTimestamps[i], rawGyroRotation, modulePositions);
+    int frameCount = odometryFrames.getFrameCount();
+    rawGyroRadians = integrateOdometryFrames(
+      odometryFrames, swerveOdometry, gyroInputs.connected, rawGyroRadians, odometryDistancesMeters, odometryAnglesRadians
+    );
+    if (frameCount > 0) {
+      rawGyroRotation = new Rotation2d(rawGyroRadians);
     }
     
     timeTracer.addEpoch("Odometry updates");
@@ -491,18 +497,31 @@ public class Swerve extends SubsystemBase {
     }
     Logger.recordOutput("Drive/ExecutionTimeMS", executionTime * 0.001);
 
-    field.setRobotPose(getPose());
-
     // Update speed, velocity, and accceleration
     
-    ChassisSpeeds chassisSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(getRobotRelativeSpeeds(), rawGyroRotation);
+    ChassisSpeeds robotRelativeSpeeds = getRobotRelativeSpeeds();
+    ChassisSpeeds chassisSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(robotRelativeSpeeds, rawGyroRotation);
     robotSpeed = Math.sqrt(
       chassisSpeeds.vxMetersPerSecond * chassisSpeeds.vxMetersPerSecond +
       chassisSpeeds.vyMetersPerSecond * chassisSpeeds.vyMetersPerSecond
     );
 
-    velocity = new FieldRelativeVelocity(chassisSpeeds, gyroInputs.yawPosition);
-    acceleration = new FieldRelativeAcceleration(velocity, lastVelocity, 0.02);
+    FieldRelativeVelocity velocity = new FieldRelativeVelocity(chassisSpeeds, gyroInputs.yawPosition);
+    FieldRelativeAcceleration acceleration = new FieldRelativeAcceleration(velocity, lastVelocity, 0.02);
     lastVelocity = velocity;
+
+    // Publish everything once so other code doesn't need to recompute it
+    RobotState.publish(new RobotState(
+      Logger.getTimestamp() / 1e6,
+      getPose(),
+      robotRelativeSpeeds,
+      chassisSpeeds,
+      velocity,
+      acceleration,
+      FieldGeometry.getInstance().getAlliance(),
+      DriverStation.getMatchTime()
+    ));
+
+    field.setRobotPose(RobotState.getCurrent().getPose());
   }
 }
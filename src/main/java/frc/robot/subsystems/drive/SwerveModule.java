@@ -15,8 +15,18 @@ import edu.wpi.first.math.kinematics.SwerveModulePosition;
 public class SwerveModule {
   /**
    * The number of times per second we read odometry data.
+   * When the adaptive odometry frequency is enabled, this is the starting and maximum frequency.
    */
   static final double ODOMETRY_FREQUENCY = 250.0;
+  /** The lowest frequency the adaptive odometry frequency can step down to. */
+  static final double MIN_ODOMETRY_FREQUENCY = 100.0;
+  /**
+   * If the odometry frequency should step down when the CAN bus is saturated or samples are failing
+   * to read, and back up once it recovers. See {@link SparkMaxOdometryThread#updateAdaptiveFrequency()}.
+   * Off by default: changing the rate reconfigures every drive SPARK and the Pigeon from the main loop,
+   * which we don't want to happen mid-match until it's been tested on the robot.
+   */
+  static final boolean ADAPTIVE_ODOMETRY_FREQUENCY = false;
 
   private final SwerveModuleIO io;
   private final SwerveModuleIOInputsAutoLogged inputs = new SwerveModuleIOInputsAutoLogged();
@@ -24,7 +34,6 @@ public class SwerveModule {
 
   private Rotation2d angleSetpoint = null; // Setpoint for closed loop control, null for open loop
   private Measure<Velocity<Distance>> speedSetpoint = null; // Setpoint for closed loop control, null for open loop
-  private SwerveModulePosition[] odometryPositions = new SwerveModulePosition[] {};
   
   public SwerveModule(int index, SwerveModuleIO io) {
     this.io = io;
@@ -37,7 +46,7 @@ public class SwerveModule {
 
   /**
    * Update inputs without running the rest of the periodic logic. This is useful since these
-   * updates need to be properly thread-locked.
+   * updates need to happen before the swerve subsystem updates odometry.
    */
   public void updateInputs() {
     io.updateInputs(inputs);
@@ -76,15 +85,6 @@ public class SwerveModule {
         io.setDriveVelocity(Math.min(Constants.Swerve.maxDriveMotorSpeed, velocityRPM));
       }
     }
-
-    // Calculate positions for odometry
-    int sampleCount = inputs.odometryTimestamps.length; // All signals are sampled together
-    odometryPositions = new SwerveModulePosition[sampleCount];
-    for (int i = 0; i < sampleCount; i++) {
-      double positionMeters = inputs.odometryDrivePositionsRad[i] * Constants.Swerve.wheelDiameter / 2.0;
-      Rotation2d angle = inputs.odometryTurnPositions[i];
-      odometryPositions[i] = new SwerveModulePosition(positionMeters, angle);
-    }
   }
 
   /** Runs the module with the specified setpoint state. Returns the optimized state. */
@@ -152,16 +152,6 @@ public class SwerveModule {
     return new SwerveModuleState(getVelocityMetersPerSec(), getAngle());
   }
 
-  /** Returns the module positions received this cycle. */
-  public SwerveModulePosition[] getOdometryPositions() {
-    return odometryPositions;
-  }
-
-  /** Returns the timestamps of the samples received this cycle. */
-  public double[] getOdometryTimestamps() {
-    return inputs.odometryTimestamps;
-  }
-
   /** Returns the drive velocity in radians/sec. */
   public double getDriveVelocity() {
     return inputs.driveVelocityRadPerSec;
@@ -18,10 +18,6 @@ public interface SwerveModuleIO {
     public double turnCurrentAmps = 0.0;
     
     public double driveAppliedVolts = 0.0;
-
-    public double[] odometryTimestamps = new double[] {};
-    public double[] odometryDrivePositionsRad = new double[] {};
-    public Rotation2d[] odometryTurnPositions = new Rotation2d[] {};
   }
 
   /** Updates the set of loggable inputs. */
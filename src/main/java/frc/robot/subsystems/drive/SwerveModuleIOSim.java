@@ -1,8 +1,5 @@
 package frc.robot.subsystems.drive;
 
-import java.util.OptionalDouble;
-import java.util.Queue;
-
 import org.littletonrobotics.junction.Logger;
 
 import edu.wpi.first.math.MathUtil;
@@ -21,14 +18,14 @@ public class SwerveModuleIOSim implements SwerveModuleIO {
   protected final FlywheelSim driveMotor;
   protected final FlywheelSim turnMotor;
 
-  private double drivePosition = 0; // Radians
-  private double turnPosition = 0; // Radians
-  private double driveVelocity = 0; // Radians per second
-  private double turnVelocity = 0; // Radians per second
-
-  private final Queue<Double> timestampQueue;
-  private final Queue<Double> drivePositionQueue;
-  private final Queue<Double> turnPositionQueue;
+  // These are integrated on the odometry thread and read on the main thread
+  private volatile double drivePosition = 0; // Radians
+  private volatile double turnPosition = 0; // Radians
+  private volatile double driveVelocity = 0; // Radians per second
+  private volatile double turnVelocity = 0; // Radians per second
+  /** The time of the last odometry sample, in seconds. Only used by the odometry thread. */
+  private double lastDriveSampleTimestamp = 0;
+  private double lastTurnSampleTimestamp = 0;
 
   private boolean usingPID = true;
   private SimpleMotorFeedforward feedforward = new SimpleMotorFeedforward(0.5, 2.35, 0.61);
@@ -40,31 +37,35 @@ public class SwerveModuleIOSim implements SwerveModuleIO {
   double driveVelocityReference = 0;
   double turnAngleReference = 0;
   
-  public SwerveModuleIOSim() {
+  /**
+   * Creates a new simulated module IO.
+   * @param moduleIndex The index of this module, used to place its samples in odometry frames.
+   */
+  public SwerveModuleIOSim(int moduleIndex) {
     driveMotor = new FlywheelSim(DCMotor.getNeoVortex(1), Constants.Swerve.driveGearRatio, 0.025);
     turnMotor = new FlywheelSim(DCMotor.getNEO(1), Constants.Swerve.angleGearRatio, 0.004096955);
 
     driveController.disableContinuousInput();
     turnController.enableContinuousInput(-Math.PI * Constants.Swerve.angleGearRatio, Math.PI * Constants.Swerve.angleGearRatio);
 
-    timestampQueue = SparkMaxOdometryThread.getInstance().makeTimestampQueue();
-
-    drivePositionQueue = SparkMaxOdometryThread.getInstance().registerSignal(
+    SparkMaxOdometryThread.getInstance().registerDrivePosition(
+      moduleIndex,
       () -> {
+        double timestamp = Logger.getRealTimestamp() / 1e6;
         driveVelocity = driveMotor.getAngularVelocityRadPerSec();
-        Double lastTimestamp = timestampQueue.peek();
-        if(lastTimestamp == null) lastTimestamp = 0.0;
-        drivePosition += driveVelocity * ((Logger.getRealTimestamp() / 1e6) - lastTimestamp) / 1000.0;
-        return OptionalDouble.of(drivePosition);
+        drivePosition += driveVelocity * (timestamp - lastDriveSampleTimestamp) / 1000.0;
+        lastDriveSampleTimestamp = timestamp;
+        return drivePosition / Constants.Swerve.driveGearRatio;
       }
     );
-    turnPositionQueue = SparkMaxOdometryThread.getInstance().registerSignal(
+    SparkMaxOdometryThread.getInstance().registerTurnPosition(
+      moduleIndex,
       () -> {
+        double timestamp = Logger.getRealTimestamp() / 1e6;
         turnVelocity = turnMotor.getAngularVelocityRadPerSec();
-        Double lastTimestamp = timestampQueue.peek();
-        if(lastTimestamp == null) lastTimestamp = 0.0;
-        turnPosition += turnVelocity * ((Logger.getRealTimestamp() / 1e6) - lastTimestamp) / 1000.0;
-        return OptionalDouble.of(turnPosition);
+        turnPosition += turnVelocity * (timestamp - lastTurnSampleTimestamp) / 1000.0;
+        lastTurnSampleTimestamp = timestamp;
+        return turnPosition / Constants.Swerve.angleGearRatio;
       }
     );
   }
@@ -83,18 +84,6 @@ public class SwerveModuleIOSim implements SwerveModuleIO {
     inputs.turnVelocityRadPerSec = turnVelocity / Constants.Swerve.angleGearRatio;
     inputs.turnCurrentAmps = turnMotor.getCurrentDrawAmps();
 
-    inputs.odometryTimestamps = timestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryDrivePositionsRad = drivePositionQueue.stream()
-      .mapToDouble((Double value) -> value / Constants.Swerve.driveGearRatio)
-      .toArray();
-    inputs.odometryTurnPositions = turnPositionQueue.stream()
-      .map((Double value) -> Rotation2d.fromRadians(value / Constants.Swerve.angleGearRatio))
-      .toArray(Rotation2d[]::new);
-    
-    timestampQueue.clear();
-    drivePositionQueue.clear();
-    turnPositionQueue.clear();
-
     // Update the simulation
     if(usingPID) {
       double driveAppliedVolts =
@@ -17,9 +17,6 @@ import frc.lib.config.CTREConfigs;
 import frc.lib.config.SwerveModuleConstants;
 import frc.robot.Constants;
 
-import java.util.OptionalDouble;
-import java.util.Queue;
-
 /**
  * Module IO implementation for SparkMax drive motor controller, SparkMax turn motor controller (NEO,
  * NEO 550, or NEO Vortex), and CANCoder absolute encoder.
@@ -28,6 +25,10 @@ import java.util.Queue;
  * motion on the drive motor will propel the robot forward) and copy the reported values from the
  * absolute encoders using AdvantageScope. These values are logged under
  * "/Drive/ModuleX/TurnAbsolutePositionRad"
+ *
+ * <p>The odometry thread reads the SPARKs at the same time as the main loop. A SPARK's last error is shared
+ * by every call on it, so each SPARK has a lock held around every call on it after setup; that way a sample
+ * and the error check right after it always belong together.
  */
 public class SwerveModuleIOSparkMax implements SwerveModuleIO {
   private static final CTREConfigs ctreConfigs = new CTREConfigs();
@@ -43,13 +44,19 @@ public class SwerveModuleIOSparkMax implements SwerveModuleIO {
 
   private final RelativeEncoder driveEncoder;
   private final RelativeEncoder turnRelativeEncoder;
-  private final Queue<Double> timestampQueue;
-  private final Queue<Double> drivePositionQueue;
-  private final Queue<Double> turnPositionQueue;
 
   private final Rotation2d absoluteEncoderOffset;
 
-  public SwerveModuleIOSparkMax(SwerveModuleConstants moduleConstants) {
+  // Guard every use of each SPARK after construction, since the odometry thread reads them too
+  private final Object driveLock = new Object();
+  private final Object turnLock = new Object();
+
+  /**
+   * Creates a new SparkMax module IO.
+   * @param moduleIndex The index of this module, used to place its samples in odometry frames.
+   * @param moduleConstants
+   */
+  public SwerveModuleIOSparkMax(int moduleIndex, SwerveModuleConstants moduleConstants) {
     driveSparkMax = new CANSparkMax(moduleConstants.driveMotorID, MotorType.kBrushless);
     turnSparkMax = new CANSparkMax(moduleConstants.angleMotorID, MotorType.kBrushless);
     cancoder = new CANcoder(moduleConstants.cancoderID);
@@ -89,25 +96,37 @@ public class SwerveModuleIOSparkMax implements SwerveModuleIO {
 
     // Odometry update logic initialization
     
-    timestampQueue = SparkMaxOdometryThread.getInstance().makeTimestampQueue();
-
-    drivePositionQueue = SparkMaxOdometryThread.getInstance().registerSignal(
+    SparkMaxOdometryThread.getInstance().registerDrivePosition(
+      moduleIndex,
       () -> {
-        double value = driveEncoder.getPosition();
-        if (driveSparkMax.getLastError() == REVLibError.kOk) {
-          return OptionalDouble.of(value);
-        } else {
-          return OptionalDouble.empty();
+        synchronized(driveLock) {
+          double value = driveEncoder.getPosition();
+          if (driveSparkMax.getLastError() == REVLibError.kOk) {
+            return Units.rotationsToRadians(value) / Constants.Swerve.driveGearRatio;
+          } else {
+            return Double.NaN;
+          }
         }
       }
     );
-    turnPositionQueue = SparkMaxOdometryThread.getInstance().registerSignal(
+    SparkMaxOdometryThread.getInstance().registerFrequencyListener(frequency -> {
+      synchronized(driveLock) {
+        driveSparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus2, (int)Math.round(1000.0 / frequency));
+      }
+      synchronized(turnLock) {
+        turnSparkMax.setPeriodicFramePeriod(PeriodicFrame.kStatus2, (int)Math.round(1000.0 / frequency));
+      }
+    });
+    SparkMaxOdometryThread.getInstance().registerTurnPosition(
+      moduleIndex,
       () -> {
-        double value = turnRelativeEncoder.getPosition();
-        if (driveSparkMax.getLastError() == REVLibError.kOk) {
-          return OptionalDouble.of(value);
-        } else {
-          return OptionalDouble.empty();
+        synchronized(turnLock) {
+          double value = turnRelativeEncoder.getPosition();
+          if (turnSparkMax.getLastError() == REVLibError.kOk) {
+            return Units.rotationsToRadians(value / Constants.Swerve.angleGearRatio);
+          } else {
+            return Double.NaN;
+          }
         }
       }
     );
@@ -116,39 +135,32 @@ public class SwerveModuleIOSparkMax implements SwerveModuleIO {
   /** Resets the relative angle encoder to the CANCoder's absolute position. */
   @Override
   public void resetToAbsolute() {
-    turnRelativeEncoder.setPosition(
-      (turnAbsolutePosition.getValueAsDouble() - absoluteEncoderOffset.getRotations()) * Constants.Swerve.angleGearRatio
-    );
+    synchronized(turnLock) {
+      turnRelativeEncoder.setPosition(
+        (turnAbsolutePosition.getValueAsDouble() - absoluteEncoderOffset.getRotations()) * Constants.Swerve.angleGearRatio
+      );
+    }
   }
 
   @Override
   public void updateInputs(SwerveModuleIOInputs inputs) {
     turnAbsolutePosition.refresh();
     
-    inputs.drivePositionRad = Units.rotationsToRadians(driveEncoder.getPosition()) / Constants.Swerve.driveGearRatio;
-    inputs.driveVelocityRadPerSec = Units.rotationsPerMinuteToRadiansPerSecond(driveEncoder.getVelocity()) / Constants.Swerve.driveGearRatio;
-    inputs.driveCurrentAmps = driveSparkMax.getOutputCurrent();
+    synchronized(driveLock) {
+      inputs.drivePositionRad = Units.rotationsToRadians(driveEncoder.getPosition()) / Constants.Swerve.driveGearRatio;
+      inputs.driveVelocityRadPerSec = Units.rotationsPerMinuteToRadiansPerSecond(driveEncoder.getVelocity()) / Constants.Swerve.driveGearRatio;
+      inputs.driveCurrentAmps = driveSparkMax.getOutputCurrent();
+      inputs.driveAppliedVolts = driveSparkMax.getAppliedOutput() * driveSparkMax.getBusVoltage();
+    }
 
     inputs.turnReportedAbsolutePosition = Rotation2d.fromRotations(turnAbsolutePosition.getValueAsDouble());
     inputs.turnAbsolutePosition = inputs.turnReportedAbsolutePosition.minus(absoluteEncoderOffset);
     
-    inputs.turnPosition = Rotation2d.fromRotations(turnRelativeEncoder.getPosition() / Constants.Swerve.angleGearRatio);
-    inputs.turnVelocityRadPerSec = Units.rotationsPerMinuteToRadiansPerSecond(turnRelativeEncoder.getVelocity()) / Constants.Swerve.angleGearRatio;
-    inputs.turnCurrentAmps = turnSparkMax.getOutputCurrent();
-
-    inputs.driveAppliedVolts = driveSparkMax.getAppliedOutput() * driveSparkMax.getBusVoltage();
-
-    inputs.odometryTimestamps = timestampQueue.stream().mapToDouble((Double value) -> value).toArray();
-    inputs.odometryDrivePositionsRad = drivePositionQueue.stream()
-      .mapToDouble((Double value) -> Units.rotationsToRadians(value) / Constants.Swerve.driveGearRatio)
-      .toArray();
-    inputs.odometryTurnPositions = turnPositionQueue.stream()
-      .map((Double value) -> Rotation2d.fromRotations(value / Constants.Swerve.angleGearRatio))
-      .toArray(Rotation2d[]::new);
-    
-    timestampQueue.clear();
-    drivePositionQueue.clear();
-    turnPositionQueue.clear();
+    synchronized(turnLock) {
+      inputs.turnPosition = Rotation2d.fromRotations(turnRelativeEncoder.getPosition() / Constants.Swerve.angleGearRatio);
+      inputs.turnVelocityRadPerSec = Units.rotationsPerMinuteToRadiansPerSecond(turnRelativeEncoder.getVelocity()) / Constants.Swerve.angleGearRatio;
+      inputs.turnCurrentAmps = turnSparkMax.getOutputCurrent();
+    }
   }
 
   double oldReferenceRPM = 0;
@@ -157,7 +169,9 @@ public class SwerveModuleIOSparkMax implements SwerveModuleIO {
     if(rpm == oldReferenceRPM) return;
     oldReferenceRPM = rpm;
 
-    drivePIDController.setReference(rpm * Constants.Swerve.driveGearRatio, ControlType.kVelocity);
+    synchronized(driveLock) {
+      drivePIDController.setReference(rpm * Constants.Swerve.driveGearRatio, ControlType.kVelocity);
+    }
   }
 
   double oldTurnAngle = 0;
@@ -166,7 +180,9 @@ public class SwerveModuleIOSparkMax implements SwerveModuleIO {
     if(angle.getRadians() == oldTurnAngle) return;
     oldTurnAngle = angle.getRadians();
 
-    turnPIDController.setReference(angle.getRotations() * Constants.Swerve.angleGearRatio, ControlType.kPosition);
+    synchronized(turnLock) {
+      turnPIDController.setReference(angle.getRotations() * Constants.Swerve.angleGearRatio, ControlType.kPosition);
+    }
   }
 
   boolean oldDriveBrakeModeEnabled = false;
@@ -175,7 +191,9 @@ public class SwerveModuleIOSparkMax implements SwerveModuleIO {
     if(enable == oldDriveBrakeModeEnabled) return;
     oldDriveBrakeModeEnabled = enable;
 
-    driveSparkMax.setIdleMode(enable ? IdleMode.kBrake : IdleMode.kCoast);
+    synchronized(driveLock) {
+      driveSparkMax.setIdleMode(enable ? IdleMode.kBrake : IdleMode.kCoast);
+    }
   }
 
   boolean oldTurnBrakeModeEnabled = false;
@@ -184,11 +202,15 @@ public class SwerveModuleIOSparkMax implements SwerveModuleIO {
     if(enable == oldTurnBrakeModeEnabled) return;
     oldTurnBrakeModeEnabled = enable;
     
-    turnSparkMax.setIdleMode(enable ? IdleMode.kBrake : IdleMode.kCoast);
+    synchronized(turnLock) {
+      turnSparkMax.setIdleMode(enable ? IdleMode.kBrake : IdleMode.kCoast);
+    }
   }
 
   @Override
   public void setCharacterizationDriveVoltage(double voltage) {
-    driveSparkMax.setVoltage(voltage);
+    synchronized(driveLock) {
+      driveSparkMax.setVoltage(voltage);
+    }
   }
 }
\ No newline at end of file
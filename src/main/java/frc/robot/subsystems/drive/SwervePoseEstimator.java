@@ -0,0 +1,243 @@
+package frc.robot.subsystems.drive;
+
+import java.util.Optional;
+
+import org.ejml.simple.SimpleMatrix;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+/**
+ * A swerve pose estimator that fuses wheel odometry with latency-compensated vision measurements.
+ *
+ * <p>WPILib's {@code SwerveDrivePoseEstimator} handles a delayed vision measurement by rewinding to the
+ * measurement time and replaying every odometry update recorded since, so each measurement costs more
+ * as the odometry rate and camera latency go up. Instead, this looks up the odometry pose at the
+ * measurement time in a {@link PoseHistory}, applies the correction there, and carries it forward to
+ * the present as a single transform. Each vision measurement is a binary search plus a few transforms,
+ * no matter how many odometry updates happened in between.
+ *
+ * <p>Odometry updates take primitive wheel positions and use a precomputed forward kinematics matrix,
+ * so they don't allocate.
+ */
+public class SwervePoseEstimator {
+  /** How long odometry history is kept for vision measurements, in seconds. */
+  private static final double historySeconds = 1.5;
+
+  private final int moduleCount;
+  /**
+   * The pseudo-inverse of the inverse kinematics matrix, in row-major order.
+   * Maps each module's [dx, dy] wheel displacement to the robot's [dx, dy, dtheta].
+   */
+  private final double[] forwardKinematics;
+  /** The squared odometry standard deviations, used to compute the gain for each vision correction: x, y, then theta. */
+  private final double[] stateStdDevsSquared = new double[3];
+
+  private final PoseHistory odometryHistory;
+
+  // Poses are stored as primitives and only converted to Pose2d when requested
+  private double odometryX, odometryY, odometryTheta;
+  private double estimateX, estimateY, estimateTheta;
+  private Pose2d cachedEstimate = null;
+
+  private final double[] lastWheelDistancesMeters;
+  private double lastGyroRadians;
+  /** The difference between the gyro angle and the odometry heading. */
+  private double gyroOffsetRadians;
+
+  /**
+   * Creates a new pose estimator.
+   * @param moduleLocations The location of each module relative to the robot center.
+   * @param stateStdDevs The standard deviations of the odometry estimate, in the form [x, y, theta]ᵀ.
+   * @param gyroRadians The starting gyro angle.
+   * @param wheelDistancesMeters The starting drive position of each module.
+   * @param initialPose The starting pose.
+   */
+  public SwervePoseEstimator(
+    Translation2d[] moduleLocations,
+    Matrix<N3, N1> stateStdDevs,
+    double gyroRadians,
+    double[] wheelDistancesMeters,
+    Pose2d initialPose
+  ) {
+    moduleCount = moduleLocations.length;
+    lastWheelDistancesMeters = new double[moduleCount];
+
+    // Matches the kinematics matrix used by SwerveDriveKinematics
+    SimpleMatrix inverseKinematics = new SimpleMatrix(moduleCount * 2, 3);
+    for (int i = 0; i < moduleCount; i++) {
+      inverseKinematics.setRow(i * 2, 0, 1, 0, -moduleLocations[i].getY());
+      inverseKinematics.setRow(i * 2 + 1, 0, 0, 1, moduleLocations[i].getX());
+    }
+    SimpleMatrix forward = inverseKinematics.pseudoInverse();
+    forwardKinematics = new double[3 * moduleCount * 2];
+    for (int row = 0; row < 3; row++) {
+      for (int column = 0; column < moduleCount * 2; column++) {
+        forwardKinematics[row * moduleCount * 2 + column] = forward.get(row, column);
+      }
+    }
+
+    for (int i = 0; i < 3; i++) {
+      stateStdDevsSquared[i] = stateStdDevs.get(i, 0) * stateStdDevs.get(i, 0);
+    }
+
+    odometryHistory = new PoseHistory(historySeconds, SwerveModule.ODOMETRY_FREQUENCY);
+    resetPosition(gyroRadians, wheelDistancesMeters, initialPose);
+  }
+
+  /**
+   * Resets the odometry and the estimate to the given pose and clears the odometry history.
+   * @param gyroRadians The current gyro angle.
+   * @param wheelDistancesMeters The current drive position of each module.
+   * @param pose
+   */
+  public void resetPosition(double gyroRadians, double[] wheelDistancesMeters, Pose2d pose) {
+    System.arraycopy(wheelDistancesMeters, 0, lastWheelDistancesMeters, 0, moduleCount);
+    lastGyroRadians = gyroRadians;
+    gyroOffsetRadians = pose.getRotation().getRadians() - gyroRadians;
+
+    odometryX = estimateX = pose.getX();
+    odometryY = estimateY = pose.getY();
+    odometryTheta = estimateTheta = pose.getRotation().getRadians();
+    cachedEstimate = pose;
+    odometryHistory.clear();
+  }
+
+  /**
+   * Gets the change in heading from the last update measured by the wheels alone.
+   * Used to integrate heading when the gyro is disconnected.
+   * @param wheelDistancesMeters The current drive position of each module.
+   * @param wheelAnglesRadians The current turn angle of each module.
+   * @return The heading change in radians.
+   */
+  public double getWheelHeadingDelta(double[] wheelDistancesMeters, double[] wheelAnglesRadians) {
+    int thetaRow = 2 * moduleCount * 2;
+    double dtheta = 0;
+    for (int i = 0; i < moduleCount; i++) {
+      double delta = wheelDistancesMeters[i] - lastWheelDistancesMeters[i];
+      dtheta += forwardKinematics[thetaRow + i * 2] * delta * Math.cos(wheelAnglesRadians[i]);
+      dtheta += forwardKinematics[thetaRow + i * 2 + 1] * delta * Math.sin(wheelAnglesRadians[i]);
+    }
+    return dtheta;
+  }
+
+  /**
+   * Updates the odometry and the estimate with new wheel positions. This doesn't allocate.
+   * @param timestampSeconds The time the positions were sampled.
+   * @param gyroRadians The gyro angle, counterclockwise positive.
+   * @param wheelDistancesMeters The drive position of each module.
+   * @param wheelAnglesRadians The turn angle of each module.
+   */
+  public void update(double timestampSeconds, double gyroRadians, double[] wheelDistancesMeters, double[] wheelAnglesRadians) {
+    // Robot-relative twist from the wheel deltas
+    double dx = 0, dy = 0;
+    int rowLength = moduleCount * 2;
+    for (int i = 0; i < moduleCount; i++) {
+      double delta = wheelDistancesMeters[i] - lastWheelDistancesMeters[i];
+      double moduleDx = delta * Math.cos(wheelAnglesRadians[i]);
+      double moduleDy = delta * Math.sin(wheelAnglesRadians[i]);
+      dx += forwardKinematics[i * 2] * moduleDx + forwardKinematics[i * 2 + 1] * moduleDy;
+      dy += forwardKinematics[rowLength + i * 2] * moduleDx + forwardKinematics[rowLength + i * 2 + 1] * moduleDy;
+      lastWheelDistancesMeters[i] = wheelDistancesMeters[i];
+    }
+    // We trust the gyro over the wheels for heading
+    double dtheta = MathUtil.angleModulus(gyroRadians - lastGyroRadians);
+    lastGyroRadians = gyroRadians;
+
+    // Pose exponential, matching Pose2d.exp
+    double sinTheta = Math.sin(dtheta);
+    double cosTheta = Math.cos(dtheta);
+    double s, c;
+    if (Math.abs(dtheta) < 1e-9) {
+      s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+      c = 0.5 * dtheta;
+    } else {
+      s = sinTheta / dtheta;
+      c = (1 - cosTheta) / dtheta;
+    }
+    double localX = dx * s - dy * c;
+    double localY = dx * c + dy * s;
+
+    double odometryCos = Math.cos(odometryTheta), odometrySin = Math.sin(odometryTheta);
+    odometryX += localX * odometryCos - localY * odometrySin;
+    odometryY += localX * odometrySin + localY * odometryCos;
+    odometryTheta = MathUtil.angleModulus(gyroRadians + gyroOffsetRadians);
+
+    double estimateCos = Math.cos(estimateTheta), estimateSin = Math.sin(estimateTheta);
+    estimateX += localX * estimateCos - localY * estimateSin;
+    estimateY += localX * estimateSin + localY * estimateCos;
+    estimateTheta = MathUtil.angleModulus(estimateTheta + dtheta);
+    cachedEstimate = null;
+
+    odometryHistory.addSample(timestampSeconds, odometryX, odometryY, odometryTheta);
+  }
+
+  /**
+   * Adds a vision measurement. The correction is applied at the measurement time and carried
+   * forward to the current estimate, so its cost doesn't depend on the number of odometry updates since.
+   * @param visionPose The pose measured by vision.
+   * @param timestampSeconds The time the measurement was captured.
+   * @param visionStdDevs The standard deviations of the measurement, in the form [x, y, theta]ᵀ.
+   */
+  public void addVisionMeasurement(Pose2d visionPose, double timestampSeconds, Matrix<N3, N1> visionStdDevs) {
+    // Ignore measurements older than our history
+    Optional<Pose2d> odometryAtSample = odometryHistory.getPoseAt(timestampSeconds);
+    if (odometryAtSample.isEmpty()) return;
+
+    // How far we've moved, according to odometry, since the measurement
+    Pose2d odometryPose = new Pose2d(odometryX, odometryY, new Rotation2d(odometryTheta));
+    Transform2d sampleToOdometry = new Transform2d(odometryAtSample.get(), odometryPose);
+
+    // Where we thought we were when the measurement was captured
+    Pose2d estimateAtSample = getEstimatedPosition().transformBy(sampleToOdometry.inverse());
+
+    // Scale the correction by the Kalman gain for each axis
+    Transform2d correction = new Transform2d(estimateAtSample, visionPose);
+    double[] gains = new double[3];
+    for (int i = 0; i < 3; i++) {
+      double q = stateStdDevsSquared[i];
+      double r = visionStdDevs.get(i, 0) * visionStdDevs.get(i, 0);
+      gains[i] = q == 0 ? 0 : q / (q + Math.sqrt(q * r));
+    }
+    Transform2d scaledCorrection = new Transform2d(
+      correction.getX() * gains[0],
+      correction.getY() * gains[1],
+      Rotation2d.fromRadians(correction.getRotation().getRadians() * gains[2])
+    );
+
+    // Apply the correction at the measurement time and carry it forward to now
+    Pose2d estimate = estimateAtSample.plus(scaledCorrection).transformBy(sampleToOdometry);
+    estimateX = estimate.getX();
+    estimateY = estimate.getY();
+    estimateTheta = estimate.getRotation().getRadians();
+    cachedEstimate = estimate;
+  }
+
+  /** Gets the current pose estimate. */
+  public Pose2d getEstimatedPosition() {
+    if (cachedEstimate == null) {
+      cachedEstimate = new Pose2d(estimateX, estimateY, new Rotation2d(estimateTheta));
+    }
+    return cachedEstimate;
+  }
+
+  /**
+   * Gets the estimated pose at a past time by undoing the odometry motion since then.
+   * @param timestampSeconds
+   * @return The pose, or an empty optional if the time is older than the odometry history.
+   */
+  public Optional<Pose2d> getEstimatedPositionAt(double timestampSeconds) {
+    Optional<Pose2d> odometryAtSample = odometryHistory.getPoseAt(timestampSeconds);
+    if (odometryAtSample.isEmpty()) return Optional.empty();
+
+    Pose2d odometryPose = new Pose2d(odometryX, odometryY, new Rotation2d(odometryTheta));
+    Transform2d odometryToSample = new Transform2d(odometryPose, odometryAtSample.get());
+    return Optional.of(getEstimatedPosition().transformBy(odometryToSample));
+  }
+}
@@ -0,0 +1,124 @@
+package frc.robot.subsystems.launcher;
+
+import edu.wpi.first.math.util.Units;
+import frc.robot.Constants;
+
+/**
+ * Converts between the launcher angle and the rotation of the conch, the spiral cam that sets it.
+ *
+ * <p>The conch pushes the launcher's reaction bar out to a radius that grows linearly with its rotation,
+ * and the launcher angle follows from that radius by the law of cosines. Rather than solving that with a
+ * square root and a cosine every time we set the angle, both directions are precomputed into dense,
+ * evenly spaced tables once at startup, so a lookup is an index calculation and a linear interpolation.
+ * The tables are checked against the exact solution when they're built.
+ */
+public final class ConchKinematics {
+  private ConchKinematics() {}
+
+  // All length units here are in inches
+  private static final double conchToPivotDistance = 5.153673;
+  private static final double pivotToConchReactionBarDistance = 4.507;
+  private static final double angleOffsetRadians = Units.degreesToRadians(23.53);
+  private static final double lowRadius = 0.1875; // in, from CAD
+  private static final double radiusIncrease = 3.4375; // in, from CAD: (4 -0.375/2-0.5/2)-(1/8)
+
+  /** The conch rotations we're allowed to reach, inside the soft stops. */
+  private static final double minConchRotations = Constants.Launcher.softStopMarginLow.getRotations();
+  private static final double maxConchRotations = 1 - Constants.Launcher.softStopMarginHigh.getRotations();
+
+  private static final double minLauncherAngleRadians = 0;
+  private static final double maxLauncherAngleRadians = Math.PI / 2;
+  private static final int tableSize = 4096;
+
+  /** Conch rotations for evenly spaced launcher angles from {@link #minLauncherAngleRadians} to {@link #maxLauncherAngleRadians}. */
+  private static final double[] conchRotationsByAngle = new double[tableSize];
+  private static final double angleStep = (maxLauncherAngleRadians - minLauncherAngleRadians) / (tableSize - 1);
+  /** Launcher angles for evenly spaced conch rotations from {@link #minConchRotations} to {@link #maxConchRotations}. */
+  private static final double[] anglesByConchRotations = new double[tableSize];
+  private static final double conchStep = (maxConchRotations - minConchRotations) / (tableSize - 1);
+
+  /** The largest difference between the tables and the exact solution, in degrees. */
+  private static final double maxErrorDegrees;
+
+  static {
+    for(int i = 0; i < tableSize; i++) {
+      conchRotationsByAngle[i] = calculateConchRotations(minLauncherAngleRadians + i * angleStep);
+      anglesByConchRotations[i] = calculateLauncherAngle(minConchRotations + i * conchStep);
+    }
+
+    // Check the tables halfway between their points, where interpolation is worst
+    double maxError = 0;
+    for(int i = 0; i < tableSize - 1; i++) {
+      double angle = minLauncherAngleRadians + (i + 0.5) * angleStep;
+      double rotationError = Math.abs(getConchRotations(angle) - calculateConchRotations(angle));
+      maxError = Math.max(maxError, Units.rotationsToDegrees(rotationError));
+
+      double rotations = minConchRotations + (i + 0.5) * conchStep;
+      double angleError = Math.abs(getLauncherAngle(rotations) - calculateLauncherAngle(rotations));
+      maxError = Math.max(maxError, Units.radiansToDegrees(angleError));
+    }
+    maxErrorDegrees = maxError;
+  }
+
+  /**
+   * Solves for the conch rotation that gives a launcher angle, clamped to the soft stops.
+   * @param launcherAngleRadians
+   * @return The conch rotation, in rotations.
+   */
+  static double calculateConchRotations(double launcherAngleRadians) {
+    // Law of cosines
+    double requiredRadius = Math.sqrt(
+      conchToPivotDistance * conchToPivotDistance + pivotToConchReactionBarDistance * pivotToConchReactionBarDistance
+      - 2 * conchToPivotDistance * pivotToConchReactionBarDistance * Math.cos(Math.max(launcherAngleRadians - angleOffsetRadians, 0.0))
+    );
+
+    double conchRotations = (requiredRadius - lowRadius) / radiusIncrease;
+    // Angles outside this range are more than we can achieve
+    return Math.max(minConchRotations, Math.min(conchRotations, maxConchRotations));
+  }
+
+  /**
+   * Solves for the launcher angle at a conch rotation.
+   * @param conchRotations
+   * @return The launcher angle, in radians.
+   */
+  static double calculateLauncherAngle(double conchRotations) {
+    double radius = conchRotations * radiusIncrease + lowRadius;
+    double cosine = (
+      conchToPivotDistance * conchToPivotDistance + pivotToConchReactionBarDistance * pivotToConchReactionBarDistance - radius * radius
+    ) / (2 * conchToPivotDistance * pivotToConchReactionBarDistance);
+    // Below the offset, the reaction bar isn't touching the conch, so the launcher sits at the offset
+    return Math.acos(Math.max(-1, Math.min(cosine, 1))) + angleOffsetRadians;
+  }
+
+  /**
+   * Gets the conch rotation for a launcher angle, clamped to the soft stops.
+   * @param launcherAngleRadians
+   * @return The conch rotation, in rotations.
+   */
+  public static double getConchRotations(double launcherAngleRadians) {
+    return interpolate(conchRotationsByAngle, (launcherAngleRadians - minLauncherAngleRadians) / angleStep);
+  }
+
+  /**
+   * Gets the launcher angle at a conch rotation. Rotations outside the soft stops return the angle at the nearest stop.
+   * @param conchRotations
+   * @return The launcher angle, in radians.
+   */
+  public static double getLauncherAngle(double conchRotations) {
+    return interpolate(anglesByConchRotations, (conchRotations - minConchRotations) / conchStep);
+  }
+
+  private static double interpolate(double[] table, double position) {
+    if(!(position > 0)) return table[0]; // Also catches NaN
+    if(position >= table.length - 1) return table[table.length - 1];
+    int lower = (int)position;
+    double fraction = position - lower;
+    return table[lower] + (table[lower + 1] - table[lower]) * fraction;
+  }
+
+  /** Gets the largest difference between the lookup tables and the exact solution, in degrees. */
+  public static double getMaxErrorDegrees() {
+    return maxErrorDegrees;
+  }
+}
@@ -0,0 +1,105 @@
+package frc.robot.subsystems.launcher;
+
+/**
+ * Predicts how long a launch roller will take to get within tolerance of its target speed.
+ *
+ * <p>The roller is modeled as a first-order system whose acceleration is capped by the current limit:
+ * far from the target it accelerates at a constant rate, and close to it the error decays exponentially
+ * with a time constant. The starting constants are estimates; both are refined online from the measured
+ * response whenever the target holds still, so the prediction tracks the real rollers (and the auto vs.
+ * teleop current limits) without a separate characterization run.
+ */
+public class FlywheelReadyPredictor {
+  /** How fast the estimates follow new observations, from 0 to 1. */
+  private static final double adaptationRate = 0.05;
+  private static final double minTimeConstantSeconds = 0.05;
+  private static final double maxTimeConstantSeconds = 1.0;
+  private static final double minAccelerationRPMPerSecond = 1000;
+  private static final double maxAccelerationRPMPerSecond = 40000;
+
+  private final double toleranceRPM;
+  private double timeConstantSeconds;
+  private double accelerationRPMPerSecond;
+
+  private boolean hasLastSample = false;
+  private double lastSpeedRPM;
+  private double lastTargetRPM;
+  private double timeToReadySeconds = 0;
+
+  /**
+   * @param toleranceRPM How close to the target counts as ready.
+   * @param timeConstantSeconds The starting estimate of the time constant near the target.
+   * @param accelerationRPMPerSecond The starting estimate of the current-limited acceleration.
+   */
+  public FlywheelReadyPredictor(double toleranceRPM, double timeConstantSeconds, double accelerationRPMPerSecond) {
+    this.toleranceRPM = toleranceRPM;
+    this.timeConstantSeconds = timeConstantSeconds;
+    this.accelerationRPMPerSecond = accelerationRPMPerSecond;
+  }
+
+  /**
+   * Updates the model with a new measurement. Should be called once per loop.
+   * @param speedRPM The measured roller speed.
+   * @param targetRPM The roller's target speed.
+   * @param dtSeconds The time since the last update.
+   */
+  public void update(double speedRPM, double targetRPM, double dtSeconds) {
+    if(hasLastSample && targetRPM == lastTargetRPM && dtSeconds > 0) {
+      adapt(speedRPM, targetRPM, (speedRPM - lastSpeedRPM) / dtSeconds);
+    }
+    hasLastSample = true;
+    lastSpeedRPM = speedRPM;
+    lastTargetRPM = targetRPM;
+
+    timeToReadySeconds = predictTimeToReady(Math.abs(targetRPM - speedRPM));
+  }
+
+  /** Refines the estimates from the observed acceleration, if the roller is clearly moving toward the target. */
+  private void adapt(double speedRPM, double targetRPM, double observedAcceleration) {
+    double error = targetRPM - speedRPM;
+    // Noise dominates when we're close to the target or barely accelerating
+    if(Math.abs(error) < toleranceRPM * 2 || error * observedAcceleration <= 0) return;
+    if(Math.abs(observedAcceleration) < minAccelerationRPMPerSecond / 4) return;
+
+    double saturationErrorRPM = accelerationRPMPerSecond * timeConstantSeconds;
+    if(Math.abs(error) > saturationErrorRPM * 2) {
+      // Clearly current limited
+      accelerationRPMPerSecond += adaptationRate * (Math.abs(observedAcceleration) - accelerationRPMPerSecond);
+      accelerationRPMPerSecond = clamp(accelerationRPMPerSecond, minAccelerationRPMPerSecond, maxAccelerationRPMPerSecond);
+    } else if(Math.abs(error) < saturationErrorRPM) {
+      // In the exponential region, where acceleration = error / time constant
+      timeConstantSeconds += adaptationRate * (error / observedAcceleration - timeConstantSeconds);
+      timeConstantSeconds = clamp(timeConstantSeconds, minTimeConstantSeconds, maxTimeConstantSeconds);
+    }
+  }
+
+  private double predictTimeToReady(double errorRPM) {
+    if(errorRPM <= toleranceRPM) return 0;
+
+    double time = 0;
+    // Below this error, the commanded acceleration is less than the current limit
+    double saturationErrorRPM = Math.max(accelerationRPMPerSecond * timeConstantSeconds, toleranceRPM);
+    if(errorRPM > saturationErrorRPM) {
+      time += (errorRPM - saturationErrorRPM) / accelerationRPMPerSecond;
+      errorRPM = saturationErrorRPM;
+    }
+    return time + timeConstantSeconds * Math.log(errorRPM / toleranceRPM);
+  }
+
+  private static double clamp(double value, double min, double max) {
+    return Math.max(min, Math.min(value, max));
+  }
+
+  /** Gets the predicted time until the roller is within tolerance, as of the last update, in seconds. */
+  public double getTimeToReadySeconds() {
+    return timeToReadySeconds;
+  }
+
+  public double getTimeConstantSeconds() {
+    return timeConstantSeconds;
+  }
+
+  public double getAccelerationRPMPerSecond() {
+    return accelerationRPMPerSecond;
+  }
+}
@@ -4,11 +4,14 @@ import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.subsystems.launcher.LauncherIO.RollerControlMode;
 import frc.robot.visualization.LauncherVisualizer;
 
 // List class features here, including any motors, sensors, and functionality:
@@ -23,6 +26,9 @@ public class Launcher extends SubsystemBase {
         case REAL:
           instance = new Launcher(new LauncherIOReal());   
           return instance;
+        case SIM:
+          instance = new Launcher(new LauncherIOSim());
+          return instance;
         default:
           instance = new Launcher(new LauncherIO() {});   
           return instance;
@@ -33,9 +39,42 @@ public class Launcher extends SubsystemBase {
 
   private LauncherIO launcherIO;
   private LauncherIOInputsAutoLogged inputs = new LauncherIOInputsAutoLogged();
+
+  private FlywheelReadyPredictor topRollerPredictor = new FlywheelReadyPredictor(
+    Constants.Launcher.rollerVelocityTolerance,
+    Constants.Launcher.rollerTimeConstantSeconds,
+    Constants.Launcher.rollerAccelerationRPMPerSecond
+  );
+  private FlywheelReadyPredictor bottomRollerPredictor = new FlywheelReadyPredictor(
+    Constants.Launcher.rollerVelocityTolerance,
+    Constants.Launcher.rollerTimeConstantSeconds,
+    Constants.Launcher.rollerAccelerationRPMPerSecond
+  );
+  private double lastPeriodicTimestamp = 0;
+
+  private final TrapezoidProfile pivotProfile = new TrapezoidProfile(
+    new TrapezoidProfile.Constraints(Constants.Launcher.pivotMaxVelocity, Constants.Launcher.pivotMaxAcceleration)
+  );
+  /** The current pivot profile setpoint in conch rotations, or null if it should restart from the measured position. */
+  private TrapezoidProfile.State pivotSetpoint = null;
+  private final TrapezoidProfile.State pivotGoal = new TrapezoidProfile.State();
+  /** If we've been given an angle yet; until then, we don't command the conch. */
+  private boolean hasPivotGoal = false;
+  // Settle time tracking for aim changes
+  private boolean pivotSettling = false;
+  private double pivotSettleStartTimestamp = 0;
+
+  /** How long we wait for the rollers to recover from a shot before giving up, in seconds. */
+  private static final double maxRecoveryTimeSeconds = 2.0;
+  // Recovery tracking for the last launched note
+  private boolean measuringRecovery = false;
+  private boolean rollersDipped = false;
+  private double launchTimestamp = 0;
+  private double minimumSpeedRatio = 1;
   
   private Launcher(LauncherIO launcherIO) {
     this.launcherIO = launcherIO;
+    Logger.recordOutput("Launcher/ConchTableMaxError", ConchKinematics.getMaxErrorDegrees());
     
     setLauncherSpeed(Constants.Launcher.idleRollerVelocity, false);
   }
@@ -84,31 +123,11 @@ public class Launcher extends SubsystemBase {
     if(Constants.enableNonEssentialShuffleboard) {
       SmartDashboard.putNumber("LauncherAngle", launcherAngle.getDegrees());
     }
-    
-    // All length units here are in inches
-    double conchToPivotDistance = 5.153673;
-    double pivotToConchReactionBarDistance = 4.507;
-    double angleOffsetRadians = Units.degreesToRadians(23.53);
-    // Law of cosines
-    double requiredRadius = Math.sqrt(
-      conchToPivotDistance * conchToPivotDistance + pivotToConchReactionBarDistance * pivotToConchReactionBarDistance
-      - 2 * conchToPivotDistance * pivotToConchReactionBarDistance * Math.cos(Math.max(angle.getRadians() - angleOffsetRadians, 0.0))
-    );
-    
-    double lowRadius = 0.1875; // in, from CAD
-    double radiusIncrease = 3.4375; // in, from CAD: (4 -0.375/2-0.5/2)-(1/8)
 
-    double conchAngleRadians = (requiredRadius - lowRadius) / radiusIncrease * (Math.PI * 2);
-    if(conchAngleRadians < Constants.Launcher.softStopMarginLow.getRadians()) {
-      // The angle is lower than we can achieve
-      conchAngleRadians = Constants.Launcher.softStopMarginLow.getRadians();
-    }
-    if(conchAngleRadians > Math.PI * 2 - Constants.Launcher.softStopMarginHigh.getRadians()) {
-      // The angle is higher than we can achieve
-      conchAngleRadians = Math.PI * 2 - Constants.Launcher.softStopMarginHigh.getRadians();
-    }
-
-    launcherIO.setAngleReference(Rotation2d.fromRadians(conchAngleRadians).getRotations());
+    pivotGoal.position = ConchKinematics.getConchRotations(angle.getRadians());
+    hasPivotGoal = true;
+    // When profiled, the conch follows the goal in periodic
+    if(!Constants.Launcher.useProfiledPivot) launcherIO.setAngleReference(pivotGoal.position);
   }
 
   /**
@@ -116,6 +135,63 @@ public class Launcher extends SubsystemBase {
    */
   public void resetToAbsolute() {
     launcherIO.resetToAbsolute();
+    pivotSetpoint = null;
+  }
+
+  /**
+   * Advances the pivot profile toward the goal and sends the new setpoint. The profile is re-planned from
+   * the last setpoint every loop, so it follows a moving goal smoothly.
+   */
+  private void updatePivotProfile() {
+    if(!hasPivotGoal) return;
+    if(pivotSetpoint == null) {
+      pivotSetpoint = new TrapezoidProfile.State(getMeasuredConchRotations(), 0);
+    }
+    pivotSetpoint = pivotProfile.calculate(0.02, pivotSetpoint, pivotGoal);
+
+    double launcherAngleRadians = ConchKinematics.getLauncherAngle(pivotSetpoint.position);
+    double feedforwardVolts =
+      Constants.Launcher.pivotKS * Math.signum(pivotSetpoint.velocity) +
+      Constants.Launcher.pivotKV * pivotSetpoint.velocity +
+      Constants.Launcher.pivotKG * Math.cos(launcherAngleRadians);
+    launcherIO.setAngleReference(pivotSetpoint.position, feedforwardVolts);
+
+    Logger.recordOutput("Launcher/Pivot/SetpointPosition", pivotSetpoint.position);
+    Logger.recordOutput("Launcher/Pivot/SetpointVelocity", pivotSetpoint.velocity);
+    Logger.recordOutput("Launcher/Pivot/GoalPosition", pivotGoal.position);
+    Logger.recordOutput("Launcher/Pivot/FeedforwardVolts", feedforwardVolts);
+  }
+
+  /**
+   * Measures how long the pivot takes to settle at the target angle after it changes.
+   * @param timestamp
+   */
+  private void updatePivotSettling(double timestamp) {
+    if(!hasPivotGoal) return;
+
+    boolean settled = isPivotSettled();
+
+    if(!pivotSettling && !settled) {
+      pivotSettling = true;
+      pivotSettleStartTimestamp = timestamp;
+    } else if(pivotSettling && settled) {
+      pivotSettling = false;
+      Logger.recordOutput("Launcher/Pivot/SettleTimeSeconds", timestamp - pivotSettleStartTimestamp);
+    }
+    Logger.recordOutput("Launcher/Pivot/Settled", settled);
+  }
+
+  /**
+   * Checks if the pivot has stopped at its goal. The goal is updated as soon as a new angle is set, so unlike
+   * the angle velocity alone, this isn't fooled by the pivot not having started moving yet.
+   */
+  private boolean isPivotSettled() {
+    if(Math.abs(getAngleVelocityRPM()) >= 60.0) return false;
+    if(!hasPivotGoal) return true;
+
+    // Angles outside the soft stops can't be reached, so compare against the closest angle we can reach
+    double targetDegrees = Units.radiansToDegrees(ConchKinematics.getLauncherAngle(pivotGoal.position));
+    return Math.abs(getMeasuredAngle().getDegrees() - targetDegrees) < Constants.Launcher.pivotSettleToleranceDegrees;
   }
 
   /**
@@ -142,13 +218,43 @@ public class Launcher extends SubsystemBase {
   public double getBottomSpeedRPM() {
     return inputs.bottomRollerSpeedRPM;
   }
+  /** Gets the launcher angle measured from the conch position. */
+  @AutoLogOutput(key = "Launcher/MeasuredAngle")
+  public Rotation2d getMeasuredAngle() {
+    return Rotation2d.fromRadians(ConchKinematics.getLauncherAngle(getMeasuredConchRotations()));
+  }
+
+  /**
+   * Gets the measured conch position, in rotations. This isn't wrapped, so it's on the same scale as the
+   * position reference; wrapping would turn a reading just below 0 into one near 1.
+   */
+  private double getMeasuredConchRotations() {
+    return inputs.launcherRelativeConchAngle.getRotations();
+  }
 
   public boolean atSetpoints() {
     // The mechanism only allows a maximum of 4650 RPM.
     return
-      getAngleVelocityRPM() < 60.0 &&
-      Math.abs(getTopSpeedRPM() - Math.min(topRollerSpeed, 4650)) < 100.0 &&
-      Math.abs(getBottomSpeedRPM() - Math.min(bottomRollerSpeed, 4650)) < 100.0;
+      Math.abs(getAngleVelocityRPM()) < 60.0 &&
+      Math.abs(getTopSpeedRPM() - Math.min(topRollerSpeed, Constants.Launcher.maxRollerVelocity)) < Constants.Launcher.rollerVelocityTolerance &&
+      Math.abs(getBottomSpeedRPM() - Math.min(bottomRollerSpeed, Constants.Launcher.maxRollerVelocity)) < Constants.Launcher.rollerVelocityTolerance;
+  }
+
+  /**
+   * Gets the predicted time until both rollers are within tolerance of their targets.
+   * @return The time in seconds, or 0 if they're already there.
+   */
+  @AutoLogOutput(key = "Launcher/TimeToReady")
+  public double getTimeToReadySeconds() {
+    return Math.max(topRollerPredictor.getTimeToReadySeconds(), bottomRollerPredictor.getTimeToReadySeconds());
+  }
+
+  /**
+   * Checks if the launcher will be at its setpoints within a time, so a note fed now arrives as the rollers get to speed.
+   * @param seconds
+   */
+  public boolean willBeReadyWithin(double seconds) {
+    return isPivotSettled() && getTimeToReadySeconds() <= seconds;
   }
 
   public void useAutoCurrentLimits() {
@@ -158,6 +264,62 @@ public class Launcher extends SubsystemBase {
     launcherIO.setRollerCurrentLimit(Constants.Launcher.rollerCurrentLimitForTeleop);
   }
 
+  public void useAutoRollerControl() {
+    setRollerControlMode(Constants.Launcher.autoRollerControlMode);
+  }
+  public void useTeleopRollerControl() {
+    setRollerControlMode(Constants.Launcher.teleopRollerControlMode);
+  }
+
+  private void setRollerControlMode(RollerControlMode mode) {
+    launcherIO.setRollerControlMode(mode);
+    Logger.recordOutput("Launcher/RollerControlMode", mode.toString());
+  }
+
+  /**
+   * Starts measuring how long the rollers take to recover from a shot. Should be called when a note is fed into the launcher.
+   */
+  public void notifyNoteLaunched() {
+    launcherIO.notifyNoteLaunched();
+    measuringRecovery = true;
+    rollersDipped = false;
+    launchTimestamp = Timer.getFPGATimestamp();
+    minimumSpeedRatio = 1;
+  }
+
+  /**
+   * Updates the recovery measurement. The recovery time is from the launch until the rollers are back in
+   * tolerance after the note pulled them out of it.
+   * @param timestamp
+   */
+  private void updateRecovery(double timestamp) {
+    if(!measuringRecovery) return;
+
+    double topTarget = Math.min(topRollerSpeed, Constants.Launcher.maxRollerVelocity);
+    double bottomTarget = Math.min(bottomRollerSpeed, Constants.Launcher.maxRollerVelocity);
+    boolean inTolerance =
+      Math.abs(getTopSpeedRPM() - topTarget) < Constants.Launcher.rollerVelocityTolerance &&
+      Math.abs(getBottomSpeedRPM() - bottomTarget) < Constants.Launcher.rollerVelocityTolerance;
+    if(topTarget > 0 && bottomTarget > 0) {
+      minimumSpeedRatio = Math.min(minimumSpeedRatio, Math.min(getTopSpeedRPM() / topTarget, getBottomSpeedRPM() / bottomTarget));
+    }
+
+    double elapsed = timestamp - launchTimestamp;
+    if(!inTolerance) rollersDipped = true;
+    boolean recovered = rollersDipped && inTolerance;
+    if(!recovered && elapsed < maxRecoveryTimeSeconds) return;
+    if(!rollersDipped) {
+      // The note never pulled the rollers out of tolerance
+      recovered = true;
+      elapsed = 0;
+    }
+
+    measuringRecovery = false;
+    Logger.recordOutput("Launcher/Recovery/Recovered", recovered);
+    Logger.recordOutput("Launcher/Recovery/TimeSeconds", elapsed);
+    Logger.recordOutput("Launcher/Recovery/MinimumSpeedRatio", minimumSpeedRatio);
+  }
+
   @Override
   public void periodic() {
     launcherIO.updateInputs(inputs);
@@ -169,6 +331,19 @@ public class Launcher extends SubsystemBase {
     Logger.processInputs("Launcher/Inputs", inputs);
 
     launcherIO.runRollers(topRollerSpeed, bottomRollerSpeed);
+    if(Constants.Launcher.useProfiledPivot) updatePivotProfile();
+
+    double timestamp = Timer.getFPGATimestamp();
+    updateRecovery(timestamp);
+    updatePivotSettling(timestamp);
+    double dt = lastPeriodicTimestamp == 0 ? 0 : timestamp - lastPeriodicTimestamp;
+    lastPeriodicTimestamp = timestamp;
+    topRollerPredictor.update(getTopSpeedRPM(), Math.min(topRollerSpeed, Constants.Launcher.maxRollerVelocity), dt);
+    bottomRollerPredictor.update(getBottomSpeedRPM(), Math.min(bottomRollerSpeed, Constants.Launcher.maxRollerVelocity), dt);
+    Logger.recordOutput("Launcher/RollerModel/TopTimeConstant", topRollerPredictor.getTimeConstantSeconds());
+    Logger.recordOutput("Launcher/RollerModel/TopAcceleration", topRollerPredictor.getAccelerationRPMPerSecond());
+    Logger.recordOutput("Launcher/RollerModel/BottomTimeConstant", bottomRollerPredictor.getTimeConstantSeconds());
+    Logger.recordOutput("Launcher/RollerModel/BottomAcceleration", bottomRollerPredictor.getAccelerationRPMPerSecond());
 
     LauncherVisualizer.getInstance().update();
 
@@ -5,6 +5,16 @@ import org.littletonrobotics.junction.AutoLog;
 import edu.wpi.first.math.geometry.Rotation2d;
 
 public interface LauncherIO {
+  /** How the launch roller speeds are controlled. */
+  public enum RollerControlMode {
+    /** The SPARK's onboard velocity PID from {@code Constants.Launcher.rollerConfig}. */
+    OnboardPID,
+    /** Full output below the target, feedforward above it, run from the roboRIO. */
+    BangBang,
+    /** Take-back-half integral control, run from the roboRIO. */
+    TakeBackHalf
+  }
+
   @AutoLog
   public static class LauncherIOInputs {
     public Rotation2d absoluteLauncherAngle = new Rotation2d();
@@ -12,17 +22,30 @@ public interface LauncherIO {
     public double launcherAngleVeocityRPM = 0;
     public double topRollerSpeedRPM = 0;
     public double bottomRollerSpeedRPM = 0;
+    public double topRollerAppliedOutput = 0;
+    public double bottomRollerAppliedOutput = 0;
   }
 
   /** Runs the launch rollers at the specified speed in RPM. */
   public default void runRollers(double topRollerSpeed, double bottomRollerSpeed) {}
 
+  /** Sets how the launch roller speeds are controlled. */
+  public default void setRollerControlMode(RollerControlMode mode) {}
+
   /** Sets the current limit for the top and bottom rollers, in amps. */
   public default void setRollerCurrentLimit(int currentLimit) {}
 
   /** Sets the angle of the conch motor in rotations. */
   public default void setAngleReference(double rotations) {}
 
+  /** Sets the angle of the conch motor in rotations, with a feedforward in volts added to the position controller. */
+  public default void setAngleReference(double rotations, double feedforwardVolts) {
+    setAngleReference(rotations);
+  }
+
+  /** Called when a note is fed into the launcher. Only used by simulation to model the speed the rollers lose. */
+  public default void notifyNoteLaunched() {}
+
   /** Resets the launcher position based on the absolute encoder. */
   public default void resetToAbsolute() {}
   
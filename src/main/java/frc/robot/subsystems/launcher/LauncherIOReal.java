@@ -5,6 +5,7 @@ import com.revrobotics.CANSparkBase.SoftLimitDirection;
 
 import org.littletonrobotics.junction.Logger;
 
+import com.revrobotics.CANSparkLowLevel;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
@@ -12,6 +13,8 @@ import com.revrobotics.SparkPIDController;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DutyCycleEncoder;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
@@ -35,6 +38,18 @@ public class LauncherIOReal implements LauncherIO {
   private final RelativeEncoder topRollerEncoder;
   private final RelativeEncoder bottomRollerEncoder;
 
+  // Used for the roller control modes that run on the roboRIO. The notifier thread owns the controllers;
+  // everything that commands the roller motors synchronizes on this object.
+  private volatile RollerControlMode rollerControlMode = RollerControlMode.OnboardPID;
+  private volatile double topRollerTarget = 0;
+  private volatile double bottomRollerTarget = 0;
+  private volatile double topRollerOutput = 0;
+  private volatile double bottomRollerOutput = 0;
+  private final RollerController topRollerController = new RollerController();
+  private final RollerController bottomRollerController = new RollerController();
+  private final Notifier rollerControlNotifier = new Notifier(this::runRollerControl);
+  private double lastRollerControlTimestamp = 0;
+
   public LauncherIOReal() {
     // Instantiate member variables and necessary code
     topRollerMotor = new CANSparkMax(Constants.Launcher.topRollerCANID, CANSparkMax.MotorType.kBrushless);
@@ -57,6 +72,7 @@ public class LauncherIOReal implements LauncherIO {
 
     topRollerEncoder = topRollerMotor.getEncoder();
     bottomRollerEncoder = bottomRollerMotor.getEncoder();
+    rollerControlNotifier.setName("LauncherRollerControl");
 
     resetToAbsolute();
     
@@ -102,18 +118,25 @@ public class LauncherIOReal implements LauncherIO {
   }
 
   private double oldRotations = 0.;
+  private double oldFeedforwardVolts = 0.;
 
   @Override
   public void setAngleReference(double rotations) {
-    if(rotations == oldRotations) return;
+    setAngleReference(rotations, 0);
+  }
+
+  @Override
+  public void setAngleReference(double rotations, double feedforwardVolts) {
+    if(rotations == oldRotations && feedforwardVolts == oldFeedforwardVolts) return;
     oldRotations = rotations;
+    oldFeedforwardVolts = feedforwardVolts;
 
     if(Constants.enableNonEssentialShuffleboard) {
       SmartDashboard.putNumber("Launcher angle reference", rotations * 360.);
     }
     double setpoint = rotations * Constants.Launcher.angleMotorGearboxReduction;
     Logger.recordOutput("Launcher/RotationSetpoint", setpoint);
-    anglePIDController.setReference(setpoint, CANSparkMax.ControlType.kPosition);
+    anglePIDController.setReference(setpoint, CANSparkMax.ControlType.kPosition, 0, feedforwardVolts, SparkPIDController.ArbFFUnits.kVoltage);
   }
 
   @Override
@@ -123,6 +146,13 @@ public class LauncherIOReal implements LauncherIO {
     inputs.launcherAngleVeocityRPM = angleLauncherEncoder.getVelocity();
     inputs.topRollerSpeedRPM = topRollerEncoder.getVelocity();
     inputs.bottomRollerSpeedRPM = bottomRollerEncoder.getVelocity();
+    if(rollerControlMode == RollerControlMode.OnboardPID) {
+      inputs.topRollerAppliedOutput = topRollerMotor.getAppliedOutput();
+      inputs.bottomRollerAppliedOutput = bottomRollerMotor.getAppliedOutput();
+    } else {
+      inputs.topRollerAppliedOutput = topRollerOutput;
+      inputs.bottomRollerAppliedOutput = bottomRollerOutput;
+    }
     
     if(Constants.enableNonEssentialShuffleboard) {
       SmartDashboard.putNumber("Launcher encoder angle reading", getLauncherConchAngle().getDegrees());
@@ -133,7 +163,11 @@ public class LauncherIOReal implements LauncherIO {
   private double oldBottomRollerSpeed = 0.0;
 
   @Override
-  public void runRollers(double topRollerSpeed, double bottomRollerSpeed) {
+  public synchronized void runRollers(double topRollerSpeed, double bottomRollerSpeed) {
+    topRollerTarget = topRollerSpeed;
+    bottomRollerTarget = bottomRollerSpeed;
+    if(rollerControlMode != RollerControlMode.OnboardPID) return;
+
     if(topRollerSpeed != oldTopRollerSpeed) {
       topLaunchRollerPIDController.setReference(topRollerSpeed, CANSparkMax.ControlType.kVelocity);
       oldTopRollerSpeed = topRollerSpeed;
@@ -143,4 +177,56 @@ public class LauncherIOReal implements LauncherIO {
       oldBottomRollerSpeed = bottomRollerSpeed;
     }
   }
-}
\ No newline at end of file
+
+  @Override
+  public synchronized void setRollerControlMode(RollerControlMode mode) {
+    if(mode == rollerControlMode) return;
+    rollerControlMode = mode;
+
+    if(mode == RollerControlMode.OnboardPID) {
+      rollerControlNotifier.stop();
+      configureRollerFeedback(20, 32, 8);
+      // Make sure the references are sent again on the next update
+      oldTopRollerSpeed = Double.NaN;
+      oldBottomRollerSpeed = Double.NaN;
+      runRollers(topRollerTarget, bottomRollerTarget);
+    } else {
+      // The loop can only react as fast as the velocity measurements, so speed them up and filter them less
+      configureRollerFeedback(5, 8, 2);
+      topRollerController.reset();
+      bottomRollerController.reset();
+      lastRollerControlTimestamp = 0;
+      rollerControlNotifier.startPeriodic(Constants.Launcher.rollerControlPeriodSeconds);
+    }
+  }
+
+  /**
+   * Sets how often the roller speeds are reported and how they're filtered.
+   * @param statusPeriodMs
+   * @param measurementPeriodMs
+   * @param averageDepth
+   */
+  private void configureRollerFeedback(int statusPeriodMs, int measurementPeriodMs, int averageDepth) {
+    topRollerMotor.setPeriodicFramePeriod(CANSparkLowLevel.PeriodicFrame.kStatus1, statusPeriodMs);
+    bottomRollerMotor.setPeriodicFramePeriod(CANSparkLowLevel.PeriodicFrame.kStatus1, statusPeriodMs);
+    topRollerEncoder.setMeasurementPeriod(measurementPeriodMs);
+    bottomRollerEncoder.setMeasurementPeriod(measurementPeriodMs);
+    topRollerEncoder.setAverageDepth(averageDepth);
+    bottomRollerEncoder.setAverageDepth(averageDepth);
+  }
+
+  /** Runs one step of the roboRIO roller control. Called from the notifier thread. */
+  private synchronized void runRollerControl() {
+    RollerControlMode mode = rollerControlMode;
+    if(mode == RollerControlMode.OnboardPID) return;
+
+    double timestamp = Timer.getFPGATimestamp();
+    double dt = lastRollerControlTimestamp == 0 ? Constants.Launcher.rollerControlPeriodSeconds : timestamp - lastRollerControlTimestamp;
+    lastRollerControlTimestamp = timestamp;
+
+    topRollerOutput = topRollerController.calculate(mode, topRollerEncoder.getVelocity(), topRollerTarget, dt);
+    bottomRollerOutput = bottomRollerController.calculate(mode, bottomRollerEncoder.getVelocity(), bottomRollerTarget, dt);
+    topRollerMotor.set(topRollerOutput);
+    bottomRollerMotor.set(bottomRollerOutput);
+  }
+}
@@ -0,0 +1,155 @@
+package frc.robot.subsystems.launcher;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import edu.wpi.first.wpilibj.simulation.FlywheelSim;
+import frc.robot.Constants;
+
+/**
+ * Physics sim implementation of launcher IO. The launch rollers are simulated so the roller control modes
+ * can be compared, and the conch is simulated with the same position controller as the SPARK so pivot
+ * settle times can be measured. Gravity on the launcher is modeled with the same strength as the pivot
+ * feedforward's estimate.
+ */
+public class LauncherIOSim implements LauncherIO {
+  /** The moment of inertia of each roller assembly, in kg m^2. This is an estimate. */
+  private static final double rollerMomentOfInertia = 0.0006;
+  /** The fraction of the roller speed lost when a note goes through. This is an estimate. */
+  private static final double launchSpeedLossFraction = 0.2;
+  /** How many control steps we simulate per robot loop. */
+  private static final int controlStepsPerLoop = (int)Math.round(0.02 / Constants.Launcher.rollerControlPeriodSeconds);
+
+  private final DCMotor rollerMotor = DCMotor.getNEO(1);
+  private final FlywheelSim topRoller = new FlywheelSim(rollerMotor, 1, rollerMomentOfInertia);
+  private final FlywheelSim bottomRoller = new FlywheelSim(rollerMotor, 1, rollerMomentOfInertia);
+
+  /** The moment of inertia of the conch and launcher, seen at the conch, in kg m^2. This is an estimate. */
+  private static final double pivotMomentOfInertia = 0.02;
+  private final DCMotor pivotMotor = DCMotor.getNEO(1);
+  private final DCMotorSim pivot = new DCMotorSim(pivotMotor, Constants.Launcher.angleMotorGearboxReduction, pivotMomentOfInertia);
+  // Stands in for the SPARK's onboard position PID, in motor rotations
+  private final PIDController pivotPID = Constants.Launcher.angleConfig.getPIDController(0);
+
+  private final RollerController topRollerController = new RollerController();
+  private final RollerController bottomRollerController = new RollerController();
+  // Stands in for the SPARK's onboard velocity PID
+  private final PIDController topRollerPID = Constants.Launcher.rollerConfig.getPIDController(0);
+  private final PIDController bottomRollerPID = Constants.Launcher.rollerConfig.getPIDController(0);
+
+  private RollerControlMode rollerControlMode = RollerControlMode.OnboardPID;
+  private double topRollerTarget = 0;
+  private double bottomRollerTarget = 0;
+  private double topRollerOutput = 0;
+  private double bottomRollerOutput = 0;
+  private double currentLimit = Constants.Launcher.rollerCurrentLimitForAuto;
+  private boolean hasAngleReference = false;
+  private double angleReferenceRotations = 0;
+  private double angleFeedforwardVolts = 0;
+
+  public LauncherIOSim() {
+    // Start resting at the bottom
+    pivot.setState(Units.rotationsToRadians(Constants.Launcher.softStopMarginLow.getRotations()), 0);
+  }
+
+  @Override
+  public void updateInputs(LauncherIOInputs inputs) {
+    for(int i = 0; i < controlStepsPerLoop; i++) {
+      topRollerOutput = calculateOutput(topRollerController, topRollerPID, getSpeedRPM(topRoller), topRollerTarget);
+      bottomRollerOutput = calculateOutput(bottomRollerController, bottomRollerPID, getSpeedRPM(bottomRoller), bottomRollerTarget);
+      stepRoller(topRoller, topRollerOutput);
+      stepRoller(bottomRoller, bottomRollerOutput);
+      stepPivot();
+    }
+
+    double conchRotations = Units.radiansToRotations(pivot.getAngularPositionRad());
+    inputs.absoluteLauncherAngle = Rotation2d.fromRotations(conchRotations).plus(Constants.Launcher.angleOffset);
+    inputs.launcherRelativeConchAngle = Rotation2d.fromRotations(conchRotations);
+    // The real encoder reports the motor's speed, not the conch's
+    inputs.launcherAngleVeocityRPM = pivot.getAngularVelocityRPM() * Constants.Launcher.angleMotorGearboxReduction;
+    inputs.topRollerSpeedRPM = getSpeedRPM(topRoller);
+    inputs.bottomRollerSpeedRPM = getSpeedRPM(bottomRoller);
+    inputs.topRollerAppliedOutput = topRollerOutput;
+    inputs.bottomRollerAppliedOutput = bottomRollerOutput;
+  }
+
+  private double calculateOutput(RollerController controller, PIDController pid, double speedRPM, double targetRPM) {
+    if(rollerControlMode != RollerControlMode.OnboardPID) {
+      return controller.calculate(rollerControlMode, speedRPM, targetRPM, Constants.Launcher.rollerControlPeriodSeconds);
+    }
+    // The feedforward-only output from the controller is the SPARK's kF term
+    double feedforward = controller.calculate(rollerControlMode, speedRPM, targetRPM, Constants.Launcher.rollerControlPeriodSeconds);
+    return MathUtil.clamp(feedforward + pid.calculate(speedRPM, targetRPM), -1, 1);
+  }
+
+  /** Advances a roller by one control step, limiting the voltage so the motor stays within the current limit. */
+  private void stepRoller(FlywheelSim roller, double output) {
+    double voltage = output * 12;
+    double backEmf = roller.getAngularVelocityRadPerSec() / rollerMotor.KvRadPerSecPerVolt;
+    double maxVoltageChange = currentLimit * rollerMotor.rOhms;
+    voltage = MathUtil.clamp(voltage, backEmf - maxVoltageChange, backEmf + maxVoltageChange);
+    roller.setInputVoltage(MathUtil.clamp(voltage, -12, 12));
+    roller.update(Constants.Launcher.rollerControlPeriodSeconds);
+  }
+
+  /** Advances the conch by one control step. */
+  private void stepPivot() {
+    double conchRotations = Units.radiansToRotations(pivot.getAngularPositionRad());
+    double voltage = 0;
+    if(hasAngleReference) {
+      double reduction = Constants.Launcher.angleMotorGearboxReduction;
+      voltage = pivotPID.calculate(conchRotations * reduction, angleReferenceRotations * reduction) * 12 + angleFeedforwardVolts;
+    }
+    // Gravity pulls the launcher down, which turns the conch back toward the bottom
+    voltage -= Constants.Launcher.pivotKG * Math.cos(ConchKinematics.getLauncherAngle(conchRotations));
+    pivot.setInputVoltage(MathUtil.clamp(voltage, -12, 12));
+    pivot.update(Constants.Launcher.rollerControlPeriodSeconds);
+  }
+
+  private static double getSpeedRPM(FlywheelSim roller) {
+    return Units.radiansPerSecondToRotationsPerMinute(roller.getAngularVelocityRadPerSec());
+  }
+
+  @Override
+  public void runRollers(double topRollerSpeed, double bottomRollerSpeed) {
+    topRollerTarget = topRollerSpeed;
+    bottomRollerTarget = bottomRollerSpeed;
+  }
+
+  @Override
+  public void setRollerControlMode(RollerControlMode mode) {
+    if(mode == rollerControlMode) return;
+    rollerControlMode = mode;
+    topRollerController.reset();
+    bottomRollerController.reset();
+    topRollerPID.reset();
+    bottomRollerPID.reset();
+  }
+
+  @Override
+  public void setRollerCurrentLimit(int currentLimit) {
+    this.currentLimit = currentLimit;
+  }
+
+  @Override
+  public void setAngleReference(double rotations) {
+    setAngleReference(rotations, 0);
+  }
+
+  @Override
+  public void setAngleReference(double rotations, double feedforwardVolts) {
+    hasAngleReference = true;
+    angleReferenceRotations = rotations;
+    angleFeedforwardVolts = feedforwardVolts;
+  }
+
+  @Override
+  public void notifyNoteLaunched() {
+    topRoller.setState(VecBuilder.fill(topRoller.getAngularVelocityRadPerSec() * (1 - launchSpeedLossFraction)));
+    bottomRoller.setState(VecBuilder.fill(bottomRoller.getAngularVelocityRadPerSec() * (1 - launchSpeedLossFraction)));
+  }
+}
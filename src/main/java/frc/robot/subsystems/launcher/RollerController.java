@@ -0,0 +1,78 @@
+package frc.robot.subsystems.launcher;
+
+import frc.robot.subsystems.launcher.LauncherIO.RollerControlMode;
+
+/**
+ * A velocity controller for a launch roller that runs on the roboRIO instead of the SPARK, for the
+ * {@link RollerControlMode#BangBang} and {@link RollerControlMode#TakeBackHalf} modes.
+ *
+ * <p>Bang-bang applies full output whenever the roller is below its target and a slightly reduced
+ * feedforward otherwise. The rollers coast, so it never brakes them; it just recovers from a shot as fast
+ * as the motor allows. Take-back-half integrates the error into the output, and each time the error
+ * changes sign it sets the output halfway back to where it was at the previous crossing, which converges
+ * without overshooting much and without needing a tuned P gain. Both start from the feedforward.
+ *
+ * <p>Outputs are duty cycles from 0 to 1. Instances aren't thread-safe; each belongs to the thread running the loop.
+ */
+public class RollerController {
+  /** The feedforward gain in duty cycle per RPM; this matches the SPARK's kF in {@code Constants.Launcher.rollerConfig}. */
+  private static final double feedforwardGain = 1 / 5700.;
+  /** The fraction of the feedforward bang-bang applies above the target, so it doesn't hold the roller over the target. */
+  private static final double bangBangFeedforwardScale = 0.9;
+  /** The take-back-half integral gain, in duty cycle per RPM of error per second. */
+  private static final double takeBackHalfGain = 2e-4;
+
+  private double lastTargetRPM = Double.NaN;
+  private double output = 0;
+  private double takeBackHalfOutput = 0;
+  private boolean lastErrorPositive = false;
+
+  /** Forgets the controller state, so the next update starts over from the feedforward. */
+  public void reset() {
+    lastTargetRPM = Double.NaN;
+  }
+
+  /**
+   * Calculates the output for the roller.
+   * @param mode The control mode; only bang-bang and take-back-half are supported.
+   * @param speedRPM The measured roller speed.
+   * @param targetRPM The target roller speed.
+   * @param dtSeconds The time since the last update.
+   * @return The duty cycle to apply, from 0 to 1.
+   */
+  public double calculate(RollerControlMode mode, double speedRPM, double targetRPM, double dtSeconds) {
+    double feedforward = clamp(targetRPM * feedforwardGain);
+    double error = targetRPM - speedRPM;
+    if(targetRPM != lastTargetRPM) {
+      // Start from the feedforward, which is the output we expect to hold the target
+      lastTargetRPM = targetRPM;
+      output = feedforward;
+      takeBackHalfOutput = feedforward;
+      lastErrorPositive = error > 0;
+    }
+    if(targetRPM <= 0) return 0;
+
+    switch(mode) {
+      case BangBang:
+        output = error > 0 ? 1 : feedforward * bangBangFeedforwardScale;
+        break;
+      case TakeBackHalf:
+        output = clamp(output + takeBackHalfGain * error * dtSeconds);
+        boolean errorPositive = error > 0;
+        if(errorPositive != lastErrorPositive) {
+          output = (output + takeBackHalfOutput) / 2;
+          takeBackHalfOutput = output;
+          lastErrorPositive = errorPositive;
+        }
+        break;
+      default:
+        output = feedforward;
+        break;
+    }
+    return output;
+  }
+
+  private static double clamp(double value) {
+    return Math.max(0, Math.min(value, 1));
+  }
+}
@@ -5,9 +5,9 @@ import org.littletonrobotics.junction.Logger;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.RobotState;
 import frc.robot.subsystems.Superstructure;
 import frc.robot.subsystems.Superstructure.NoteState;
-import frc.robot.subsystems.drive.Swerve;
 
 public class Lighting extends SubsystemBase {
     private static Lighting instance = null;
@@ -74,7 +74,7 @@ public class Lighting extends SubsystemBase {
         if(cycle > 3) {
             cycle = 0;
             LightState lightState = getLightingState();
-            double robotSpeed = Swerve.getInstance().getRobotSpeed();
+            double robotSpeed = RobotState.getCurrent().getRobotSpeed();
             Logger.recordOutput("Lighting/lightState", lightState.toString());
             Logger.recordOutput("Lighting/robotSpeed", robotSpeed);
             lightingIO.setLightState(robotSpeed, lightState);
@@ -6,6 +6,7 @@ import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.SerialPort;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.SerialPort.Port;
+import frc.robot.FieldGeometry;
 import frc.robot.subsystems.lighting.Lighting.LightState;
 
 public class LightingIOReal implements LightingIO {
@@ -48,7 +49,7 @@ public class LightingIOReal implements LightingIO {
         data[1] = (byte)lightState.ordinal();
 
         // This value matches the Arduino's enum definitions for the alliance.
-        data[2] = (byte)(DriverStation.getAlliance().orElse(Alliance.Blue) == Alliance.Blue ? 0 : 1);
+        data[2] = (byte)(FieldGeometry.getInstance().getAlliance().orElse(Alliance.Blue) == Alliance.Blue ? 0 : 1);
         // 5.4 meters per second is our maximum speed.
         // This is just a rough conversion to 0-254, which is what we send to the Arduino.
         data[3] = (byte)(Math.min(robotSpeed / 5.4, 1.0) * 254);
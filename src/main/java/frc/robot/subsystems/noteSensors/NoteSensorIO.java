@@ -20,8 +20,69 @@ public interface NoteSensorIO {
      * (meaning the beam is broken).
      */
     public boolean noteInPositionSensorActivated = false;
+
+    /**
+     * If the edges come from DIO interrupts. When they don't, there are never any edges, and they have to be
+     * found by comparing the sensor states between updates.
+     */
+    public boolean edgesFromInterrupts = false;
+    /** The FPGA timestamps of the sensor edges since the last update, in seconds. */
+    public double[] edgeTimestamps = new double[] {};
+    /** Which sensor each edge was from; see {@link SensorEdgeCallback}. */
+    public int[] edgeSensors = new int[] {};
+    /** If each edge activated its sensor (the beam was broken) rather than deactivating it. */
+    public boolean[] edgeActivated = new boolean[] {};
+    /** How long each edge took to handle, from the edge until the edge callback returned, in seconds. */
+    public double[] edgeHandlingLatencies = new double[] {};
+    /** How many edges have been overwritten since startup because too many happened between updates. */
+    public int edgeOverflowCount = 0;
+  }
+
+  /** Called from an interrupt thread when a sensor changes. */
+  @FunctionalInterface
+  public interface SensorEdgeCallback {
+    public static final int intakeSensor = 0;
+    public static final int noteInTransitionSensor = 1;
+    public static final int noteInPositionSensor = 2;
+
+    /**
+     * @param sensor The sensor that changed.
+     * @param activated If the sensor was activated rather than deactivated.
+     */
+    void onEdge(int sensor, boolean activated);
+  }
+
+  /** The bit for the intake sensor in a packed set of sensor states. */
+  public static final int intakeSensorBit = 0b100;
+  /** The bit for the note in transition sensor in a packed set of sensor states. */
+  public static final int noteInTransitionSensorBit = 0b010;
+  /** The bit for the note in position sensor in a packed set of sensor states. */
+  public static final int noteInPositionSensorBit = 0b001;
+
+  /**
+   * Packs the sensor states into the bits of one int, so they can be published to other threads atomically.
+   * @param intake
+   * @param noteInTransition
+   * @param noteInPosition
+   * @return
+   */
+  public static int packSensorStates(boolean intake, boolean noteInTransition, boolean noteInPosition) {
+    return (intake ? intakeSensorBit : 0) |
+      (noteInTransition ? noteInTransitionSensorBit : 0) |
+      (noteInPosition ? noteInPositionSensorBit : 0);
   }
 
-  /** Updates the set of loggable inputs. */
+  /** Updates the set of loggable inputs. Only called from the main thread. */
   public default void updateInputs(NoteSensorIOInputs inputs) {}
+
+  /**
+   * Reads the sensors without touching the inputs, for the fast note state updates. Safe to call from any thread.
+   * @return The sensor states, packed with {@link #packSensorStates}.
+   */
+  public default int readSensorStates() {
+    return 0;
+  }
+
+  /** Sets a callback to run as soon as a sensor changes. Only supported when the sensors use interrupts. */
+  public default void setEdgeCallback(SensorEdgeCallback callback) {}
 }
\ No newline at end of file
@@ -1,8 +1,20 @@
 package frc.robot.subsystems.noteSensors;
 
+import edu.wpi.first.wpilibj.AsynchronousInterrupt;
 import edu.wpi.first.wpilibj.DigitalInput;
+import edu.wpi.first.wpilibj.RobotController;
 import frc.robot.Constants;
 
+/**
+ * Reads the note sensors from the roboRIO's DIO ports.
+ *
+ * <p>When interrupts are enabled, each sensor also gets an {@link AsynchronousInterrupt} on both edges.
+ * The edge callback runs on the interrupt's thread as soon as the FPGA sees the edge, so the transport can
+ * react without waiting for the next poll. The FPGA timestamp of every edge is kept until the next
+ * {@link #updateInputs} so it can be logged and replayed. If more edges than we keep happen between
+ * updates, the oldest are overwritten so the latest sensor states are never lost, and the overwritten
+ * edges are counted.
+ */
 public class NoteSensorIOReal implements NoteSensorIO {
   /**
    * The through beam sensor for detecting if notes are in the intake.
@@ -17,8 +29,116 @@ public class NoteSensorIOReal implements NoteSensorIO {
    */
   private DigitalInput noteInTransitionSensor = new DigitalInput(Constants.NoteSensors.noteInTransitionSensorDIOPort);
 
+  /** The most edges we keep between updates. Notes don't move nearly fast enough to fill this. */
+  private static final int maxEdgesPerUpdate = 32;
+
+  private final boolean useInterrupts;
+  private volatile SensorEdgeCallback edgeCallback = null;
+
+  // A ring buffer of edges since the last update, oldest first starting at edgeStart. Each interrupt has its
+  // own thread, so these are guarded by the lock.
+  private final Object edgeLock = new Object();
+  private final double[] edgeTimestamps = new double[maxEdgesPerUpdate];
+  private final int[] edgeSensors = new int[maxEdgesPerUpdate];
+  private final boolean[] edgeActivated = new boolean[maxEdgesPerUpdate];
+  private final double[] edgeHandlingLatencies = new double[maxEdgesPerUpdate];
+  private int edgeStart = 0;
+  private int edgeCount = 0;
+  private int edgeOverflowCount = 0;
+
+  /**
+   * @param useInterrupts If we should run the edge callback from DIO interrupts.
+   */
+  public NoteSensorIOReal(boolean useInterrupts) {
+    this.useInterrupts = useInterrupts;
+    if(!useInterrupts) return;
+    createInterrupt(intakeSensor, SensorEdgeCallback.intakeSensor);
+    createInterrupt(noteInTransitionSensor, SensorEdgeCallback.noteInTransitionSensor);
+    createInterrupt(noteInPositionSensor, SensorEdgeCallback.noteInPositionSensor);
+  }
+
+  private void createInterrupt(DigitalInput sensor, int sensorIndex) {
+    // The interrupt can't be created until the handler exists, so the handler finds the interrupt through this
+    AsynchronousInterrupt[] interrupt = new AsynchronousInterrupt[1];
+    interrupt[0] = new AsynchronousInterrupt(sensor, (rising, falling) -> {
+      // The sensors read true when the beam is broken. If the sensor blipped both ways since the last callback,
+      // handle the edges in the order they happened.
+      double risingTimestamp = rising ? interrupt[0].getRisingTimestamp() : 0;
+      double fallingTimestamp = falling ? interrupt[0].getFallingTimestamp() : 0;
+      if(rising && falling && fallingTimestamp < risingTimestamp) {
+        handleEdge(sensorIndex, false, fallingTimestamp);
+        handleEdge(sensorIndex, true, risingTimestamp);
+        return;
+      }
+      if(rising) handleEdge(sensorIndex, true, risingTimestamp);
+      if(falling) handleEdge(sensorIndex, false, fallingTimestamp);
+    });
+    interrupt[0].setInterruptEdges(true, true);
+    interrupt[0].enable();
+  }
+
+  /** Runs the edge callback and records the edge. Called from an interrupt thread. */
+  private void handleEdge(int sensor, boolean activated, double timestamp) {
+    SensorEdgeCallback callback = edgeCallback;
+    if(callback != null) callback.onEdge(sensor, activated);
+    double latency = RobotController.getFPGATime() / 1e6 - timestamp;
+
+    synchronized(edgeLock) {
+      int index;
+      if(edgeCount < maxEdgesPerUpdate) {
+        index = (edgeStart + edgeCount) % maxEdgesPerUpdate;
+        edgeCount++;
+      } else {
+        // Overwrite the oldest edge
+        index = edgeStart;
+        edgeStart = (edgeStart + 1) % maxEdgesPerUpdate;
+        edgeOverflowCount++;
+      }
+      edgeTimestamps[index] = timestamp;
+      edgeSensors[index] = sensor;
+      edgeActivated[index] = activated;
+      edgeHandlingLatencies[index] = latency;
+    }
+  }
+
+  @Override
+  public void setEdgeCallback(SensorEdgeCallback callback) {
+    edgeCallback = callback;
+  }
+
+  @Override
+  public int readSensorStates() {
+    return NoteSensorIO.packSensorStates(intakeSensor.get(), noteInTransitionSensor.get(), noteInPositionSensor.get());
+  }
+
   @Override
   public void updateInputs(NoteSensorIOInputs inputs) {
+    inputs.edgesFromInterrupts = useInterrupts;
+
+    // Drain the edges before reading the sensors, so every logged edge is already reflected in the logged states.
+    // An edge between the two shows up in the states now and in the edges next update.
+    synchronized(edgeLock) {
+      inputs.edgeOverflowCount = edgeOverflowCount;
+
+      // Only allocate when there's something new to log
+      if(edgeCount > 0 || inputs.edgeTimestamps.length > 0) {
+        // The logged arrays can still be in the log queue, so these are always new arrays
+        inputs.edgeTimestamps = new double[edgeCount];
+        inputs.edgeSensors = new int[edgeCount];
+        inputs.edgeActivated = new boolean[edgeCount];
+        inputs.edgeHandlingLatencies = new double[edgeCount];
+        for(int i = 0; i < edgeCount; i++) {
+          int index = (edgeStart + i) % maxEdgesPerUpdate;
+          inputs.edgeTimestamps[i] = edgeTimestamps[index];
+          inputs.edgeSensors[i] = edgeSensors[index];
+          inputs.edgeActivated[i] = edgeActivated[index];
+          inputs.edgeHandlingLatencies[i] = edgeHandlingLatencies[index];
+        }
+        edgeStart = 0;
+        edgeCount = 0;
+      }
+    }
+
     inputs.intakeSensorActivated = intakeSensor.get();
     inputs.noteInPositionSensorActivated = noteInPositionSensor.get();
     inputs.noteInTransitionSensorActivated = noteInTransitionSensor.get();
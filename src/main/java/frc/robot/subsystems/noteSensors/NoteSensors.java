@@ -7,13 +7,22 @@ import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
 
+/**
+ * The note sensors.
+ *
+ * <p>The superstructure reads the sensors from its own notifier and from interrupt threads, but AdvantageKit
+ * and the inputs object belong to the main thread. So the fast threads read the sensors straight from the IO
+ * and publish them as one packed volatile int, which the getters read; that way every reader sees all three
+ * sensors from the same read. {@link #periodic()} updates and logs the inputs on the main thread. In replay
+ * there's no hardware to read, so the logged inputs are published instead.
+ */
 public class NoteSensors extends SubsystemBase {
   private static NoteSensors instance = null;
   public static NoteSensors getInstance() {
     if (instance == null) {
         switch (Constants.currentMode) {
           case REAL:
-            instance = new NoteSensors(new NoteSensorIOReal());
+            instance = new NoteSensors(new NoteSensorIOReal(Constants.NoteSensors.useInterrupts));
             return instance;
           case REPLAY:
             instance = new NoteSensors(new NoteSensorIO() {});
@@ -29,6 +38,27 @@ public class NoteSensors extends SubsystemBase {
   private final NoteSensorIO noteSensorIO;
   private final NoteSensorIOInputsAutoLogged inputs = new NoteSensorIOInputsAutoLogged();
 
+  /** The latest sensor states, packed with {@link NoteSensorIO#packSensorStates}. */
+  private volatile int sensorStates = 0;
+
+  /** Receives a sensor edge along with when it happened. */
+  @FunctionalInterface
+  public interface TimestampedEdgeConsumer {
+    /**
+     * @param sensor The sensor that changed; see {@link NoteSensorIO.SensorEdgeCallback}.
+     * @param activated If the sensor was activated rather than deactivated.
+     * @param timestamp When the edge happened, in seconds.
+     */
+    void accept(int sensor, boolean activated, double timestamp);
+  }
+
+  // The sensor states from the previous update, for finding edges when the IO doesn't report them
+  private boolean lastIntakeSensorActivated = false;
+  private boolean lastNoteInTransitionSensorActivated = false;
+  private boolean lastNoteInPositionSensorActivated = false;
+  /** The time the current inputs were read, in seconds. */
+  private double updateTimestamp = 0;
+
   private NoteSensors(NoteSensorIO noteSensorIO) {
     this.noteSensorIO = noteSensorIO;
 
@@ -40,13 +70,77 @@ public class NoteSensors extends SubsystemBase {
     notesTab.addBoolean("Note in transition sensor activated", () -> inputs.noteInTransitionSensorActivated);
   }
 
+  @Override
+  public void periodic() {
+    lastIntakeSensorActivated = inputs.intakeSensorActivated;
+    lastNoteInTransitionSensorActivated = inputs.noteInTransitionSensorActivated;
+    lastNoteInPositionSensorActivated = inputs.noteInPositionSensorActivated;
+    updateTimestamp = Logger.getTimestamp() / 1e6;
+
+    noteSensorIO.updateInputs(inputs);
+    Logger.processInputs("NoteSensors", inputs);
+
+    if(Constants.currentMode == Constants.Mode.REPLAY) {
+      sensorStates = NoteSensorIO.packSensorStates(
+        inputs.intakeSensorActivated,
+        inputs.noteInTransitionSensorActivated,
+        inputs.noteInPositionSensorActivated
+      );
+    }
+  }
+
   /**
-   * Updates the read sensor values.  
-   * We don't do this in periodic because we want to synchronize the sensor reads with the superstructure state updates to avoid extra latency.
+   * Passes every sensor edge from the latest update to a consumer, in the order they happened. Only called from the main thread.  
+   * When the sensors use interrupts, these are the interrupt edges with their exact timestamps. Otherwise, they're found
+   * by comparing the sensor states with the previous update. Those edges happened somewhere between the two updates, but
+   * we only know when the later one read the sensors, so they're timestamped with that and can be up to a loop late.
+   * @param consumer
+   */
+  public void forEachSensorEdge(TimestampedEdgeConsumer consumer) {
+    if(inputs.edgesFromInterrupts) {
+      // The interrupts already caught every change in the states, so comparing them would report edges twice
+      for(int i = 0; i < inputs.edgeTimestamps.length; i++) {
+        consumer.accept(inputs.edgeSensors[i], inputs.edgeActivated[i], inputs.edgeTimestamps[i]);
+      }
+      return;
+    }
+
+    if(inputs.intakeSensorActivated != lastIntakeSensorActivated) {
+      consumer.accept(NoteSensorIO.SensorEdgeCallback.intakeSensor, inputs.intakeSensorActivated, updateTimestamp);
+    }
+    if(inputs.noteInTransitionSensorActivated != lastNoteInTransitionSensorActivated) {
+      consumer.accept(NoteSensorIO.SensorEdgeCallback.noteInTransitionSensor, inputs.noteInTransitionSensorActivated, updateTimestamp);
+    }
+    if(inputs.noteInPositionSensorActivated != lastNoteInPositionSensorActivated) {
+      consumer.accept(NoteSensorIO.SensorEdgeCallback.noteInPositionSensor, inputs.noteInPositionSensorActivated, updateTimestamp);
+    }
+  }
+
+  /**
+   * Updates the read sensor values. Safe to call from any thread.  
+   * We don't only do this in periodic because we want to synchronize the sensor reads with the superstructure state updates to avoid extra latency.
    */
   public void updateSensorValues() {
-    noteSensorIO.updateInputs(inputs);
-    Logger.processInputs("NoteSensors", inputs);
+    if(Constants.currentMode == Constants.Mode.REPLAY) return;
+    sensorStates = noteSensorIO.readSensorStates();
+  }
+
+  /**
+   * Gets the state of every sensor from the same read, packed with {@link NoteSensorIO#packSensorStates}.
+   * @return
+   */
+  public int getSensorStates() {
+    // Temporary; the intake sensor isn't working
+    return sensorStates & ~NoteSensorIO.intakeSensorBit;
+  }
+
+  /**
+   * Sets a callback to run as soon as any sensor changes, from an interrupt thread.  
+   * Only called when the sensors use interrupts; the sensor values should still be updated periodically.
+   * @param callback
+   */
+  public void setSensorEdgeCallback(Runnable callback) {
+    noteSensorIO.setEdgeCallback((sensor, activated) -> callback.run());
   }
 
   /**
@@ -64,7 +158,7 @@ public class NoteSensors extends SubsystemBase {
    * @return
    */
   public boolean getNoteInPositionSensorActivated() {
-    return inputs.noteInPositionSensorActivated;
+    return (sensorStates & NoteSensorIO.noteInPositionSensorBit) != 0;
   }
 
   /**
@@ -73,6 +167,6 @@ public class NoteSensors extends SubsystemBase {
    * @return
    */
   public boolean getNoteInTransitionSensorActivated() {
-    return inputs.noteInTransitionSensorActivated;
+    return (sensorStates & NoteSensorIO.noteInTransitionSensorBit) != 0;
   }
 }
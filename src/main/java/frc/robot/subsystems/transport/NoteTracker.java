@@ -0,0 +1,169 @@
+package frc.robot.subsystems.transport;
+
+import frc.robot.subsystems.noteSensors.NoteSensorIO.SensorEdgeCallback;
+
+/**
+ * Estimates where the note is between the beam break sensors by following the transport rollers.
+ *
+ * <p>Every sensor edge fixes the position of the note's front: activating a sensor means the front just
+ * reached it, and deactivating one means the back just left it, so the front is a note length past it (both
+ * reversed when the transport runs backward). Between edges, the note is assumed to move with the rollers,
+ * so the estimate is the last fix plus how far the rollers have turned since. The roller positions are kept
+ * for a few loops so edges, which are timestamped when they happen, can be matched to where the rollers were
+ * at that moment. The note slips a little, so the estimate's uncertainty grows with the distance since the fix.
+ *
+ * <p>Only the note in transition and note in position sensors are used. Positions are of the note's front,
+ * in meters along its path, measured from the note in transition sensor. Instances aren't thread-safe.
+ */
+public class NoteTracker {
+  /** How many transport samples we keep for matching edges to roller positions. */
+  private static final int sampleHistoryLength = 8;
+
+  private final double transitionSensorPosition;
+  private final double positionSensorPosition;
+  private final double noteLength;
+  private final double errorFraction;
+
+  // A ring buffer of transport samples, oldest first starting at sampleStart
+  private final double[] sampleTimestamps = new double[sampleHistoryLength];
+  private final double[] samplePositions = new double[sampleHistoryLength];
+  private int sampleStart = 0;
+  private int sampleCount = 0;
+
+  private boolean hasNote = false;
+  /** The position of the note's front at the last fix. */
+  private double fixNotePosition = 0;
+  /** The transport position at the last fix. */
+  private double fixTransportPosition = 0;
+
+  /**
+   * @param transitionSensorPosition The position of the note in transition sensor, in meters.
+   * @param positionSensorPosition The position of the note in position sensor, in meters.
+   * @param noteLength The length of a note along its path, in meters.
+   * @param errorFraction How much the note can slip, as a fraction of the distance moved since a fix.
+   */
+  public NoteTracker(double transitionSensorPosition, double positionSensorPosition, double noteLength, double errorFraction) {
+    this.transitionSensorPosition = transitionSensorPosition;
+    this.positionSensorPosition = positionSensorPosition;
+    this.noteLength = noteLength;
+    this.errorFraction = errorFraction;
+  }
+
+  /**
+   * Adds a measurement of the transport position. Should be called once per loop, before handling that loop's edges.
+   * @param timestamp The time of the measurement, in seconds.
+   * @param transportPosition How far the transport has moved a note, in meters.
+   */
+  public void addTransportSample(double timestamp, double transportPosition) {
+    int index;
+    if(sampleCount < sampleHistoryLength) {
+      index = (sampleStart + sampleCount) % sampleHistoryLength;
+      sampleCount++;
+    } else {
+      index = sampleStart;
+      sampleStart = (sampleStart + 1) % sampleHistoryLength;
+    }
+    sampleTimestamps[index] = timestamp;
+    samplePositions[index] = transportPosition;
+  }
+
+  /**
+   * Handles a sensor edge, fixing the note's position.
+   * @param sensor The sensor that changed; see {@link SensorEdgeCallback}.
+   * @param activated If the sensor was activated rather than deactivated.
+   * @param timestamp When the edge happened, in seconds.
+   */
+  public void handleSensorEdge(int sensor, boolean activated, double timestamp) {
+    if(sampleCount == 0) return;
+
+    double sensorPosition;
+    if(sensor == SensorEdgeCallback.noteInTransitionSensor) sensorPosition = transitionSensorPosition;
+    else if(sensor == SensorEdgeCallback.noteInPositionSensor) sensorPosition = positionSensorPosition;
+    else return;
+
+    boolean forward = getTransportVelocityAt(timestamp) >= 0;
+
+    // The note has left the part of the transport we track
+    if(!activated && forward && sensor == SensorEdgeCallback.noteInPositionSensor) {
+      hasNote = false;
+      return;
+    }
+    if(!activated && !forward && sensor == SensorEdgeCallback.noteInTransitionSensor) {
+      hasNote = false;
+      return;
+    }
+
+    // Going forward, activating means the front reached the sensor; going backward, it means the back did
+    boolean frontAtSensor = activated == forward;
+    hasNote = true;
+    fixNotePosition = frontAtSensor ? sensorPosition : sensorPosition + noteLength;
+    fixTransportPosition = getTransportPositionAt(timestamp);
+  }
+
+  /** Forgets the note, until the next sensor edge. */
+  public void reset() {
+    hasNote = false;
+  }
+
+  /** Gets if we're tracking a note. */
+  public boolean hasNote() {
+    return hasNote;
+  }
+
+  /**
+   * Gets the estimated position of the note's front, in meters.
+   * @return The position, or NaN if we aren't tracking a note.
+   */
+  public double getNotePosition() {
+    if(!hasNote) return Double.NaN;
+    return fixNotePosition + getDistanceSinceFix();
+  }
+
+  /**
+   * Gets how far off the position estimate could be, in meters.
+   * @return The uncertainty, or NaN if we aren't tracking a note.
+   */
+  public double getUncertainty() {
+    if(!hasNote) return Double.NaN;
+    return Math.abs(getDistanceSinceFix()) * errorFraction;
+  }
+
+  private double getDistanceSinceFix() {
+    return getLatestTransportPosition() - fixTransportPosition;
+  }
+
+  private double getLatestTransportPosition() {
+    return samplePositions[(sampleStart + sampleCount - 1) % sampleHistoryLength];
+  }
+
+  /** Gets the transport position at a time, interpolating between samples, holding the start, and extrapolating past the end. */
+  private double getTransportPositionAt(double timestamp) {
+    int previous = sampleStart;
+    if(timestamp <= sampleTimestamps[previous]) return samplePositions[previous];
+    for(int i = 1; i < sampleCount; i++) {
+      int next = (sampleStart + i) % sampleHistoryLength;
+      if(timestamp <= sampleTimestamps[next]) {
+        double t = (timestamp - sampleTimestamps[previous]) / (sampleTimestamps[next] - sampleTimestamps[previous]);
+        return samplePositions[previous] + (samplePositions[next] - samplePositions[previous]) * t;
+      }
+      previous = next;
+    }
+    // The edge is newer than the latest sample, so extrapolate from the latest velocity
+    return samplePositions[previous] + getTransportVelocityAt(timestamp) * (timestamp - sampleTimestamps[previous]);
+  }
+
+  /** Gets the transport velocity around a time, from the samples on either side of it. */
+  private double getTransportVelocityAt(double timestamp) {
+    if(sampleCount < 2) return 0;
+    int previous = sampleStart;
+    int next = (sampleStart + 1) % sampleHistoryLength;
+    for(int i = 1; i < sampleCount; i++) {
+      next = (sampleStart + i) % sampleHistoryLength;
+      if(timestamp <= sampleTimestamps[next]) break;
+      if(i < sampleCount - 1) previous = next;
+    }
+    double dt = sampleTimestamps[next] - sampleTimestamps[previous];
+    if(dt <= 0) return 0;
+    return (samplePositions[next] - samplePositions[previous]) / dt;
+  }
+}
@@ -1,19 +1,24 @@
 package frc.robot.subsystems.transport;
 
-import java.util.HashSet;
-
 import org.littletonrobotics.junction.AutoLogOutput;
+import org.littletonrobotics.junction.Logger;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.lib.util.EnumStateMachine;
 import frc.robot.Constants;
+import frc.robot.subsystems.noteSensors.NoteSensors;
 
 /**
  * The transport subsystem.  This subsystem controls the transport of notes from the intake to the shooter.
  * The transport is a state machine with predefined transitions.
  * Higher priority states can't transition to lower priority states;
  * for example, you can't transition from MovingNote to IntakingNote or EjectingNote to MovingNote.
+ *
+ * <p>The superstructure drives the transport from its notifier and interrupt threads so it can stop a note
+ * without waiting for the main loop. Transitions are synchronized by the state machine, the state is published
+ * through it, and {@link #immediatelyUpdateSpeeds()} is the one path to the motors from any thread.
  */
 public class Transport extends SubsystemBase {
   private static Transport instance = null;
@@ -32,12 +37,40 @@ public class Transport extends SubsystemBase {
   }
 
   private TransportIO transportIO;
+  private final TransportIOInputsAutoLogged inputs = new TransportIOInputsAutoLogged();
+
+  /**
+   * Guards the motor writes, which can come from the main loop and the superstructure's threads at once.
+   * The state is read while holding it, so the last write always matches the newest state.
+   */
+  private final Object actuatorLock = new Object();
+
+  /** Follows the note between the sensors. Only used from the main thread. */
+  private final NoteTracker noteTracker = new NoteTracker(
+    Constants.NoteSensors.noteInTransitionSensorPositionMeters,
+    Constants.NoteSensors.noteInPositionSensorPositionMeters,
+    Constants.NoteSensors.noteLengthMeters,
+    Constants.Transport.noteTrackingErrorFraction
+  );
+
+  /**
+   * Where the note's front is when it's resting, in meters; the note is ready to launch once its back clears the
+   * note in transition sensor.
+   */
+  private static final double noteRestingPositionMeters =
+    Constants.NoteSensors.noteInTransitionSensorPositionMeters + Constants.NoteSensors.noteLengthMeters;
+
+  /**
+   * The least distance the note could have left until it's resting, in meters, or NaN if we aren't tracking it.
+   * Published for the motor writes from other threads.
+   */
+  private volatile double minDistanceToRestMeters = Double.NaN;
 
   private Transport(TransportIO transportIO) {
     this.transportIO = transportIO;
 
     if(!Constants.enableNonEssentialShuffleboard) return;
-    Shuffleboard.getTab("Notes").addString("Transport state", () -> transportState.toString());
+    Shuffleboard.getTab("Notes").addString("Transport state", () -> getCurrentState().toString());
   }
 
   /**
@@ -61,20 +94,11 @@ public class Transport extends SubsystemBase {
     Stopped
   }
 
-  /**
-   * The current state of the transport.
-   * The transport is a state machine with predefined transitions.
-   * Higher priority states can't transition to lower priority states;
-   * for example, you can't transition from MovingNote to IntakingNote or EjectingNote to MovingNote.
-   */
-  @AutoLogOutput(key = "Transport/TransportState")
-  private TransportState transportState = TransportState.Stopped;
-
   /**
    * The operator can override the transport to run at a specific speed.  
    * This is the speed that the transport will run at when being overriden by an operator, in meters per second.
    */
-  private double operatorOverrideSpeedMetersPerSecond = 0;
+  private volatile double operatorOverrideSpeedMetersPerSecond = 0;
   /**
    * Sets the speed that the transport will run at when being overriden by an operator, in meters per second.
    * @param speedMetersPerSecond
@@ -83,70 +107,44 @@ public class Transport extends SubsystemBase {
     operatorOverrideSpeedMetersPerSecond = speedMetersPerSecond;
   }
 
-  private class TransportStatePair {
-    // Allow unused since this is used for a set of valid state transitions so we only need the data for equality checks
-    @SuppressWarnings("unused")
-    private TransportState from;
-    @SuppressWarnings("unused")
-    private TransportState to;
-
-    public TransportStatePair(TransportState from, TransportState to) {
-      this.from = from;
-      this.to = to;
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-      if (obj instanceof TransportStatePair) {
-        TransportStatePair other = (TransportStatePair) obj;
-        return other.from == from && other.to == to;
-      }
-      return false;
-  }
-
-    @Override
-    public int hashCode() {
-      return from.hashCode() + to.hashCode();
-    }
-  }
-    
-  /** Valid state transitions, in the order (from, to) */
-  private HashSet<TransportStatePair> validStateTransitions = getValidStateTransitions();
-  private HashSet<TransportStatePair> getValidStateTransitions() {
-    HashSet<TransportStatePair> transitions = new HashSet<>();
-
-    // Standard note path transitions
-    transitions.add(new TransportStatePair(TransportState.Stopped, TransportState.IntakingNote));
-    transitions.add(new TransportStatePair(TransportState.IntakingNote, TransportState.Stopped));
-    transitions.add(new TransportStatePair(TransportState.IntakingNote, TransportState.MovingNote));
-    transitions.add(new TransportStatePair(TransportState.MovingNote, TransportState.Stopped));
-    transitions.add(new TransportStatePair(TransportState.Stopped, TransportState.LaunchingNote));
-    transitions.add(new TransportStatePair(TransportState.LaunchingNote, TransportState.Stopped));
-
-    transitions.add(new TransportStatePair(TransportState.MovingNote, TransportState.LaunchingNote));
+  /**
+   * The transport state machine. Only the transitions below are allowed.
+   * Higher priority states can't transition to lower priority states;
+   * for example, you can't transition from MovingNote to IntakingNote or EjectingNote to MovingNote.
+   */
+  private final EnumStateMachine<TransportState> stateMachine = createStateMachine();
+  private static EnumStateMachine<TransportState> createStateMachine() {
+    return new EnumStateMachine<>(TransportState.class, TransportState.Stopped)
+      // Standard note path transitions
+      .allowTransition(TransportState.Stopped, TransportState.IntakingNote)
+      .allowTransition(TransportState.IntakingNote, TransportState.Stopped)
+      .allowTransition(TransportState.IntakingNote, TransportState.MovingNote)
+      .allowTransition(TransportState.MovingNote, TransportState.Stopped)
+      .allowTransition(TransportState.Stopped, TransportState.LaunchingNote)
+      .allowTransition(TransportState.LaunchingNote, TransportState.Stopped)
 
-    // Operator override transitions
-    transitions.add(new TransportStatePair(TransportState.Stopped, TransportState.OperatorOverride));
-    transitions.add(new TransportStatePair(TransportState.EjectingNote, TransportState.OperatorOverride));
-    transitions.add(new TransportStatePair(TransportState.IntakingNote, TransportState.OperatorOverride));
-    transitions.add(new TransportStatePair(TransportState.LaunchingNote, TransportState.OperatorOverride));
-    transitions.add(new TransportStatePair(TransportState.MovingNote, TransportState.OperatorOverride));
-    transitions.add(new TransportStatePair(TransportState.OperatorOverride, TransportState.Stopped));
-    transitions.add(new TransportStatePair(TransportState.SweepTransport, TransportState.OperatorOverride));
+      .allowTransition(TransportState.MovingNote, TransportState.LaunchingNote)
 
-    // Ejecting note transitions
-    transitions.add(new TransportStatePair(TransportState.IntakingNote, TransportState.EjectingNote));
-    transitions.add(new TransportStatePair(TransportState.MovingNote, TransportState.EjectingNote));
-    transitions.add(new TransportStatePair(TransportState.Stopped, TransportState.EjectingNote));
-    transitions.add(new TransportStatePair(TransportState.LaunchingNote, TransportState.EjectingNote));
-    transitions.add(new TransportStatePair(TransportState.EjectingNote, TransportState.Stopped));
-    transitions.add(new TransportStatePair(TransportState.Stopped, TransportState.MovingNote));
+      // Operator override transitions
+      .allowTransition(TransportState.Stopped, TransportState.OperatorOverride)
+      .allowTransition(TransportState.EjectingNote, TransportState.OperatorOverride)
+      .allowTransition(TransportState.IntakingNote, TransportState.OperatorOverride)
+      .allowTransition(TransportState.LaunchingNote, TransportState.OperatorOverride)
+      .allowTransition(TransportState.MovingNote, TransportState.OperatorOverride)
+      .allowTransition(TransportState.OperatorOverride, TransportState.Stopped)
+      .allowTransition(TransportState.SweepTransport, TransportState.OperatorOverride)
 
-    // Sweep transport transitions
-    transitions.add(new TransportStatePair(TransportState.Stopped, TransportState.SweepTransport));
-    transitions.add(new TransportStatePair(TransportState.SweepTransport, TransportState.Stopped));
+      // Ejecting note transitions
+      .allowTransition(TransportState.IntakingNote, TransportState.EjectingNote)
+      .allowTransition(TransportState.MovingNote, TransportState.EjectingNote)
+      .allowTransition(TransportState.Stopped, TransportState.EjectingNote)
+      .allowTransition(TransportState.LaunchingNote, TransportState.EjectingNote)
+      .allowTransition(TransportState.EjectingNote, TransportState.Stopped)
+      .allowTransition(TransportState.Stopped, TransportState.MovingNote)
 
-    return transitions;
+      // Sweep transport transitions
+      .allowTransition(TransportState.Stopped, TransportState.SweepTransport)
+      .allowTransition(TransportState.SweepTransport, TransportState.Stopped);
   }
 
   /**
@@ -155,17 +153,47 @@ public class Transport extends SubsystemBase {
    * @param newState
    */
   public void attemptTransitionToState(TransportState newState) {
-    if (validStateTransitions.contains(new TransportStatePair(transportState, newState))) {
-      transportState = newState;
+    stateMachine.attemptTransition(newState);
+  }
+
+  /**
+   * Sets an action to run when the transport enters a state. It runs on whichever thread made the transition,
+   * while the state machine is locked. Each state has one action; setting another replaces it.
+   * @param state
+   * @param action
+   */
+  public void onEntry(TransportState state, Runnable action) {
+    stateMachine.onEntry(state, action);
+  }
+
+  /**
+   * Attempts a transition requested automatically from the note sensors, unless the operator or a sweep has control
+   * of the transport. The check and the transition happen atomically, so a transition from another thread can't get between them.
+   * @param newState
+   */
+  public void attemptAutomaticTransitionToState(TransportState newState) {
+    // The state machine's methods synchronize on it, so this holds off every other transition
+    synchronized(stateMachine) {
+      TransportState transportState = stateMachine.getState();
+      if (
+        transportState == TransportState.SweepTransport ||
+        transportState == TransportState.OperatorOverride
+      ) return;
+
+      stateMachine.attemptTransition(newState);
     }
   }
 
   /**
    * Gets the current state of the transport.
+   * The transport is a state machine with predefined transitions.
+   * Higher priority states can't transition to lower priority states;
+   * for example, you can't transition from MovingNote to IntakingNote or EjectingNote to MovingNote.
    * @return
    */
+  @AutoLogOutput(key = "Transport/TransportState")
   public TransportState getCurrentState() {
-    return transportState;
+    return stateMachine.getState();
   }
 
   @Override
@@ -173,41 +201,93 @@ public class Transport extends SubsystemBase {
     // Speeds are how fast the belt/edge of intake wheels will move at, in meters per second.
     // This is effectively the speed that the note moves.  
 
+    transportIO.updateInputs(inputs);
+    Logger.processInputs("Transport", inputs);
+
+    updateNoteTracking();
+
     immediatelyUpdateSpeeds();
+
+    stateMachine.logStatistics("Transport/StateMachine");
+  }
+
+  /** Updates the note position estimate from the transport motion and the sensor edges. */
+  private void updateNoteTracking() {
+    noteTracker.addTransportSample(Logger.getTimestamp() / 1e6, inputs.transportPositionMeters);
+    NoteSensors.getInstance().forEachSensorEdge(noteTracker::handleSensorEdge);
+
+    double notePosition = noteTracker.getNotePosition();
+    double uncertainty = noteTracker.getUncertainty();
+    minDistanceToRestMeters = noteRestingPositionMeters - (notePosition + uncertainty);
+
+    Logger.recordOutput("Transport/NoteTracker/HasNote", noteTracker.hasNote());
+    Logger.recordOutput("Transport/NoteTracker/NotePositionMeters", notePosition);
+    Logger.recordOutput("Transport/NoteTracker/UncertaintyMeters", uncertainty);
+    Logger.recordOutput("Transport/NoteTracker/MinDistanceToRestMeters", minDistanceToRestMeters);
+  }
+
+  /**
+   * Gets the estimated position of the note's front along its path, in meters from the note in transition sensor.
+   * @return The position, or NaN if we aren't tracking a note.
+   */
+  public double getEstimatedNotePositionMeters() {
+    return noteTracker.getNotePosition();
   }
 
   /**
    * Resets all transport state; called at the start of auto and teleop.
    */
   public void resetState() {
-    transportState = TransportState.Stopped;
+    stateMachine.forceState(TransportState.Stopped);
   }
 
-  /** Immediately updates the transport motors with the new speeds. Used to reduce latency. */
+  /**
+   * Immediately updates the transport motors with the new speeds. Used to reduce latency.  
+   * Safe to call from any thread.
+   */
   public void immediatelyUpdateSpeeds() {
-    if (transportState == TransportState.OperatorOverride) {
-      transportIO.setTransportSpeed(operatorOverrideSpeedMetersPerSecond);
-    } else {
-      switch(transportState) {
-        case IntakingNote:
-          transportIO.setTransportSpeed(Constants.Transport.intakeSpeed);
-          break;
-        case MovingNote:
-          transportIO.setTransportSpeed(Constants.Transport.intakeSpeed * 0.8);
-          break;
-        case EjectingNote:
-          transportIO.setTransportSpeed(-Constants.Transport.ejectNoteSpeed);
-          break;
-        case SweepTransport:
-          transportIO.setTransportSpeed(1.5);
-          break;
-        case LaunchingNote:
-          transportIO.setTransportSpeed(Constants.Transport.launchNoteTransportSpeed);
-          break;
-        default:
-          transportIO.setTransportSpeed(0.);
-          break;
-      }
+    synchronized(actuatorLock) {
+      transportIO.setTransportSpeed(getSpeedForState(stateMachine.getState()));
+    }
+  }
+
+  /**
+   * Gets the speed the transport should run at in a state, in meters per second.
+   * @param transportState
+   * @return
+   */
+  private double getSpeedForState(TransportState transportState) {
+    switch(transportState) {
+      case OperatorOverride:
+        return operatorOverrideSpeedMetersPerSecond;
+      case IntakingNote:
+        return Constants.Transport.intakeSpeed;
+      case MovingNote:
+        return getMovingNoteSpeed();
+      case EjectingNote:
+        return -Constants.Transport.ejectNoteSpeed;
+      case SweepTransport:
+        return 1.5;
+      case LaunchingNote:
+        return Constants.Transport.launchNoteTransportSpeed;
+      default:
+        return 0.;
+    }
+  }
+
+  /**
+   * Gets the speed to move the note toward the resting position, in meters per second.
+   * We move faster while the note is definitely far from resting, then slow down so it stops from the normal speed.
+   * @return
+   */
+  private double getMovingNoteSpeed() {
+    // The estimate only updates once per loop, so leave room for how far the note moves before the next update
+    double slowDownDistance = Constants.Transport.noteApproachDistanceMeters +
+      Constants.Transport.fastMovingNoteSpeed * Constants.Transport.noteTrackingLookaheadSeconds;
+    // NaN compares false, so untracked notes move at the normal speed
+    if(Constants.Transport.useNoteTracking && minDistanceToRestMeters > slowDownDistance) {
+      return Constants.Transport.fastMovingNoteSpeed;
     }
+    return Constants.Transport.movingNoteSpeed;
   }
 }
@@ -1,10 +1,27 @@
 package frc.robot.subsystems.transport;
 
+import org.littletonrobotics.junction.AutoLog;
+
 public interface TransportIO {
+  @AutoLog
+  public static class TransportIOInputs {
+    public double topMotorCurrentDraw = 0.0;
+    public double bottomMotorCurrentDraw = 0.0;
+    /**
+     * How far the transport has moved notes since startup, in meters, measured by the top motor's encoder.
+     * Positive is toward the launcher.
+     */
+    public double transportPositionMeters = 0.0;
+  }
+
+  /** Updates the set of loggable inputs. Only called from the main thread. */
+  public default void updateInputs(TransportIOInputs inputs) {}
+
   /**
    * Sets the transport speeds. Speeds are how fast the edge wheels will move at, in meters per second.
    * This is effectively the speed that the note moves.  
+   * Implementations aren't thread-safe; {@link Transport} serializes calls.
    * @param speedMetersPerSecond The speed that the intake and transport wheels will spin, in meters per second.
    */
   public default void setTransportSpeed(double speedMetersPerSecond) {}
-}
\ No newline at end of file
+}
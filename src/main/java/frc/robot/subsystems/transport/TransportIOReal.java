@@ -5,8 +5,6 @@ import com.revrobotics.CANSparkBase.ControlType;
 import edu.wpi.first.math.filter.SlewRateLimiter;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 
-import org.littletonrobotics.junction.Logger;
-
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.SparkPIDController;
@@ -20,17 +18,29 @@ public class TransportIOReal implements TransportIO {
   private SparkPIDController bottomTransportPIDController;
   private SparkPIDController topTransportPIDController;
 
+  private RelativeEncoder topTransportEncoder;
+
   public TransportIOReal() {
     topTransportMotor = new CANSparkMax(Constants.Transport.topTransportMotorCANID, CANSparkMax.MotorType.kBrushless);
     bottomTransportMotor = new CANSparkMax(Constants.Transport.bottomTransportMotorCANID, CANSparkMax.MotorType.kBrushless);
 
     topTransportPIDController = topTransportMotor.getPIDController();
     bottomTransportPIDController = bottomTransportMotor.getPIDController();
+    topTransportEncoder = topTransportMotor.getEncoder();
 
     Constants.Transport.transportMotorConfig.configure(topTransportMotor, topTransportPIDController, "top transport motor");
     Constants.Transport.transportMotorConfig.configure(bottomTransportMotor, bottomTransportPIDController, "bottom transport motor");
   }
 
+  @Override
+  public void updateInputs(TransportIOInputs inputs) {
+    inputs.topMotorCurrentDraw = topTransportMotor.getOutputCurrent();
+    inputs.bottomMotorCurrentDraw = bottomTransportMotor.getOutputCurrent();
+    // The motors run backward to move notes toward the launcher
+    inputs.transportPositionMeters = -topTransportEncoder.getPosition()
+      / Constants.Transport.transportGearRatio * Constants.Transport.rollerDiameterMeters * Math.PI;
+  }
+
   /**
    * Gets the rpm that an intake motor should run at, based on the target speed of the edge of the wheels and belt.  
    * This is effectively the speed that the notes move at.
@@ -61,9 +71,6 @@ public class TransportIOReal implements TransportIO {
     double limitedSpeed = transportSlewRateLimiter.calculate(speedMetersPerSecond);
     if(speedMetersPerSecond == 0.0) limitedSpeed = 0.0;
 
-    Logger.recordOutput("Transport/TopMotorCurrentDraw", topTransportMotor.getOutputCurrent());
-    Logger.recordOutput("Transport/BottomMotorCurrentDraw", bottomTransportMotor.getOutputCurrent());
-
     if(limitedSpeed == oldLimitedSpeed) return;
     oldLimitedSpeed = limitedSpeed;
     double speedRPM = getTransportMotorRPM(limitedSpeed, Constants.Transport.transportGearRatio);
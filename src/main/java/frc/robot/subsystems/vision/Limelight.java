@@ -1,11 +1,13 @@
 package frc.robot.subsystems.vision;
 
 import java.util.Map;
+import java.util.Optional;
 
 import org.littletonrobotics.junction.Logger;
 
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.numbers.N1;
@@ -15,6 +17,7 @@ import edu.wpi.first.net.PortForwarder;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.RobotState;
 import frc.robot.subsystems.drive.Swerve;
 import frc.lib.util.ShuffleboardContent;
 
@@ -50,8 +53,20 @@ public class Limelight extends SubsystemBase {
    */
   public static final Matrix<N3, N1> visionMeasurementStdDevs = VecBuilder.fill(1., 1., 9999999999.);
   
+  /**
+   * The maximum distance, in meters, a vision measurement can be from our estimated pose when the frame
+   * was captured before we consider it an outlier.
+   */
+  private static final double maxVisionPoseErrorMeters = 1.0;
+  /**
+   * How long, in seconds, we trust our pose estimate after accepting a vision measurement.
+   * Outliers are only rejected during this time so vision can always correct a bad starting pose.
+   */
+  private static final double visionOutlierRejectionSeconds = 2.0;
+
   private LimelightIO limelightIO;
   private LimelightIOInputsAutoLogged inputs = new LimelightIOInputsAutoLogged();
+  private double lastAcceptedMeasurementTimestamp = Double.NEGATIVE_INFINITY;
 
   private Limelight(LimelightIO limelightIO) {
     this.limelightIO = limelightIO;
@@ -63,7 +78,7 @@ public class Limelight extends SubsystemBase {
     // Temporary, hopefully...
     boolean discardMeasurement = DriverStation.isAutonomous();
 
-    ChassisSpeeds robotRelativeSpeeds = Swerve.getInstance().getRobotRelativeSpeeds();
+    ChassisSpeeds robotRelativeSpeeds = RobotState.getCurrent().getRobotRelativeSpeeds();
     if (
       Math.abs(robotRelativeSpeeds.omegaRadiansPerSecond) > Units.degreesToRadians(180) ||
       Math.abs(robotRelativeSpeeds.vxMetersPerSecond) > 2.5 ||
@@ -72,6 +87,17 @@ public class Limelight extends SubsystemBase {
     
     if(inputs.tagCount <= 0) discardMeasurement = true;
 
+    // Compare against where we thought we were when the frame was captured, not where we are now
+    Optional<Pose2d> poseAtCapture = Swerve.getInstance().getPoseAt(inputs.timestampSeconds);
+    if(poseAtCapture.isPresent() && inputs.tagCount > 0) {
+      double poseError = poseAtCapture.get().getTranslation().getDistance(inputs.pose.getTranslation());
+      Logger.recordOutput("Odometry/LimelightPoseError", poseError);
+      if(
+        poseError > maxVisionPoseErrorMeters &&
+        inputs.timestampSeconds - lastAcceptedMeasurementTimestamp < visionOutlierRejectionSeconds
+      ) discardMeasurement = true;
+    }
+
     // Scale the vision measurement expected standard deviation (1m by default) exponentially by the distance 
     double standardDeviationScalar = 0.4 * Math.pow(1.15, inputs.avgTagDist) / inputs.tagCount;
 
@@ -79,6 +105,7 @@ public class Limelight extends SubsystemBase {
 
     if(!discardMeasurement) {
       Swerve.getInstance().addVisionMeasurement(inputs.pose, inputs.timestampSeconds, standardDeviationScalar);
+      lastAcceptedMeasurementTimestamp = inputs.timestampSeconds;
     }
   }
 
@@ -95,6 +122,14 @@ public class Limelight extends SubsystemBase {
     return inputs.intakeNoteX;
   }
 
+  /**
+   * Gets the FPGA time the intake camera frame used for {@link #getIntakeNoteX()} was captured.
+   * @return The timestamp in seconds.
+   */
+  public double getIntakeNoteTimestamp() {
+    return inputs.intakeNoteTimestampSeconds;
+  }
+
   public void flashIntakeLimelight() {
     limelightIO.flashIntakeLimelight();
   }
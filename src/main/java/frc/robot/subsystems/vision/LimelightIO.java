@@ -16,6 +16,8 @@ public interface LimelightIO {
     
     public boolean intakeNotePresent = false;
     public Rotation2d intakeNoteX = new Rotation2d();
+    /** The FPGA time the intake camera frame was captured, in seconds. */
+    public double intakeNoteTimestampSeconds = 0;
   }
 
   /** Updates the set of loggable inputs. */
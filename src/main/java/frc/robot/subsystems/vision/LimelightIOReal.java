@@ -5,15 +5,15 @@ import org.littletonrobotics.junction.Logger;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
 import frc.lib.LimelightHelpers;
-import frc.robot.subsystems.drive.Swerve;
+import frc.robot.RobotState;
 
 public class LimelightIOReal implements LimelightIO {
     @Override
     public void updateInputs(LimelightIOInputs inputs) {
         LimelightHelpers.SetRobotOrientation(
             "limelight",
-            Swerve.getInstance().getPose().getRotation().getDegrees(),
-            Units.radiansToDegrees(Swerve.getInstance().getRobotRelativeSpeeds().omegaRadiansPerSecond),
+            RobotState.getCurrent().getPose().getRotation().getDegrees(),
+            Units.radiansToDegrees(RobotState.getCurrent().getRobotRelativeSpeeds().omegaRadiansPerSecond),
             0, 0, 0, 0
         );
         LimelightHelpers.PoseEstimate limelightMeasurement =
@@ -29,6 +29,10 @@ public class LimelightIOReal implements LimelightIO {
 
         inputs.intakeNotePresent = LimelightHelpers.getTV("limelight-intake");
         inputs.intakeNoteX = Rotation2d.fromDegrees(LimelightHelpers.getTX("limelight-intake"));
+        // getRealTimestamp() in microseconds, latency in milliseconds
+        inputs.intakeNoteTimestampSeconds = (Logger.getRealTimestamp() / 1000000.0) - (
+            LimelightHelpers.getLatency_Pipeline("limelight-intake") + LimelightHelpers.getLatency_Capture("limelight-intake")
+        ) / 1000.0;
         
         Logger.recordOutput("Limelight/TargetVisible", LimelightHelpers.getTV("limelight"));
     }
@@ -6,12 +6,11 @@ import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.util.Units;
-import edu.wpi.first.wpilibj.DriverStation;
-import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.ScheduleCommand;
+import frc.robot.FieldGeometry;
 import java.util.Set;
 import java.util.function.Supplier;
 import org.littletonrobotics.junction.Logger;
@@ -36,7 +35,7 @@ public class NoteVisualizer {
       Commands.defer(
         () -> {
           final Pose3d startPose = new Pose3d(robotPoseSupplier.get()).transformBy(launcherTransform);
-          final boolean isRed = DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get().equals(Alliance.Red);
+          final boolean isRed = FieldGeometry.getInstance().isRedAlliance();
           final Pose3d endPose = new Pose3d(isRed ? redSpeaker : blueSpeaker, startPose.getRotation());
 
           final double duration = startPose.getTranslation().getDistance(endPose.getTranslation()) / shotSpeed;
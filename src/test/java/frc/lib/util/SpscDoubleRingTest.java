@@ -0,0 +1,83 @@
+package frc.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class SpscDoubleRingTest {
+  private static final int rowCount = 2_000_000;
+  private static final int columns = 4;
+
+  @Test
+  void dropsRowsWhenFull() {
+    SpscDoubleRing ring = new SpscDoubleRing(2, 1);
+    assertTrue(ring.tryWrite(new double[] {1}));
+    assertTrue(ring.tryWrite(new double[] {2}));
+    assertFalse(ring.tryWrite(new double[] {3}));
+
+    assertEquals(2, ring.available());
+    assertEquals(1, ring.get(0, 0));
+    ring.release(1);
+    assertTrue(ring.tryWrite(new double[] {3}));
+    assertEquals(2, ring.available());
+    assertEquals(2, ring.get(0, 0));
+    assertEquals(3, ring.get(1, 0));
+  }
+
+  /**
+   * Streams rows from a producer thread to a consumer thread through a small ring. Every row is its sequence
+   * number followed by values derived from it, so a lost row breaks the sequence and a torn row has values that
+   * don't match.
+   */
+  @Test
+  void concurrentRowsArriveInOrderAndWhole() throws InterruptedException {
+    SpscDoubleRing ring = new SpscDoubleRing(16, columns);
+    AtomicReference<Throwable> producerFailure = new AtomicReference<>();
+
+    Thread producer = new Thread(() -> {
+      try {
+        double[] row = new double[columns];
+        for(int sequence = 0; sequence < rowCount; sequence++) {
+          for(int column = 0; column < columns; column++) row[column] = valueFor(sequence, column);
+          // The ring drops rows when full, so retry until the consumer makes room. Yielding keeps this fast on one core
+          while(!ring.tryWrite(row)) Thread.yield();
+        }
+      } catch(Throwable t) {
+        producerFailure.set(t);
+      }
+    }, "SpscDoubleRingTestProducer");
+    producer.start();
+
+    int expectedSequence = 0;
+    long deadline = System.nanoTime() + 60_000_000_000L;
+    while(expectedSequence < rowCount) {
+      assertTrue(System.nanoTime() < deadline, "Timed out waiting for rows");
+      int available = ring.available();
+      if(available == 0) {
+        Thread.yield();
+        continue;
+      }
+      for(int row = 0; row < available; row++) {
+        double sequence = ring.get(row, 0);
+        assertEquals(expectedSequence, sequence, "Lost or reordered row");
+        for(int column = 1; column < columns; column++) {
+          assertEquals(valueFor(expectedSequence, column), ring.get(row, column), "Torn row at sequence " + expectedSequence);
+        }
+        expectedSequence++;
+      }
+      ring.release(available);
+    }
+
+    producer.join();
+    assertEquals(null, producerFailure.get());
+    assertEquals(0, ring.available());
+  }
+
+  private static double valueFor(int sequence, int column) {
+    return column == 0 ? sequence : sequence * 31.0 + column;
+  }
+}
@@ -0,0 +1,116 @@
+package frc.robot.controls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.controls.ShotModel.ShotTarget;
+
+/**
+ * Checks {@link ShotModel#solve}: that a converged solution's shot time matches the flight time to the point it
+ * aims at, that it leads the target the right way when moving, and that it falls back when the shot can't catch up.
+ */
+class ShotModelTest {
+  /** How close a converged shot time is to the flight time to its aim point, in seconds. Matches the solver's threshold. */
+  private static final double convergenceToleranceSeconds = 1e-4;
+
+  private final double[] solution = new double[ShotModel.SOLUTION_SIZE];
+  private final ShotModel.SolveStatus status = new ShotModel.SolveStatus();
+
+  private void assertSelfConsistent(ShotTarget target, String message) {
+    double aimDistance = Math.hypot(solution[ShotModel.AIM_ALONG], solution[ShotModel.AIM_ACROSS]);
+    assertEquals(ShotModel.getShotTime(target, aimDistance), status.shotTimeSeconds, convergenceToleranceSeconds, message);
+  }
+
+  @Test
+  void stationaryShotConvergesImmediately() {
+    for(ShotTarget target : ShotTarget.values()) {
+      // Past 8 meters the speaker shot time is longer than the solver accepts
+      for(double distance = 1; distance <= 8; distance += 0.5) {
+        ShotModel.solve(target, distance, 0, 0, 0, solution, status);
+        String message = target + " at " + distance + " m";
+
+        assertTrue(status.converged, message);
+        assertEquals(2, status.iterations, message);
+        assertEquals(ShotModel.getShotTime(target, distance), status.shotTimeSeconds, 1e-12, message);
+        assertEquals(distance, solution[ShotModel.AIM_ALONG], 1e-12, message);
+        assertEquals(0, solution[ShotModel.AIM_ACROSS], 1e-12, message);
+        assertEquals(distance, solution[ShotModel.EFFECTIVE_DISTANCE], 1e-12, message);
+      }
+    }
+  }
+
+  @Test
+  void movingTowardTargetAimsShort() {
+    for(ShotTarget target : ShotTarget.values()) {
+      double distance = 4;
+      ShotModel.solve(target, distance, 0, 1.5, 0, solution, status);
+      String message = target.toString();
+
+      assertTrue(status.converged, message);
+      assertTrue(solution[ShotModel.AIM_ALONG] < distance, message);
+      assertEquals(0, solution[ShotModel.AIM_ACROSS], 1e-12, message);
+      assertSelfConsistent(target, message);
+    }
+  }
+
+  @Test
+  void movingAwayFromTargetAimsLong() {
+    for(ShotTarget target : ShotTarget.values()) {
+      double distance = 4;
+      ShotModel.solve(target, distance, 0, -1, 0, solution, status);
+      String message = target.toString();
+
+      assertTrue(status.converged, message);
+      assertTrue(solution[ShotModel.AIM_ALONG] > distance, message);
+      assertEquals(0, solution[ShotModel.AIM_ACROSS], 1e-12, message);
+      assertSelfConsistent(target, message);
+    }
+  }
+
+  @Test
+  void movingAcrossTargetLeadsTheOtherWay() {
+    for(ShotTarget target : ShotTarget.values()) {
+      ShotModel.solve(target, 4, 0, 0, 1, solution, status);
+      String message = target.toString();
+
+      assertTrue(status.converged, message);
+      assertTrue(solution[ShotModel.AIM_ACROSS] < 0, message);
+      assertSelfConsistent(target, message);
+    }
+  }
+
+  @Test
+  void outrunningTheShotFallsBack() {
+    // The speaker shot time grows 0.35 seconds per meter, so backing away at 5 m/s outruns it
+    double distance = 2;
+    ShotModel.solve(ShotTarget.Speaker, distance, 0, -5, 0, solution, status);
+
+    assertFalse(status.converged);
+    // The fallback leads the target by the shot time for the real distance
+    assertEquals(ShotModel.getShotTime(ShotTarget.Speaker, distance), status.shotTimeSeconds, 1e-12);
+    assertTrue(solution[ShotModel.AIM_ALONG] > distance);
+    assertEquals(0, solution[ShotModel.AIM_ACROSS], 1e-12);
+    assertTrue(Double.isFinite(solution[ShotModel.SPEED]) && Double.isFinite(solution[ShotModel.ANGLE]));
+  }
+
+  @Test
+  void iterationsAreBounded() {
+    for(ShotTarget target : ShotTarget.values()) {
+      for(double distance = 0; distance <= 18.5; distance += 0.5) {
+        for(double radialVelocity = -5; radialVelocity <= 5; radialVelocity += 0.25) {
+          for(double tangentialVelocity = -5; tangentialVelocity <= 5; tangentialVelocity += 0.25) {
+            ShotModel.solve(target, distance, 0, radialVelocity, tangentialVelocity, solution, status);
+            String message = target + " at " + distance + " m, " + radialVelocity + " m/s radial, " + tangentialVelocity + " m/s tangential";
+
+            assertTrue(status.iterations >= 2 && status.iterations <= ShotModel.maxIterations, message + ": " + status.iterations + " iterations");
+            for(double value : solution) assertTrue(Double.isFinite(value), message);
+            if(status.converged) assertSelfConsistent(target, message);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,232 @@
+package frc.robot.controls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import frc.robot.controls.ShotModel.ShotTarget;
+
+/**
+ * Checks {@link ShotTable#lookup} against {@link ShotModel#solve} on freshly generated tables: exactly at the
+ * grid points, between them where the solver converged everywhere around, and in the cells that straddle the
+ * boundary between converged solutions and the solver's fallback.
+ */
+class ShotTableTest {
+  private static final int samples = 20_000;
+  /**
+   * The longest shot time we check interpolation accuracy for, in seconds. Past this, the aim point moves so
+   * quickly with the shot time that the grid can't follow it, but those shots are rare and hard to make anyway.
+   */
+  private static final double maxCheckedShotTimeSeconds = 1;
+  private static final double aimToleranceMeters = 0.25;
+  private static final double speedToleranceRPM = 25;
+  /**
+   * The worst angle error is in the speaker cells just under 1.2 meters, where the fit clamps to the highest angle
+   * partway through a cell. Everywhere else it's a small fraction of this.
+   */
+  private static final double angleToleranceDegrees = 2.5;
+
+  private final double[][] axes = ShotTableGenerator.getAxes();
+  private final double[] tableSolution = new double[ShotModel.SOLUTION_SIZE];
+  private final double[] solverSolution = new double[ShotModel.SOLUTION_SIZE];
+  private final ShotModel.SolveStatus tableStatus = new ShotModel.SolveStatus();
+  private final ShotModel.SolveStatus solverStatus = new ShotModel.SolveStatus();
+
+  private static ShotTable generateTable(ShotTarget target) throws IOException {
+    File file = File.createTempFile("shot" + target, ".bin");
+    try {
+      ShotTableGenerator.writeTable(target, file);
+      return ShotTable.load(target, file).orElseThrow();
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  void gridPointsMatchSolver() throws IOException {
+    for(ShotTarget target : ShotTarget.values()) {
+      ShotTable table = generateTable(target);
+      for(double distance : axes[ShotTableGenerator.DISTANCE_AXIS]) {
+        for(double bearing : axes[ShotTableGenerator.BEARING_AXIS]) {
+          for(double radialVelocity : axes[ShotTableGenerator.RADIAL_VELOCITY_AXIS]) {
+            for(double tangentialVelocity : axes[ShotTableGenerator.TANGENTIAL_VELOCITY_AXIS]) {
+              table.lookup(distance, bearing, radialVelocity, tangentialVelocity, tableSolution, tableStatus);
+              ShotModel.solve(target, distance, bearing, radialVelocity, tangentialVelocity, solverSolution, solverStatus);
+
+              String point = describe(target, distance, bearing, radialVelocity, tangentialVelocity);
+              assertEquals(solverStatus.converged, tableStatus.converged, point);
+              for(int i = 0; i < ShotModel.SOLUTION_SIZE; i++) {
+                // The table stores floats
+                assertEquals(solverSolution[i], tableSolution[i], 1e-5 * Math.max(1, Math.abs(solverSolution[i])), point);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void convergedCellsMatchSolver() throws IOException {
+    for(ShotTarget target : ShotTarget.values()) {
+      ShotTable table = generateTable(target);
+      Random random = new Random(2826);
+      int checked = 0;
+      for(int sample = 0; sample < samples; sample++) {
+        double[] point = randomPoint(random);
+        if(countConvergedCorners(target, point) != 16 || getLongestCornerShotTime(target, point) > maxCheckedShotTimeSeconds) continue;
+        checked++;
+
+        lookupAndSolve(table, target, point);
+        String description = describe(target, point[0], point[1], point[2], point[3]);
+        assertTrue(tableStatus.converged && solverStatus.converged, description);
+        assertEquals(0, getAimError(), aimToleranceMeters, description);
+        assertEquals(solverSolution[ShotModel.SPEED], tableSolution[ShotModel.SPEED], speedToleranceRPM, description);
+        assertEquals(solverSolution[ShotModel.ANGLE], tableSolution[ShotModel.ANGLE], angleToleranceDegrees, description);
+      }
+      assertTrue(checked > samples / 40, "Only " + checked + " " + target + " samples were in fully converged cells");
+    }
+  }
+
+  @Test
+  void boundaryCellsDontBlendAcrossFallback() throws IOException {
+    double[] cornerSolution = new double[ShotModel.SOLUTION_SIZE];
+    double[] low = new double[ShotModel.SOLUTION_SIZE];
+    double[] high = new double[ShotModel.SOLUTION_SIZE];
+
+    for(ShotTarget target : ShotTarget.values()) {
+      ShotTable table = generateTable(target);
+      Random random = new Random(2826);
+      int checked = 0;
+      for(int sample = 0; sample < samples; sample++) {
+        double[] point = randomPoint(random);
+        int convergedCorners = countConvergedCorners(target, point);
+        if(convergedCorners == 0 || convergedCorners == 16) continue;
+        checked++;
+
+        lookupAndSolve(table, target, point);
+        String description = describe(target, point[0], point[1], point[2], point[3]);
+
+        // The lookup has to come from the corners on one side of the boundary, so every value is inside their range
+        for(int i = 0; i < ShotModel.SOLUTION_SIZE; i++) {
+          low[i] = Double.POSITIVE_INFINITY;
+          high[i] = Double.NEGATIVE_INFINITY;
+        }
+        int[] lowerIndices = findLowerIndices(point);
+        for(int corner = 0; corner < 16; corner++) {
+          solveCorner(target, lowerIndices, corner, cornerSolution, solverStatus);
+          if(solverStatus.converged != tableStatus.converged) continue;
+          for(int i = 0; i < ShotModel.SOLUTION_SIZE; i++) {
+            low[i] = Math.min(low[i], cornerSolution[i]);
+            high[i] = Math.max(high[i], cornerSolution[i]);
+          }
+        }
+        for(int i = 0; i < ShotModel.SOLUTION_SIZE; i++) {
+          double margin = 1e-4 * Math.max(1, Math.abs(high[i]));
+          assertTrue(
+            tableSolution[i] >= low[i] - margin && tableSolution[i] <= high[i] + margin,
+            "Value " + i + " is " + tableSolution[i] + ", outside " + low[i] + " to " + high[i] + " at " + description
+          );
+        }
+      }
+      assertTrue(checked > samples / 40, "Only " + checked + " " + target + " samples were in boundary cells");
+    }
+  }
+
+  @Test
+  void longLobsAimAtTheRealDistance() throws IOException {
+    ShotTable table = generateTable(ShotTarget.Lob);
+    Random random = new Random(2826);
+    for(int sample = 0; sample < samples; sample++) {
+      double[] point = {
+        12 + random.nextDouble() * 6.4, random.nextDouble() * 180, random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1
+      };
+      lookupAndSolve(table, ShotTarget.Lob, point);
+      String description = describe(ShotTarget.Lob, point[0], point[1], point[2], point[3]);
+      assertEquals(solverStatus.converged, tableStatus.converged, description);
+      assertEquals(0, getAimError(), aimToleranceMeters, description);
+    }
+  }
+
+  @Test
+  void distanceAxisCoversTheField() {
+    double[] distances = axes[ShotTableGenerator.DISTANCE_AXIS];
+    // From one corner of the field to the other
+    double fieldDiagonal = Math.hypot(16.54, 8.21);
+    assertTrue(distances[distances.length - 1] >= fieldDiagonal, "The table ends at " + distances[distances.length - 1] + " meters");
+  }
+
+  private double[] randomPoint(Random random) {
+    double[] point = new double[ShotTableGenerator.AXIS_COUNT];
+    for(int axis = 0; axis < point.length; axis++) {
+      double[] points = axes[axis];
+      point[axis] = points[0] + random.nextDouble() * (points[points.length - 1] - points[0]);
+    }
+    return point;
+  }
+
+  private void lookupAndSolve(ShotTable table, ShotTarget target, double[] point) {
+    table.lookup(point[0], point[1], point[2], point[3], tableSolution, tableStatus);
+    ShotModel.solve(target, point[0], point[1], point[2], point[3], solverSolution, solverStatus);
+  }
+
+  private double getAimError() {
+    return Math.hypot(
+      tableSolution[ShotModel.AIM_ALONG] - solverSolution[ShotModel.AIM_ALONG],
+      tableSolution[ShotModel.AIM_ACROSS] - solverSolution[ShotModel.AIM_ACROSS]
+    );
+  }
+
+  /** Finds the lower grid index of the cell containing a point on every axis. */
+  private int[] findLowerIndices(double[] point) {
+    int[] lowerIndices = new int[ShotTableGenerator.AXIS_COUNT];
+    for(int axis = 0; axis < lowerIndices.length; axis++) {
+      double[] points = axes[axis];
+      int lower = 0;
+      while(lower < points.length - 2 && points[lower + 1] <= point[axis]) lower++;
+      lowerIndices[axis] = lower;
+    }
+    return lowerIndices;
+  }
+
+  private void solveCorner(ShotTarget target, int[] lowerIndices, int corner, double[] solution, ShotModel.SolveStatus status) {
+    double[] cornerPoint = new double[ShotTableGenerator.AXIS_COUNT];
+    for(int axis = 0; axis < cornerPoint.length; axis++) {
+      cornerPoint[axis] = axes[axis][lowerIndices[axis] + ((corner >> axis) & 1)];
+    }
+    ShotModel.solve(target, cornerPoint[0], cornerPoint[1], cornerPoint[2], cornerPoint[3], solution, status);
+  }
+
+  private int countConvergedCorners(ShotTarget target, double[] point) {
+    int[] lowerIndices = findLowerIndices(point);
+    double[] solution = new double[ShotModel.SOLUTION_SIZE];
+    ShotModel.SolveStatus status = new ShotModel.SolveStatus();
+    int converged = 0;
+    for(int corner = 0; corner < 16; corner++) {
+      solveCorner(target, lowerIndices, corner, solution, status);
+      if(status.converged) converged++;
+    }
+    return converged;
+  }
+
+  private double getLongestCornerShotTime(ShotTarget target, double[] point) {
+    int[] lowerIndices = findLowerIndices(point);
+    double[] solution = new double[ShotModel.SOLUTION_SIZE];
+    ShotModel.SolveStatus status = new ShotModel.SolveStatus();
+    double longest = 0;
+    for(int corner = 0; corner < 16; corner++) {
+      solveCorner(target, lowerIndices, corner, solution, status);
+      longest = Math.max(longest, status.shotTimeSeconds);
+    }
+    return longest;
+  }
+
+  private static String describe(ShotTarget target, double distance, double bearing, double radialVelocity, double tangentialVelocity) {
+    return target + " at " + distance + " m, " + bearing + " degrees, " + radialVelocity + " m/s radial, " + tangentialVelocity + " m/s tangential";
+  }
+}
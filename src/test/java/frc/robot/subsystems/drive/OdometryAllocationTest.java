@@ -0,0 +1,83 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Checks that the per-frame odometry path in {@link Swerve#periodic()} doesn't allocate: processing the frames
+ * and integrating them with {@link Swerve#integrateOdometryFrames}, the same method the subsystem calls.
+ */
+class OdometryAllocationTest {
+  private static final int framesPerCycle = 5;
+  private static final int warmupCycles = 20_000;
+  private static final int measuredCycles = 10_000;
+
+  private final Translation2d[] modulePositions = {
+    new Translation2d(0.3, 0.3),
+    new Translation2d(0.3, -0.3),
+    new Translation2d(-0.3, 0.3),
+    new Translation2d(-0.3, -0.3)
+  };
+  private final SwervePoseEstimator estimator = new SwervePoseEstimator(
+    modulePositions, VecBuilder.fill(0.1, 0.1, 0.1), 0, new double[OdometryFrame.MODULE_COUNT], new Pose2d()
+  );
+  private final OdometryFrameBuffer frames = new OdometryFrameBuffer(SparkMaxOdometryThread.SAMPLE_BUFFER_CAPACITY);
+  private final double[] distancesMeters = new double[OdometryFrame.MODULE_COUNT];
+  private final double[] anglesRadians = new double[OdometryFrame.MODULE_COUNT];
+  private double rawGyroRadians = 0;
+  private int tick = 0;
+
+  @Test
+  void odometryCycleDoesNotAllocate() {
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    assertTrue(threads.isThreadAllocatedMemorySupported(), "The JVM can't measure thread allocations");
+    threads.setThreadAllocatedMemoryEnabled(true);
+    long threadId = Thread.currentThread().getId();
+
+    // Let the JIT compile everything first, so we measure the steady state the robot runs in
+    for(int i = 0; i < warmupCycles; i++) runCycle(i % 2 == 0);
+
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for(int i = 0; i < measuredCycles; i++) runCycle(i % 2 == 0);
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+    assertEquals(0, allocated, "Bytes allocated over " + measuredCycles + " odometry cycles");
+  }
+
+  /** Runs one cycle of the odometry path, with or without the gyro. */
+  private void runCycle(boolean gyroConnected) {
+    fillFrames();
+    frames.processFrames();
+
+    rawGyroRadians = Swerve.integrateOdometryFrames(
+      frames, estimator, gyroConnected, rawGyroRadians, distancesMeters, anglesRadians
+    );
+  }
+
+  /** Fills the buffer the way the odometry thread does, with one failed turn read per cycle. */
+  private void fillFrames() {
+    int allValid = (1 << OdometryFrame.COLUMN_COUNT) - 1;
+    for(int i = 0; i < framesPerCycle; i++) {
+      double timestamp = tick * 0.004;
+      frames.set(i, OdometryFrame.TIMESTAMP_COLUMN, timestamp);
+      for(int module = 0; module < OdometryFrame.MODULE_COUNT; module++) {
+        frames.set(i, OdometryFrame.DRIVE_POSITION_COLUMN + module, tick * 0.1);
+        frames.set(i, OdometryFrame.TURN_POSITION_COLUMN + module, Math.sin(tick * 0.01));
+      }
+      frames.set(i, OdometryFrame.YAW_COLUMN, tick * 0.001);
+      frames.set(i, OdometryFrame.YAW_TIMESTAMP_COLUMN, timestamp - 0.002);
+      int validMask = i == 2 ? allValid & ~(1 << OdometryFrame.TURN_POSITION_COLUMN) : allValid;
+      frames.set(i, OdometryFrame.VALID_MASK_COLUMN, validMask);
+      tick++;
+    }
+    frames.setFrameCount(framesPerCycle);
+  }
+}
@@ -0,0 +1,107 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+
+/**
+ * Benchmarks {@link SwervePoseEstimator#addVisionMeasurement} as the number of odometry samples between the
+ * measurement and the present grows. A replaying estimator's cost grows linearly with that count; ours should
+ * stay flat, since it only searches the history once.
+ *
+ * <p>Wall-clock timings are too noisy to assert on in CI, so this only prints them. It does check that every
+ * capture time lands between two history samples, so the timings cover the interpolating lookup rather than
+ * the shortcut for times at or after the newest sample.
+ */
+class SwervePoseEstimatorBenchmarkTest {
+  /** Odometry samples between each vision measurement's capture time and the present. */
+  private static final int[] sampleDensities = { 1, 10, 50, 150, 300 };
+  private static final int measurementsPerBatch = 200;
+  private static final int warmupBatches = 20;
+  private static final int measuredBatches = 30;
+
+  private static final double odometryPeriodSeconds = 1 / 250.0;
+  private static final Matrix<N3, N1> visionStdDevs = VecBuilder.fill(0.5, 0.5, 1.0);
+
+  private final Translation2d[] modulePositions = {
+    new Translation2d(0.3, 0.3),
+    new Translation2d(0.3, -0.3),
+    new Translation2d(-0.3, 0.3),
+    new Translation2d(-0.3, -0.3)
+  };
+  private final double[] distancesMeters = new double[OdometryFrame.MODULE_COUNT];
+  private final double[] anglesRadians = new double[OdometryFrame.MODULE_COUNT];
+
+  @Test
+  void reportVisionMeasurementCostBySampleDensity() {
+    // Run every density once first, so the JIT has compiled everything before we measure any of them
+    for(int density : sampleDensities) measureCostNanos(density);
+
+    double[] costsNanos = new double[sampleDensities.length];
+    for(int i = 0; i < sampleDensities.length; i++) {
+      costsNanos[i] = measureCostNanos(sampleDensities[i]);
+    }
+
+    StringBuilder report = new StringBuilder("Vision measurement cost by odometry samples since capture:");
+    for(int i = 0; i < sampleDensities.length; i++) {
+      report.append(String.format("%n  %4d samples: %8.0f ns", sampleDensities[i], costsNanos[i]));
+    }
+    System.out.println(report);
+  }
+
+  /**
+   * Measures the median cost of one vision measurement captured a number of odometry samples ago.
+   * Only the vision measurements are timed, not the odometry updates between them.
+   */
+  private double measureCostNanos(int samplesSinceCapture) {
+    SwervePoseEstimator estimator = new SwervePoseEstimator(
+      modulePositions, VecBuilder.fill(0.1, 0.1, 0.1), 0, new double[OdometryFrame.MODULE_COUNT], new Pose2d()
+    );
+    int[] tick = { 0 };
+    // Start with one sample so the first capture time has a sample before it
+    addOdometrySample(estimator, tick);
+    Pose2d visionPose = new Pose2d(1, 1, new Rotation2d(0.1));
+
+    double[] batchCosts = new double[measuredBatches];
+    for(int batch = 0; batch < warmupBatches + measuredBatches; batch++) {
+      long elapsed = 0;
+      for(int measurement = 0; measurement < measurementsPerBatch; measurement++) {
+        // Halfway between the newest sample and the next one, so even at a density of 1 it's between samples
+        double captureTimestamp = (tick[0] - 0.5) * odometryPeriodSeconds;
+        for(int sample = 0; sample < samplesSinceCapture; sample++) addOdometrySample(estimator, tick);
+        double newestTimestamp = (tick[0] - 1) * odometryPeriodSeconds;
+        assertTrue(
+          captureTimestamp < newestTimestamp && estimator.getEstimatedPositionAt(captureTimestamp).isPresent(),
+          "Capture time " + captureTimestamp + " isn't between history samples"
+        );
+
+        long start = System.nanoTime();
+        estimator.addVisionMeasurement(visionPose, captureTimestamp, visionStdDevs);
+        elapsed += System.nanoTime() - start;
+      }
+      if(batch >= warmupBatches) batchCosts[batch - warmupBatches] = (double)elapsed / measurementsPerBatch;
+    }
+    Arrays.sort(batchCosts);
+    return batchCosts[measuredBatches / 2];
+  }
+
+  private void addOdometrySample(SwervePoseEstimator estimator, int[] tick) {
+    double timestamp = tick[0] * odometryPeriodSeconds;
+    for(int module = 0; module < OdometryFrame.MODULE_COUNT; module++) {
+      distancesMeters[module] = tick[0] * 0.01;
+      anglesRadians[module] = 0.2;
+    }
+    estimator.update(timestamp, tick[0] * 0.0005, distancesMeters, anglesRadians);
+    tick[0]++;
+  }
+}
@@ -0,0 +1,92 @@
+package frc.robot.subsystems.launcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.util.Units;
+import frc.robot.Constants;
+
+/**
+ * Checks the {@link ConchKinematics} lookup tables against the exact solutions they're built from, across
+ * the whole range and at the soft stops where the tables clamp.
+ */
+class ConchKinematicsTest {
+  private static final int samples = 100_000;
+  /**
+   * How far a lookup can be from the exact solution, in degrees of launcher angle or conch rotation. Most of the
+   * range is far closer than this. The worst is just past where the reaction bar starts touching the conch, where
+   * the angle grows like a square root, and in the table step where the conch rotation hits the soft stop.
+   */
+  private static final double toleranceDegrees = 0.15;
+
+  private static final double minAngleRadians = 0;
+  private static final double maxAngleRadians = Math.PI / 2;
+  private static final double minConchRotations = Constants.Launcher.softStopMarginLow.getRotations();
+  private static final double maxConchRotations = 1 - Constants.Launcher.softStopMarginHigh.getRotations();
+
+  private static void assertRotationsNear(double expected, double actual, String message) {
+    assertEquals(expected, actual, Units.degreesToRotations(toleranceDegrees), message);
+  }
+
+  private static void assertAngleNear(double expected, double actual, String message) {
+    assertEquals(expected, actual, Units.degreesToRadians(toleranceDegrees), message);
+  }
+
+  @Test
+  void conchRotationsMatchExactSolution() {
+    for(int i = 0; i <= samples; i++) {
+      double angle = minAngleRadians + (maxAngleRadians - minAngleRadians) * i / samples;
+      assertRotationsNear(
+        ConchKinematics.calculateConchRotations(angle), ConchKinematics.getConchRotations(angle),
+        "at " + Units.radiansToDegrees(angle) + " degrees"
+      );
+    }
+  }
+
+  @Test
+  void launcherAngleMatchesExactSolution() {
+    for(int i = 0; i <= samples; i++) {
+      double rotations = minConchRotations + (maxConchRotations - minConchRotations) * i / samples;
+      assertAngleNear(
+        ConchKinematics.calculateLauncherAngle(rotations), ConchKinematics.getLauncherAngle(rotations),
+        "at " + rotations + " rotations"
+      );
+    }
+  }
+
+  @Test
+  void conchRotationsClampAtTableEdges() {
+    double lowest = ConchKinematics.calculateConchRotations(minAngleRadians);
+    double highest = ConchKinematics.calculateConchRotations(maxAngleRadians);
+    assertRotationsNear(lowest, ConchKinematics.getConchRotations(minAngleRadians), "at the lowest angle");
+    assertRotationsNear(highest, ConchKinematics.getConchRotations(maxAngleRadians), "at the highest angle");
+    assertRotationsNear(lowest, ConchKinematics.getConchRotations(Units.degreesToRadians(-10)), "below the lowest angle");
+    assertRotationsNear(highest, ConchKinematics.getConchRotations(Units.degreesToRadians(100)), "above the highest angle");
+    assertRotationsNear(lowest, ConchKinematics.getConchRotations(Double.NaN), "for NaN");
+
+    // Every result has to be inside the soft stops
+    for(int i = 0; i <= samples; i++) {
+      double angle = Units.degreesToRadians(-10 + 110.0 * i / samples);
+      double rotations = ConchKinematics.getConchRotations(angle);
+      assertTrue(rotations >= minConchRotations && rotations <= maxConchRotations, "at " + Units.radiansToDegrees(angle) + " degrees");
+    }
+  }
+
+  @Test
+  void launcherAngleClampsAtSoftStops() {
+    double lowest = ConchKinematics.calculateLauncherAngle(minConchRotations);
+    double highest = ConchKinematics.calculateLauncherAngle(maxConchRotations);
+    assertAngleNear(lowest, ConchKinematics.getLauncherAngle(minConchRotations), "at the low soft stop");
+    assertAngleNear(highest, ConchKinematics.getLauncherAngle(maxConchRotations), "at the high soft stop");
+    assertAngleNear(lowest, ConchKinematics.getLauncherAngle(minConchRotations - 0.05), "past the low soft stop");
+    assertAngleNear(highest, ConchKinematics.getLauncherAngle(maxConchRotations + 0.05), "past the high soft stop");
+    assertAngleNear(lowest, ConchKinematics.getLauncherAngle(Double.NaN), "for NaN");
+  }
+
+  @Test
+  void reportedErrorIsWithinTolerance() {
+    assertTrue(ConchKinematics.getMaxErrorDegrees() < toleranceDegrees, "max error " + ConchKinematics.getMaxErrorDegrees() + " degrees");
+  }
+}